@@ -1,3 +1,4 @@
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
 /**
@@ -15,6 +16,16 @@ public class AggressiveMonster extends Monster {
 	/** Required range of monster to player in order for it to attack it */
 	public static final int ATTACK_RANGE = 50;
 
+	// Direction of the chase chosen this tick
+	private double chaseX;
+	private double chaseY;
+
+	// Tiles the monster and its target stood on at the last sight check, and
+	// whether the target could be seen, which holds until either changes tile
+	private int sightFrom = -1;
+	private int sightTo = -1;
+	private boolean sightClear;
+
 	/**
 	 * Initializes the aggressive monster object with necessary attributes
 	 * 
@@ -23,7 +34,7 @@ public class AggressiveMonster extends Monster {
 	 * @param posY
 	 *            Initial position of entity in the y-axis
 	 * @param sprite
-	 *            File path of entity sprite
+	 *            Sprite of entity
 	 * @param maxHP
 	 *            Max HP of unit
 	 * @param damage
@@ -34,7 +45,7 @@ public class AggressiveMonster extends Monster {
 	 *            Name of unit
 	 * @throws SlickException
 	 */
-	public AggressiveMonster(double posX, double posY, String sprite, int maxHP, int damage, int cooldown, String name)
+	public AggressiveMonster(double posX, double posY, Image sprite, int maxHP, int damage, int cooldown, String name)
 			throws SlickException {
 		this.setSprite(sprite);
 		this.setMaxHP(maxHP);
@@ -45,40 +56,79 @@ public class AggressiveMonster extends Monster {
 		this.setName(name);
 		this.setHP(maxHP);
 		this.setDamage(damage);
-		this.setCooldownTime(cooldown);
+	}
+
+	@Override
+	public void respawn(double posX, double posY) {
+		super.respawn(posX, posY);
+		chaseX = 0;
+		chaseY = 0;
 	}
 
 	@Override
 	public void update(World world, double dirX, double dirY, int delta) {
 		// Updates the movement of the monster when it is close to a player
-		double movement[] = chasePlayer(world);
+		chasePlayer(world);
 
-		super.update(world, movement[0], movement[1], delta);
+		super.update(world, chaseX, chaseY, delta);
 	}
 
 	/**
-	 * Calculates the movement direction required in order to chase the player
-	 * when it is close by and attack it when it is close enough
+	 * Calculates the movement direction required in order to chase the nearest
+	 * player when it is close by and in sight, and attack it when it is close
+	 * enough, and stores it in chaseX and chaseY
 	 * 
 	 * @param world
 	 *            Dependency on the world object
-	 * @return An array with the dirX and dirY of the monster
 	 */
-	private double[] chasePlayer(World world) {
-		double movement[] = { 0, 0 };
+	private void chasePlayer(World world) {
+		chaseX = 0;
+		chaseY = 0;
+
+		Player player = world.getNearestPlayer(this.getPosX(), this.getPosY());
+		if (player == null) {
+			return;
+		}
 
-		Player player = world.getPlayer();
 		double distance = world.getDistance(this.getPosX(), this.getPosY(), player.getPosX(), player.getPosY());
 
+		// Players out of range or behind a wall go unnoticed
+		if (distance > WALK_RANGE || !canSee(world, player)) {
+			return;
+		}
+
 		// If the player is in walking range, the monster will chase it. If the
 		// player is in attack range, the monster will attack it
-		if (distance <= WALK_RANGE && distance > ATTACK_RANGE) {
-			movement = AI(player.getPosX(), player.getPosY(), distance, AGGRESSIVE_AI);
-		} else if (distance <= ATTACK_RANGE) {
-			player.onAttack(world, this.attack());
+		if (distance > ATTACK_RANGE) {
+			chaseX = AIDirX(player.getPosX(), distance, AGGRESSIVE_AI);
+			chaseY = AIDirY(player.getPosY(), distance, AGGRESSIVE_AI);
+		} else {
+			world.queueAttack(this, player);
+		}
+	}
+
+	/**
+	 * Checks whether the monster can see a player. The line between them is
+	 * only looked up again once either of them has moved to another tile.
+	 * 
+	 * @param world
+	 *            Dependency on the world object
+	 * @param player
+	 *            Player to look at
+	 * @return true if no tile between the monster and the player blocks sight
+	 */
+	private boolean canSee(World world, Player player) {
+		LineOfSight sight = world.getSight();
+		int from = sight.tileAt(this.getPosX(), this.getPosY());
+		int to = sight.tileAt(player.getPosX(), player.getPosY());
+
+		if (from != sightFrom || to != sightTo) {
+			sightClear = sight.isClear(from, to);
+			sightFrom = from;
+			sightTo = to;
 		}
 
-		return movement;
+		return sightClear;
 	}
 
 }
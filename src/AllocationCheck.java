@@ -0,0 +1,124 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.SplittableRandom;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Checks that a steady-state tick allocates nothing. A world is loaded
+ * headless and ticked with scripted input that walks the player around,
+ * attacks and talks, so that movement, combat, AI timers, nearby queries,
+ * events and snapshots are all exercised. After a warm-up, which lets the JIT
+ * compile the tick, load the classes of rarer paths such as deaths and fill
+ * its pools, the bytes the tick thread allocates over the remaining ticks are
+ * counted.
+ *
+ * The JVM itself allocates now and then on the thread, when it recompiles or
+ * links code, so the check fails with exit status 1 once the tick allocates a
+ * byte per tick on average, which anything allocated every tick, at 16 bytes
+ * or more, is well over.
+ */
+public class AllocationCheck {
+
+	/** Frame length the world is ticked with, in milliseconds */
+	public static final int FRAME_TIME = 16;
+	/** Ticks the player keeps walking in one direction */
+	public static final int WALK_TICKS = 120;
+	/** Bytes per tick on average the tick may allocate */
+	public static final double TOLERANCE = 1;
+
+	/**
+	 * Runs the check.
+	 *
+	 * @param args
+	 *            Assets directory, followed by options
+	 */
+	public static void main(String[] args) throws SlickException {
+		if (args.length < 1 || args.length % 2 != 1) {
+			System.out.println("Usage: AllocationCheck <assets dir> [--ticks count] [--warmup count] [--seed seed]");
+			System.exit(2);
+		}
+
+		String assets = args[0].endsWith("/") ? args[0] : args[0] + "/";
+		int ticks = 10000;
+		int warmup = 10000;
+		long seed = 1;
+
+		for (int i = 1; i < args.length; i += 2) {
+			String value = args[i + 1];
+
+			switch (args[i]) {
+			case "--ticks":
+				ticks = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			System.out.println("This Java runtime does not count allocated bytes per thread");
+			System.exit(2);
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		World world = new World(AssetLoader.load(assets, true), seed);
+		SplittableRandom random = new SplittableRandom(seed);
+
+		run(world, random, warmup);
+
+		long before = threads.getThreadAllocatedBytes(thread);
+		run(world, random, ticks);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		world.getZones().shutdown();
+
+		System.out.printf("%d bytes allocated over %d ticks, %.1f per tick%n", allocated, ticks,
+				(double) allocated / ticks);
+
+		if (allocated >= TOLERANCE * ticks) {
+			System.out.println("FAILED: the tick allocates");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/**
+	 * Ticks the world with scripted input
+	 *
+	 * @param world
+	 *            World to tick
+	 * @param random
+	 *            Source of the script's choices
+	 * @param ticks
+	 *            Number of ticks to run
+	 */
+	private static void run(World world, SplittableRandom random, int ticks) throws SlickException {
+		double dirX = 0;
+		double dirY = 0;
+
+		for (int tick = 0; tick < ticks; tick++) {
+			if (tick % WALK_TICKS == 0) {
+				dirX = random.nextInt(3) - 1;
+				dirY = random.nextInt(3) - 1;
+			}
+
+			double attack = random.nextInt(4) == 0 ? 1 : 0;
+			double talk = random.nextInt(8) == 0 ? 1 : 0;
+
+			world.update(dirX, dirY, attack, talk, FRAME_TIME);
+		}
+	}
+
+}
@@ -0,0 +1,478 @@
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.opengl.PNGImageData;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Loads every asset the world needs. The map, the TSV tables and the pixel
+ * data of every sprite are decoded at the same time on background threads.
+ * Only the texture uploads are left for the GL thread, which performs them
+ * through {@link #upload()}.
+ */
+public class AssetLoader {
+
+	/** Directory that holds all assets */
+	private final String assets;
+	/** Whether sprites are skipped because there is no display to draw on */
+	private final boolean headless;
+
+	/** Background threads that decode the assets */
+	private final ExecutorService workers;
+
+	/** Number of loading tasks started so far */
+	private final AtomicInteger started = new AtomicInteger();
+	/** Number of loading tasks finished so far */
+	private final AtomicInteger finished = new AtomicInteger();
+
+	/** Decoded sprites waiting to be uploaded by the GL thread */
+	private final ConcurrentLinkedQueue<DecodedImage> decoded = new ConcurrentLinkedQueue<DecodedImage>();
+	/** Paths of every sprite that has been queued for decoding */
+	private final Set<String> requested = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	/** Uploaded sprites, keyed by their path relative to the assets directory */
+	private final Map<String, Image> images = new HashMap<String, Image>();
+
+	/** First error raised by a background task */
+	private volatile Exception failure;
+
+	// Data read from the asset files
+	private volatile WorldMap map;
+	private int[][] attributeTable = new int[World.NUM_CHARACTERS][World.NUM_UNIT_ATTRIBUTES];
+	private String[] characterSprites = new String[World.NUM_CHARACTERS];
+	private String[] characterNames = new String[World.NUM_CHARACTERS];
+	private List<String> itemSprites = new ArrayList<String>();
+	private List<int[]> itemPositions = new ArrayList<int[]>();
+	private List<int[]> unitPositions = new ArrayList<int[]>();
+	private List<int[]> spawners = new ArrayList<int[]>();
+
+	/**
+	 * Starts loading all assets in the background
+	 *
+	 * @param assets
+	 *            Directory that holds all assets
+	 */
+	public AssetLoader(String assets) {
+		this(assets, false);
+	}
+
+	/**
+	 * Starts loading all assets in the background
+	 *
+	 * @param assets
+	 *            Directory that holds all assets
+	 * @param headless
+	 *            true to load only the simulation data and skip every sprite,
+	 *            so that the world can run without a display
+	 */
+	public AssetLoader(String assets, boolean headless) {
+		this.assets = assets;
+		this.headless = headless;
+		this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "asset-loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				loadMap();
+			}
+		});
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				readAttributes();
+			}
+		});
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				readItems();
+			}
+		});
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				readUnitPositions();
+			}
+		});
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				readSpawners();
+			}
+		});
+		decode(World.PANEL);
+	}
+
+	/**
+	 * Loads every asset and blocks until all of them have been uploaded. Must be
+	 * called on the GL thread.
+	 *
+	 * @param assets
+	 *            Directory that holds all assets
+	 * @return The finished loader
+	 * @throws SlickException
+	 */
+	public static AssetLoader load(String assets) throws SlickException {
+		return load(assets, false);
+	}
+
+	/**
+	 * Loads every asset and blocks until all of them have been loaded. Unless
+	 * headless, must be called on the GL thread.
+	 *
+	 * @param assets
+	 *            Directory that holds all assets
+	 * @param headless
+	 *            true to skip every sprite
+	 * @return The finished loader
+	 * @throws SlickException
+	 */
+	public static AssetLoader load(String assets, boolean headless) throws SlickException {
+		AssetLoader loader = new AssetLoader(assets, headless);
+
+		while (!loader.upload()) {
+			Thread.yield();
+		}
+
+		return loader;
+	}
+
+	/**
+	 * Runs a loading task on a background thread
+	 *
+	 * @param task
+	 *            Task to run
+	 */
+	private void submit(final Runnable task) {
+		started.incrementAndGet();
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (Exception e) {
+					if (failure == null) {
+						failure = e;
+					}
+				} finally {
+					finished.incrementAndGet();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Decodes the pixel data of a PNG on a background thread. The texture is
+	 * uploaded later by {@link #upload()}.
+	 *
+	 * @param path
+	 *            Path of the PNG relative to the assets directory
+	 */
+	private void decode(final String path) {
+		if (headless) {
+			return;
+		}
+
+		// Sprites shared by several unit types are only decoded once
+		if (!requested.add(path)) {
+			return;
+		}
+
+		started.incrementAndGet();
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					FlightEvents.AssetLoad event = new FlightEvents.AssetLoad();
+					event.begin();
+
+					PNGImageData data = new PNGImageData();
+					InputStream in = ResourceLoader.getResourceAsStream(assets + path);
+					try {
+						data.loadImage(in);
+					} finally {
+						in.close();
+					}
+					decoded.add(new DecodedImage(path, data));
+
+					event.end();
+					if (event.shouldCommit()) {
+						event.path = path;
+						event.commit();
+					}
+				} catch (Exception e) {
+					if (failure == null) {
+						failure = e;
+					}
+					finished.incrementAndGet();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Loads the map and starts decoding its tileset images
+	 */
+	private void loadMap() {
+		try {
+			WorldMap map = new WorldMap(assets + World.MAP);
+			this.map = map;
+
+			for (int i = 0; i < map.getTileSetCount(); i++) {
+				decode(map.getTileSetImage(i).substring(assets.length()));
+			}
+		} catch (SlickException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads the attributes, sprites and names of units and starts decoding the
+	 * sprites
+	 */
+	private void readAttributes() {
+		try {
+			Scanner reader = new Scanner(new File(assets + World.UNITS + World.ATTRIBUTES));
+
+			// Read attributes into attribute table, read character sprites and
+			// names into respective arrays
+			for (int i = 0; i < World.NUM_CHARACTERS; i++) {
+				String line = reader.nextLine();
+				String data[] = line.split("\t");
+
+				// Sprites were stroed in the second last column
+				characterSprites[i] = data[World.NUM_UNIT_ATTRIBUTES - 1];
+				// Names were stored in the last column
+				characterNames[i] = data[World.NUM_UNIT_ATTRIBUTES];
+
+				@SuppressWarnings("resource")
+				Scanner readLine = new Scanner(line);
+				for (int j = 0; j < World.NUM_UNIT_ATTRIBUTES - 1; j++) {
+					attributeTable[i][j] = readLine.nextInt();
+				}
+
+				decode(World.UNITS + characterSprites[i]);
+			}
+
+			reader.close();
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the positions and sprites of items and starts decoding the sprites
+	 */
+	private void readItems() {
+		try {
+			Scanner reader = new Scanner(new File(assets + World.ITEMS + World.ITEM_POSITIONS));
+
+			while (reader.hasNextLine()) {
+				String line = reader.nextLine();
+				String data[] = line.split("\t");
+				int[] position = new int[World.NUM_ITEM_ATTRIBUTES];
+
+				@SuppressWarnings("resource")
+				Scanner readLine = new Scanner(line);
+				for (int j = 0; j < World.NUM_ITEM_ATTRIBUTES; j++) {
+					position[j] = readLine.nextInt();
+				}
+
+				itemSprites.add(data[World.NUM_ITEM_ATTRIBUTES]);
+				itemPositions.add(position);
+				decode(World.ITEMS + data[World.NUM_ITEM_ATTRIBUTES]);
+			}
+
+			reader.close();
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the type and starting position of every unit
+	 */
+	private void readUnitPositions() {
+		try {
+			Scanner reader = new Scanner(new File(assets + World.UNITS + World.UNIT_POSITIONS));
+
+			while (reader.hasNextLine()) {
+				String line = reader.nextLine();
+				@SuppressWarnings("resource")
+				Scanner readLine = new Scanner(line);
+
+				int data[] = { readLine.nextInt(), readLine.nextInt(), readLine.nextInt() };
+				unitPositions.add(data);
+			}
+
+			reader.close();
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the region, monster type, population cap and respawn delay of
+	 * every spawner. Worlds without a spawner file have no spawners.
+	 */
+	private void readSpawners() {
+		File file = new File(assets + World.UNITS + World.SPAWNERS);
+		if (!file.exists()) {
+			return;
+		}
+
+		try {
+			Scanner reader = new Scanner(file);
+
+			while (reader.hasNextLine()) {
+				String line = reader.nextLine();
+				@SuppressWarnings("resource")
+				Scanner readLine = new Scanner(line);
+
+				int data[] = new int[World.NUM_SPAWNER_ATTRIBUTES];
+				for (int j = 0; j < World.NUM_SPAWNER_ATTRIBUTES; j++) {
+					data[j] = readLine.nextInt();
+				}
+				spawners.add(data);
+			}
+
+			reader.close();
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Uploads every sprite decoded so far. Must be called on the GL thread.
+	 *
+	 * @return true once every asset has been loaded
+	 * @throws SlickException
+	 */
+	public boolean upload() throws SlickException {
+		DecodedImage next;
+
+		while ((next = decoded.poll()) != null) {
+			Image image = new Image(next.data, Image.FILTER_NEAREST);
+			images.put(next.path, image);
+
+			// Tileset images belong to the map rather than to any entity
+			for (int i = 0; map != null && i < map.getTileSetCount(); i++) {
+				if (map.getTileSetImage(i).equals(assets + next.path)) {
+					map.setTileSetImage(i, image);
+				}
+			}
+
+			finished.incrementAndGet();
+		}
+
+		if (failure != null) {
+			workers.shutdownNow();
+			throw new SlickException("Failed to load assets", failure);
+		}
+
+		if (isDone()) {
+			workers.shutdown();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether every asset has been loaded
+	 *
+	 * @return true if loading is finished
+	 */
+	public boolean isDone() {
+		return finished.get() == started.get() && decoded.isEmpty();
+	}
+
+	/**
+	 * Gets the fraction of loading tasks that have finished, for display on a
+	 * loading screen
+	 *
+	 * @return Progress between 0 and 1
+	 */
+	public float getProgress() {
+		return (float) finished.get() / (float) started.get();
+	}
+
+	/**
+	 * Gets an uploaded sprite
+	 *
+	 * @param path
+	 *            Path of the sprite relative to the assets directory
+	 * @return Image of the sprite, or null when headless
+	 */
+	public Image getImage(String path) {
+		return images.get(path);
+	}
+
+	public WorldMap getMap() {
+		return map;
+	}
+
+	public int[][] getAttributeTable() {
+		return attributeTable;
+	}
+
+	public String[] getCharacterSprites() {
+		return characterSprites;
+	}
+
+	public String[] getCharacterNames() {
+		return characterNames;
+	}
+
+	public List<String> getItemSprites() {
+		return itemSprites;
+	}
+
+	public List<int[]> getItemPositions() {
+		return itemPositions;
+	}
+
+	public List<int[]> getUnitPositions() {
+		return unitPositions;
+	}
+
+	public List<int[]> getSpawners() {
+		return spawners;
+	}
+
+	/**
+	 * Pixel data of a sprite that has been decoded but not uploaded yet
+	 */
+	private static class DecodedImage {
+		private final String path;
+		private final ImageData data;
+
+		private DecodedImage(String path, ImageData data) {
+			this.path = path;
+			this.data = data;
+		}
+	}
+
+}
@@ -0,0 +1,266 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives players with scripted bots. A bot walks in a direction for a while,
+ * then fights or talks, and offers one frame of input at a time to an
+ * {@link InputQueue} for the tick thread to apply.
+ *
+ * Every bot runs on its own virtual thread when the Java runtime has them, so
+ * that thousands of bots can sleep between frames cheaply. Older runtimes
+ * have no such threads, and a platform thread per bot would spend more time
+ * waking than the world spends ticking, so there the bots share one platform
+ * thread per processor, each stepping its bots once per frame.
+ */
+public class BotDriver {
+
+	/** Time between two frames of a bot's input, in milliseconds */
+	public static final int FRAME_TIME = 16;
+
+	// Things a bot can be doing
+	private static final int WALK = 0;
+	private static final int FIGHT = 1;
+	private static final int TALK = 2;
+
+	/** Queue the bots' input is offered to */
+	private final InputQueue queue;
+	/** Seed the bots' random streams are split from */
+	private final SplittableRandom random;
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	// Builder of virtual threads and its method creating one, null if the
+	// runtime has none
+	private Object virtualBuilder;
+	private Method unstarted;
+	/** Bots of every shared platform thread, when there are no virtual threads */
+	private final List<List<Bot>> shares = new ArrayList<List<Bot>>();
+	/** Number of bots started so far */
+	private int started;
+
+	private volatile boolean running = true;
+
+	// Statistics shared by every bot
+	private final AtomicLong offered = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates a driver with no bots
+	 *
+	 * @param queue
+	 *            Queue the bots' input is offered to
+	 * @param seed
+	 *            Seed of the bots' scripts
+	 */
+	public BotDriver(InputQueue queue, long seed) {
+		this.queue = queue;
+		this.random = new SplittableRandom(seed);
+
+		try {
+			// Looked up by reflection so that the game still builds and runs
+			// on runtimes without virtual threads
+			virtualBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+			unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+		} catch (ReflectiveOperationException e) {
+			virtualBuilder = null;
+		}
+	}
+
+	/**
+	 * Starts a bot for a player
+	 *
+	 * @param player
+	 *            Index of the player the bot's input is queued for
+	 */
+	public void start(int player) {
+		Bot bot = new Bot(player, random.split());
+
+		if (virtualBuilder != null) {
+			Thread thread;
+			try {
+				thread = (Thread) unstarted.invoke(virtualBuilder, bot);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Could not create a virtual thread", e);
+			}
+
+			thread.setName("bot-" + player);
+			threads.add(thread);
+			thread.start();
+		} else {
+			share(bot);
+		}
+
+		started++;
+	}
+
+	/**
+	 * Hands a bot to one of the shared platform threads, starting the threads
+	 * with the first bot
+	 *
+	 * @param bot
+	 *            Bot to run
+	 */
+	private void share(Bot bot) {
+		if (shares.isEmpty()) {
+			for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+				final List<Bot> share = new ArrayList<Bot>();
+				shares.add(share);
+
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						runShare(share);
+					}
+				}, "bots-" + i);
+				thread.setDaemon(true);
+				threads.add(thread);
+				thread.start();
+			}
+		}
+
+		List<Bot> share = shares.get(started % shares.size());
+		synchronized (share) {
+			share.add(bot);
+		}
+	}
+
+	/**
+	 * Main loop of a shared platform thread, stepping each of its bots once
+	 * per frame
+	 *
+	 * @param share
+	 *            Bots of the thread
+	 */
+	private void runShare(List<Bot> share) {
+		long next = System.nanoTime();
+
+		while (running) {
+			synchronized (share) {
+				for (int i = 0; i < share.size(); i++) {
+					share.get(i).step();
+				}
+			}
+
+			next += FRAME_TIME * 1000000L;
+			long wait;
+			while (running && (wait = next - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+		}
+	}
+
+	/**
+	 * Stops every bot and waits for their threads to end
+	 *
+	 * @throws InterruptedException
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Checks whether the bots run on virtual threads
+	 *
+	 * @return true if every bot has a virtual thread, false if the bots share
+	 *         platform threads
+	 */
+	public boolean isVirtual() {
+		return virtualBuilder != null;
+	}
+
+	/**
+	 * Gets the number of inputs the bots have queued
+	 *
+	 * @return Number of inputs
+	 */
+	public long getOffered() {
+		return offered.get();
+	}
+
+	/**
+	 * Gets the number of inputs dropped because the queue was full
+	 *
+	 * @return Number of inputs
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * A scripted bot controlling one player
+	 */
+	private class Bot implements Runnable {
+		private final int player;
+		private final SplittableRandom random;
+
+		// Current action, its direction and the frames left of it
+		private int action = WALK;
+		private int dirX;
+		private int dirY;
+		private int frames;
+
+		private Bot(int player, SplittableRandom random) {
+			this.player = player;
+			this.random = random;
+		}
+
+		@Override
+		public void run() {
+			try {
+				// Spread the bots over a frame so they do not all wake at once
+				Thread.sleep(random.nextInt(FRAME_TIME));
+
+				while (running) {
+					step();
+					Thread.sleep(FRAME_TIME);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Makes one frame of input and offers it to the queue
+		 */
+		private void step() {
+			if (queue.offer(player, nextInput(), System.nanoTime())) {
+				offered.incrementAndGet();
+			} else {
+				dropped.incrementAndGet();
+			}
+		}
+
+		/**
+		 * Advances the script by one frame
+		 *
+		 * @return Packed input of the frame
+		 */
+		private int nextInput() {
+			if (--frames <= 0) {
+				int roll = random.nextInt(10);
+				action = roll < 6 ? WALK : roll < 9 ? FIGHT : TALK;
+				dirX = random.nextInt(3) - 1;
+				dirY = random.nextInt(3) - 1;
+				frames = action == TALK ? 1 : 20 + random.nextInt(60);
+			}
+
+			switch (action) {
+			case FIGHT:
+				// Swing every few frames while closing in
+				return InputRecorder.pack(dirX, dirY, frames % 4 == 0 ? 1 : 0, 0);
+			case TALK:
+				return InputRecorder.pack(0, 0, 0, 1);
+			default:
+				return InputRecorder.pack(dirX, dirY, 0, 0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Loads a world headless, adds many players and drives each of them with a
+ * bot from a {@link BotDriver}. The world is ticked at a fixed rate on the
+ * main thread, which drains the bots' input from an {@link InputQueue} at the
+ * start of every tick. Reports percentiles of tick time and of the delay from
+ * a bot making an input to the tick that applied it.
+ */
+public class BotLoadTest {
+
+	/** Width of one bucket of the input delay histogram, in microseconds */
+	public static final int DELAY_BUCKET = 100;
+	/** Number of buckets of the input delay histogram, the last one open ended */
+	public static final int DELAY_BUCKETS = 10000;
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args
+	 *            "--bots count", "--seconds duration", "--tick-rate ticks per
+	 *            second", "--assets dir" and "--seed seed", all optional
+	 */
+	public static void main(String[] args) throws SlickException, InterruptedException {
+		int bots = 1000;
+		int seconds = 10;
+		int tickRate = GameServer.DEFAULT_TICK_RATE;
+		String assets = World.ASSETS;
+		long seed = 1;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("--bots"))
+				bots = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--seconds"))
+				seconds = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--tick-rate"))
+				tickRate = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--assets"))
+				assets = args[i + 1].endsWith("/") ? args[i + 1] : args[i + 1] + "/";
+			else if (args[i].equals("--seed"))
+				seed = Long.parseLong(args[i + 1]);
+		}
+
+		World world = new World(AssetLoader.load(assets, true), seed);
+		world.removePlayer(world.getPlayer());
+
+		for (int i = 0; i < bots; i++) {
+			world.addPlayer();
+		}
+
+		List<Player> players = world.getPlayers();
+		int tickTime = 1000 / tickRate;
+
+		// Room for two ticks of input from every bot
+		int frames = 2 * (tickTime / BotDriver.FRAME_TIME + 1);
+		InputQueue queue = new InputQueue(Integer.highestOneBit(bots * frames - 1) << 1);
+
+		BotDriver driver = new BotDriver(queue, seed);
+		for (int i = 0; i < bots; i++) {
+			driver.start(i);
+		}
+
+		// Latest movement and pending actions of every player
+		int[] inputs = new int[bots];
+		int[] actions = new int[bots];
+		Arrays.fill(inputs, InputRecorder.pack(0, 0, 0, 0));
+
+		int ticks = seconds * tickRate;
+		long[] tickNanos = new long[ticks];
+		long[] lateNanos = new long[ticks];
+		long[] delays = new long[DELAY_BUCKETS];
+		long applied = 0;
+
+		long period = tickTime * 1000000L;
+		long nextTick = System.nanoTime() + period;
+
+		// The first second warms up the JIT and is left out of the results
+		for (int tick = -tickRate; tick < ticks; tick++) {
+			long wait;
+			while ((wait = nextTick - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			long start = System.nanoTime();
+			long late = start - nextTick;
+			nextTick += period;
+
+			while (queue.poll()) {
+				int player = queue.getPolledPlayer();
+				int input = queue.getPolledInput();
+
+				inputs[player] = input;
+				actions[player] |= input & (InputRecorder.ATTACK_BIT | InputRecorder.TALK_BIT);
+
+				if (tick >= 0) {
+					long delay = (start - queue.getPolledTime()) / 1000 / DELAY_BUCKET;
+					delays[(int) Math.min(DELAY_BUCKETS - 1, Math.max(0, delay))]++;
+					applied++;
+				}
+			}
+
+			world.startTick(tickTime);
+
+			for (int i = 0; i < bots; i++) {
+				int input = inputs[i] | actions[i];
+				actions[i] = 0;
+
+				world.applyInput(players.get(i), Math.max(-1, Math.min(1, InputRecorder.dirX(input))),
+						Math.max(-1, Math.min(1, InputRecorder.dirY(input))), InputRecorder.attack(input),
+						InputRecorder.talk(input), tickTime);
+			}
+
+			world.finishTick(tickTime);
+
+			if (tick >= 0) {
+				tickNanos[tick] = System.nanoTime() - start;
+				lateNanos[tick] = late;
+			}
+		}
+
+		driver.stop();
+		world.getZones().shutdown();
+
+		Arrays.sort(tickNanos);
+		Arrays.sort(lateNanos);
+
+		System.out.printf("%d bots on %s threads, %d ticks at %d/s%n", bots,
+				driver.isVirtual() ? "virtual" : "platform", ticks, tickRate);
+		System.out.printf("Tick time: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+				percentile(tickNanos, 0.5) / 1e6, percentile(tickNanos, 0.99) / 1e6,
+				percentile(tickNanos, 0.999) / 1e6, tickNanos[ticks - 1] / 1e6);
+		System.out.printf("Tick start lateness: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+				percentile(lateNanos, 0.5) / 1e6, percentile(lateNanos, 0.99) / 1e6, lateNanos[ticks - 1] / 1e6);
+		System.out.printf("Input delay: p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms%n", histogramPercentile(delays, 0.5),
+				histogramPercentile(delays, 0.99), histogramPercentile(delays, 0.999));
+		System.out.printf("Inputs: %d queued, %d applied after warm-up, %d dropped (queue full)%n",
+				driver.getOffered(), applied, driver.getDropped());
+	}
+
+	/**
+	 * Reads a percentile from sorted samples
+	 *
+	 * @param sorted
+	 *            Samples in ascending order
+	 * @param fraction
+	 *            Percentile between 0 and 1
+	 * @return Sample at the percentile
+	 */
+	private static long percentile(long[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+	}
+
+	/**
+	 * Reads a percentile from the input delay histogram
+	 *
+	 * @param histogram
+	 *            Sample count of every bucket
+	 * @param fraction
+	 *            Percentile between 0 and 1
+	 * @return Upper edge of the bucket holding the percentile, in milliseconds
+	 */
+	private static double histogramPercentile(long[] histogram, double fraction) {
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+
+		long target = (long) Math.ceil(fraction * total);
+		long seen = 0;
+
+		for (int i = 0; i < histogram.length; i++) {
+			seen += histogram[i];
+
+			if (seen >= target) {
+				return (i + 1) * DELAY_BUCKET / 1000.0;
+			}
+		}
+
+		return histogram.length * DELAY_BUCKET / 1000.0;
+	}
+
+}
@@ -26,6 +26,9 @@ public class Camera {
 	/** The camera's y-coordinate in the world, in terms of tile position. */
 	private int yTile;
 
+	/** Whether the latest update changed the camera's position */
+	private boolean moved;
+
 	/**
 	 * Calculate offset between tile and absolute pixel position of camera for
 	 * the x-axis.
@@ -82,6 +85,15 @@ public class Camera {
 		return this.yPos;
 	}
 
+	/**
+	 * Checks whether the latest update scrolled the view
+	 * 
+	 * @return true if the camera's position changed
+	 */
+	public boolean hasMoved() {
+		return this.moved;
+	}
+
 	/**
 	 * Creates a new Camera object and makes it follow the player by default.
 	 */
@@ -94,8 +106,12 @@ public class Camera {
 	 */
 	public void update() throws SlickException {
 		// Calculates absolute pixel position and tile position of camera.
-		this.xPos = (int) getCenterViewX();
-		this.yPos = (int) getCenterViewY();
+		int xPos = (int) getCenterViewX();
+		int yPos = (int) getCenterViewY();
+
+		this.moved = xPos != this.xPos || yPos != this.yPos;
+		this.xPos = xPos;
+		this.yPos = yPos;
 
 		this.xTile = calculateXTile(xPos);
 		this.yTile = calculateYTile(yPos);
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * Resolves every attack made during a tick in a single pass. Units queue their
+ * attack intents while they update; the resolver then rolls each attacker's
+ * damage once, applies all damage, and only then handles deaths and respawns.
+ * Every unit therefore sees the same world state during the update loop and
+ * the outcome does not depend on the order units are stored in.
+ */
+public class CombatResolver {
+
+	/** Initial number of intents that can be queued before growing */
+	public static final int INITIAL_CAPACITY = 64;
+
+	// Queued attack intents
+	private Unit[] attackers = new Unit[INITIAL_CAPACITY];
+	private Unit[] targets = new Unit[INITIAL_CAPACITY];
+	private int[] damages = new int[INITIAL_CAPACITY];
+	private int count;
+
+	/** Number of times combat has been resolved, used to roll once per tick */
+	private long round;
+
+	/**
+	 * Queues an attack to be resolved at the end of the tick. Attackers still
+	 * on cooldown are ignored, so they cost nothing.
+	 * 
+	 * @param attacker
+	 *            Unit making the attack
+	 * @param target
+	 *            Unit being attacked
+	 */
+	public void queueAttack(Unit attacker, Unit target) {
+		if (!attacker.isCooldownReady()) {
+			return;
+		}
+
+		if (count == attackers.length) {
+			attackers = Arrays.copyOf(attackers, count * 2);
+			targets = Arrays.copyOf(targets, count * 2);
+			damages = Arrays.copyOf(damages, count * 2);
+		}
+
+		attackers[count] = attacker;
+		targets[count] = target;
+		count++;
+	}
+
+	/**
+	 * Moves every queued attack to another resolver, in the order they were
+	 * queued. Used to gather the attacks queued by each zone into the world's
+	 * resolver.
+	 * 
+	 * @param combat
+	 *            Resolver to move the attacks to
+	 */
+	public void transferTo(CombatResolver combat) {
+		for (int i = 0; i < count; i++) {
+			combat.queueAttack(attackers[i], targets[i]);
+			attackers[i] = null;
+			targets[i] = null;
+		}
+
+		count = 0;
+	}
+
+	/**
+	 * Resolves every queued attack
+	 * 
+	 * @param world
+	 *            Dependency on the world object
+	 */
+	public void resolve(World world) {
+		round++;
+
+		// Each attacker rolls once per tick, however many targets it has
+		for (int i = 0; i < count; i++) {
+			Unit attacker = attackers[i];
+
+			if (attacker.getCombatRound() != round) {
+				attacker.setCombatRound(round);
+				attacker.setCombatDamage(attacker.attack());
+			}
+			damages[i] = attacker.getCombatDamage();
+		}
+
+		// Apply all damage before anyone dies or respawns
+		for (int i = 0; i < count; i++) {
+			if (damages[i] > 0) {
+				targets[i].onAttack(world, damages[i]);
+				world.getEvents().publish(EventBus.DAMAGE, attackers[i], targets[i], damages[i]);
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			Unit target = targets[i];
+
+			if (target.getHP() < 1 && !target.isDead()) {
+				target.onDeath(world);
+				world.getEvents().publish(EventBus.DEATH, attackers[i], target, 0);
+			}
+
+			attackers[i] = null;
+			targets[i] = null;
+		}
+
+		count = 0;
+	}
+
+}
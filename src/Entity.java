@@ -17,9 +17,13 @@ public abstract class Entity {
 
 	/** Stores the entitiy's index number in the ArrayList. */
 	private int index;
+	/** Stores the ID that identifies the entity to network clients. */
+	private int networkID;
 
 	/** Stores the unit's sprite. */
 	private Image sprite;
+	/** Stores the sprite mirrored to face left, made when first needed. */
+	private Image flippedSprite;
 
 	/**
 	 * Gets entity's x-coordinate in the world.
@@ -69,6 +73,26 @@ public abstract class Entity {
 		return this.index;
 	}
 
+	/**
+	 * Sets the ID that identifies the entity to network clients. It never
+	 * changes while the entity is in the world.
+	 * 
+	 * @param networkID
+	 *            Network ID of entity
+	 */
+	public void setNetworkID(int networkID) {
+		this.networkID = networkID;
+	}
+
+	/**
+	 * Gets the ID that identifies the entity to network clients
+	 * 
+	 * @return Network ID of entity
+	 */
+	public int getNetworkID() {
+		return this.networkID;
+	}
+
 	/**
 	 * Sets entity's sprite.
 	 * 
@@ -77,7 +101,28 @@ public abstract class Entity {
 	 * @throws SlickException
 	 */
 	public void setSprite(String sprite) throws SlickException {
+		FlightEvents.AssetLoad event = new FlightEvents.AssetLoad();
+		event.begin();
+
 		this.sprite = new Image(sprite);
+		this.flippedSprite = null;
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = sprite;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Sets entity's sprite to an already loaded image.
+	 * 
+	 * @param sprite
+	 *            The loaded sprite asset
+	 */
+	public void setSprite(Image sprite) {
+		this.sprite = sprite;
+		this.flippedSprite = null;
 	}
 
 	/**
@@ -89,6 +134,19 @@ public abstract class Entity {
 		return this.sprite;
 	}
 
+	/**
+	 * Gets entity's sprite mirrored to face left. The copy shares the sprite's
+	 * texture and is kept, so only the first call allocates.
+	 * 
+	 * @return Returns the flipped sprite, or null if the entity has no sprite
+	 */
+	public Image getFlippedSprite() {
+		if (flippedSprite == null && sprite != null) {
+			flippedSprite = sprite.getFlippedCopy(true, false);
+		}
+		return flippedSprite;
+	}
+
 	/**
 	 * Renders entity on the game screen.
 	 * 
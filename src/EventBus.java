@@ -0,0 +1,283 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single producer, multiple consumer ring buffer of game events. The
+ * simulation publishes damage, death, pickup and talk events into
+ * preallocated slots without allocating. Each subscriber keeps its own read
+ * position and drains events in batches, either on its own thread with
+ * {@link #drain(Subscription)} or at the end of the tick with
+ * {@link #dispatch()}.
+ *
+ * The producer never waits. When the ring is full, subscriptions drained by
+ * the tick thread are drained on the spot, and a subscriber on its own thread
+ * that is a full ring behind loses its oldest events, which are counted in
+ * {@link Subscription#getDropped()}.
+ */
+public class EventBus {
+
+	// Event types
+	public static final int DAMAGE = 0;
+	public static final int DEATH = 1;
+	public static final int PICKUP = 2;
+	public static final int TALK = 3;
+
+	/** Default number of slots in the ring buffer, must be a power of two */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Receives events drained from the bus
+	 */
+	public interface Listener {
+		/**
+		 * Handles one event
+		 *
+		 * @param type
+		 *            Type of the event
+		 * @param source
+		 *            Entity that caused the event
+		 * @param target
+		 *            Entity the event happened to
+		 * @param value
+		 *            Damage dealt, or item ID for pickups
+		 */
+		void onEvent(int type, Entity source, Entity target, int value);
+	}
+
+	/**
+	 * A subscriber's read position in the bus
+	 */
+	public static class Subscription {
+		private final Listener listener;
+		/** Whether the tick thread drains this subscription in dispatch() */
+		private final boolean dispatched;
+		/** Sequence of the next event to read */
+		private final AtomicLong sequence;
+		/** Number of events skipped because the subscriber fell behind */
+		private final AtomicLong dropped = new AtomicLong();
+
+		private Subscription(Listener listener, boolean dispatched, long start) {
+			this.listener = listener;
+			this.dispatched = dispatched;
+			this.sequence = new AtomicLong(start);
+		}
+
+		/**
+		 * Gets the number of events the subscriber missed by falling a full
+		 * ring behind
+		 *
+		 * @return Number of dropped events
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+	}
+
+	// Slots of the ring buffer, one array per event field
+	private final int[] types;
+	private final Entity[] sources;
+	private final Entity[] targets;
+	private final int[] values;
+	private final int mask;
+
+	/** Sequence of the next event to publish */
+	private final AtomicLong published = new AtomicLong();
+	/** Every subscriber of the bus, replaced as a whole when it changes */
+	private volatile Subscription[] subscriptions = new Subscription[0];
+
+	/** Creates a bus with the default capacity */
+	public EventBus() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a bus
+	 *
+	 * @param capacity
+	 *            Number of slots, must be a power of two
+	 */
+	public EventBus(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+
+		types = new int[capacity];
+		sources = new Entity[capacity];
+		targets = new Entity[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Subscribes a listener that is drained by the tick thread at the end of
+	 * every tick
+	 *
+	 * @param listener
+	 *            Listener to subscribe
+	 * @return The listener's subscription
+	 */
+	public Subscription subscribe(Listener listener) {
+		return subscribe(listener, true);
+	}
+
+	/**
+	 * Subscribes a listener
+	 *
+	 * @param listener
+	 *            Listener to subscribe
+	 * @param dispatched
+	 *            true to be drained by the tick thread, false to be drained by
+	 *            the subscriber's own thread through drain()
+	 * @return The listener's subscription
+	 */
+	public synchronized Subscription subscribe(Listener listener, boolean dispatched) {
+		Subscription subscription = new Subscription(listener, dispatched, published.get());
+		Subscription[] updated = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+		updated[updated.length - 1] = subscription;
+		subscriptions = updated;
+		return subscription;
+	}
+
+	/**
+	 * Removes a subscription
+	 *
+	 * @param subscription
+	 *            Subscription to remove
+	 */
+	public synchronized void unsubscribe(Subscription subscription) {
+		Subscription[] updated = new Subscription[subscriptions.length];
+		int count = 0;
+
+		for (Subscription current : subscriptions) {
+			if (current != subscription) {
+				updated[count++] = current;
+			}
+		}
+
+		subscriptions = Arrays.copyOf(updated, count);
+	}
+
+	/**
+	 * Publishes an event without waiting for any subscriber. Must only be
+	 * called from the tick thread.
+	 *
+	 * @param type
+	 *            Type of the event
+	 * @param source
+	 *            Entity that caused the event
+	 * @param target
+	 *            Entity the event happened to
+	 * @param value
+	 *            Damage dealt, or item ID for pickups
+	 */
+	public void publish(int type, Entity source, Entity target, int value) {
+		long sequence = published.get();
+
+		if (sequence - slowestSubscriber(sequence) > mask) {
+			freeSlot(sequence);
+		}
+
+		int slot = (int) sequence & mask;
+		types[slot] = type;
+		sources[slot] = source;
+		targets[slot] = target;
+		values[slot] = value;
+
+		published.lazySet(sequence + 1);
+	}
+
+	/**
+	 * Finds the read position of the subscriber furthest behind
+	 *
+	 * @param sequence
+	 *            Sequence about to be published
+	 * @return Lowest read position of any subscriber
+	 */
+	private long slowestSubscriber(long sequence) {
+		long slowest = sequence;
+
+		for (Subscription subscription : subscriptions) {
+			slowest = Math.min(slowest, subscription.sequence.get());
+		}
+
+		return slowest;
+	}
+
+	/**
+	 * Moves every subscriber off the slot an event is about to overwrite. The
+	 * tick thread's own subscribers are drained, since nobody else will, and
+	 * the others skip the event in the slot and count it as dropped.
+	 *
+	 * @param sequence
+	 *            Sequence about to be published
+	 */
+	private void freeSlot(long sequence) {
+		long overwritten = sequence - mask - 1;
+
+		for (Subscription subscription : subscriptions) {
+			if (subscription.dispatched) {
+				if (subscription.sequence.get() <= overwritten) {
+					drain(subscription);
+				}
+				continue;
+			}
+
+			// The subscriber may be reading the event at the same time, in
+			// which case one of the two moves it on and the other sees so
+			long behind = subscription.sequence.get();
+			while (behind <= overwritten) {
+				if (subscription.sequence.compareAndSet(behind, overwritten + 1)) {
+					subscription.dropped.addAndGet(overwritten + 1 - behind);
+					break;
+				}
+				behind = subscription.sequence.get();
+			}
+		}
+	}
+
+	/**
+	 * Drains every subscription that is drained by the tick thread
+	 */
+	public void dispatch() {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.dispatched) {
+				drain(subscription);
+			}
+		}
+	}
+
+	/**
+	 * Hands every event published since the last drain to a subscriber. Each
+	 * event is copied out of its slot and then claimed by moving the read
+	 * position past it, so an event the tick thread skipped and overwrote
+	 * meanwhile is never handed on.
+	 *
+	 * @param subscription
+	 *            Subscription to drain
+	 * @return Number of events drained
+	 */
+	public int drain(Subscription subscription) {
+		long sequence = subscription.sequence.get();
+		long end = published.get();
+		int drained = 0;
+
+		while (sequence < end) {
+			int slot = (int) sequence & mask;
+			int type = types[slot];
+			Entity source = sources[slot];
+			Entity target = targets[slot];
+			int value = values[slot];
+
+			if (subscription.sequence.compareAndSet(sequence, sequence + 1)) {
+				subscription.listener.onEvent(type, source, target, value);
+				drained++;
+				sequence++;
+			} else {
+				sequence = subscription.sequence.get();
+			}
+		}
+
+		return drained;
+	}
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Prints every event published by the world, for debugging play sessions.
+ */
+public class EventLog implements EventBus.Listener {
+
+	@Override
+	public void onEvent(int type, Entity source, Entity target, int value) {
+		switch (type) {
+		case EventBus.DAMAGE:
+			System.out.println(describe(source) + " hit " + describe(target) + " for " + value);
+			break;
+		case EventBus.DEATH:
+			System.out.println(describe(target) + " died");
+			break;
+		case EventBus.PICKUP:
+			System.out.println(describe(source) + " picked up item " + value);
+			break;
+		case EventBus.TALK:
+			System.out.println(describe(source) + " talked to " + describe(target));
+			break;
+		}
+	}
+
+	/**
+	 * Describes an entity by its name where it has one
+	 * 
+	 * @param entity
+	 *            Entity to describe
+	 * @return Description of the entity
+	 */
+	private static String describe(Entity entity) {
+		if (entity instanceof Player)
+			return "Player";
+		if (entity instanceof Unit)
+			return ((Unit) entity).getName();
+
+		return "Item";
+	}
+
+}
@@ -0,0 +1,349 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the game, recorded alongside the JVM's own
+ * events such as garbage collections and lock contention. Start a recording
+ * with -XX:StartFlightRecording, or with jcmd on a running game.
+ *
+ * Every event is created, timed and committed where it happens. The events of
+ * the tick are started with start(), which hands out one shared, never
+ * committed instance while their type is not recorded, so the tick allocates
+ * no events outside recordings. Events faster than their threshold never have
+ * their fields filled in. The thresholds can be changed with the
+ * recording's settings, for example rpg.TickPhase#threshold=0 ms.
+ *
+ * Removals and attacks happen many times a tick in a busy world and are
+ * recorded one by one, so they are off unless a recording opts into them, for
+ * example with rpg.Attack#enabled=true.
+ */
+public final class FlightEvents {
+
+	// Names of the tick phases
+	public static final String PHASE_TIMERS = "Timers";
+	public static final String PHASE_INPUT = "Input";
+	public static final String PHASE_CAMERA = "Camera";
+	public static final String PHASE_ZONES = "Zones";
+	public static final String PHASE_SEPARATION = "Separation";
+	public static final String PHASE_COMBAT = "Combat";
+	public static final String PHASE_GHOSTS = "Ghosts";
+	public static final String PHASE_EVENTS = "Events";
+	public static final String PHASE_INTEREST = "Interest";
+	public static final String PHASE_VIEW = "View";
+
+	// Kinds of nearby queries
+	public static final String QUERY_ITEMS = "Items";
+	public static final String QUERY_VILLAGERS = "Villagers";
+	public static final String QUERY_MONSTERS = "Monsters";
+
+	private FlightEvents() {
+	}
+
+	/**
+	 * One phase of a world tick
+	 */
+	@Name("rpg.TickPhase")
+	@Label("Tick Phase")
+	@Category({ "RPG", "Tick" })
+	@Description("A phase of a world tick, such as updating the zones or resolving combat")
+	@Threshold("1 ms")
+	@StackTrace(false)
+	public static class TickPhase extends Event {
+		/** Event handed out while phases are not recorded */
+		private static final TickPhase DISABLED = new TickPhase();
+
+		@Label("Phase")
+		public String phase;
+
+		/**
+		 * Creates a phase event and starts timing it
+		 *
+		 * @return Started event
+		 */
+		public static TickPhase start() {
+			if (!DISABLED.isEnabled()) {
+				return DISABLED;
+			}
+
+			TickPhase event = new TickPhase();
+			event.begin();
+			return event;
+		}
+
+		/**
+		 * Stops timing the phase and commits it if it is recorded
+		 *
+		 * @param phase
+		 *            Name of the phase
+		 */
+		public void finish(String phase) {
+			if (this == DISABLED) {
+				return;
+			}
+
+			end();
+
+			if (shouldCommit()) {
+				this.phase = phase;
+				commit();
+			}
+		}
+	}
+
+	/**
+	 * Drawing of the world on the local screen
+	 */
+	@Name("rpg.Render")
+	@Label("Render")
+	@Category("RPG")
+	@Description("Drawing of the map, the visible entities and the status panel")
+	@Threshold("5 ms")
+	@StackTrace(false)
+	public static class Render extends Event {
+		/** Event handed out while drawing is not recorded */
+		private static final Render DISABLED = new Render();
+
+		@Label("Visible Entities")
+		public int visible;
+
+		/**
+		 * Creates a render event and starts timing it
+		 *
+		 * @return Started event
+		 */
+		public static Render start() {
+			if (!DISABLED.isEnabled()) {
+				return DISABLED;
+			}
+
+			Render event = new Render();
+			event.begin();
+			return event;
+		}
+
+		/**
+		 * Stops timing the drawing and commits it if it is recorded
+		 *
+		 * @param visible
+		 *            Number of entities drawn
+		 */
+		public void finish(int visible) {
+			if (this == DISABLED) {
+				return;
+			}
+
+			end();
+
+			if (shouldCommit()) {
+				this.visible = visible;
+				commit();
+			}
+		}
+	}
+
+	/**
+	 * Search for the entities of a kind near a position
+	 */
+	@Name("rpg.NearbyQuery")
+	@Label("Nearby Query")
+	@Category("RPG")
+	@Description("Search for the items, villagers or monsters within a range of a position")
+	@Threshold("1 ms")
+	@StackTrace(false)
+	public static class NearbyQuery extends Event {
+		/** Event handed out while queries are not recorded */
+		private static final NearbyQuery DISABLED = new NearbyQuery();
+
+		@Label("Kind")
+		public String kind;
+
+		@Label("Radius")
+		@Description("Range of the search in pixels")
+		public int radius;
+
+		@Label("Results")
+		public int results;
+
+		/**
+		 * Creates a query event and starts timing it
+		 *
+		 * @return Started event
+		 */
+		public static NearbyQuery start() {
+			if (!DISABLED.isEnabled()) {
+				return DISABLED;
+			}
+
+			NearbyQuery event = new NearbyQuery();
+			event.begin();
+			return event;
+		}
+
+		/**
+		 * Stops timing the query and commits it if it is recorded
+		 *
+		 * @param kind
+		 *            Kind of entities searched for
+		 * @param radius
+		 *            Range of the search in pixels
+		 * @param results
+		 *            Number of entities found
+		 */
+		public void finish(String kind, int radius, int results) {
+			if (this == DISABLED) {
+				return;
+			}
+
+			end();
+
+			if (shouldCommit()) {
+				this.kind = kind;
+				this.radius = radius;
+				this.results = results;
+				commit();
+			}
+		}
+	}
+
+	/**
+	 * Removal of an entity from the world
+	 */
+	@Name("rpg.Remove")
+	@Label("Remove Entity")
+	@Category("RPG")
+	@Description("Removal of a dead unit or a picked up item from the world")
+	@Enabled(false)
+	@Threshold("0 ms")
+	@StackTrace(false)
+	public static class Remove extends Event {
+		/** Event handed out while removals are not recorded */
+		private static final Remove DISABLED = new Remove();
+
+		@Label("Network ID")
+		public int entity;
+
+		@Label("Type")
+		public String type;
+
+		/**
+		 * Creates a removal event and starts timing it
+		 *
+		 * @return Started event
+		 */
+		public static Remove start() {
+			if (!DISABLED.isEnabled()) {
+				return DISABLED;
+			}
+
+			Remove event = new Remove();
+			event.begin();
+			return event;
+		}
+
+		/**
+		 * Stops timing the removal and commits it if it is recorded
+		 *
+		 * @param entity
+		 *            Entity removed
+		 */
+		public void finish(Entity entity) {
+			if (this == DISABLED) {
+				return;
+			}
+
+			end();
+
+			if (shouldCommit()) {
+				this.entity = entity.getNetworkID();
+				this.type = entity.getClass().getSimpleName();
+				commit();
+			}
+		}
+	}
+
+	/**
+	 * Damage dealt to a unit
+	 */
+	@Name("rpg.Attack")
+	@Label("Attack")
+	@Category("RPG")
+	@Description("Damage taken by a unit, including the reaction of the unit to it")
+	@Enabled(false)
+	@Threshold("0 ms")
+	@StackTrace(false)
+	public static class Attack extends Event {
+		/** Event handed out while attacks are not recorded */
+		private static final Attack DISABLED = new Attack();
+
+		@Label("Network ID")
+		public int target;
+
+		@Label("Type")
+		public String type;
+
+		@Label("Damage")
+		public int damage;
+
+		@Label("HP Left")
+		public int hp;
+
+		/**
+		 * Creates an attack event and starts timing it
+		 *
+		 * @return Started event
+		 */
+		public static Attack start() {
+			if (!DISABLED.isEnabled()) {
+				return DISABLED;
+			}
+
+			Attack event = new Attack();
+			event.begin();
+			return event;
+		}
+
+		/**
+		 * Stops timing the attack and commits it if it is recorded
+		 *
+		 * @param target
+		 *            Unit attacked, after taking the damage
+		 * @param damage
+		 *            Damage dealt
+		 */
+		public void finish(Unit target, int damage) {
+			if (this == DISABLED) {
+				return;
+			}
+
+			end();
+
+			if (shouldCommit()) {
+				this.target = target.getNetworkID();
+				this.type = target.getClass().getSimpleName();
+				this.damage = damage;
+				this.hp = target.getHP();
+				commit();
+			}
+		}
+	}
+
+	/**
+	 * Loading of an image asset
+	 */
+	@Name("rpg.AssetLoad")
+	@Label("Asset Load")
+	@Category("RPG")
+	@Description("Reading and decoding of an image from the assets")
+	@Threshold("0 ms")
+	public static class AssetLoad extends Event {
+		@Label("Path")
+		public String path;
+	}
+
+}
@@ -0,0 +1,137 @@
+import org.lwjgl.input.Keyboard;
+import org.lwjgl.opengl.Display;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * Slows the game loop down while nothing on the screen changes. The world is
+ * drawn at full rate while the player presses keys or the world's render
+ * version changes. Once a frame is drawn twice at the same version, it is
+ * copied into an image, and later frames show the copy instead of drawing the
+ * world again, and wait up to an idle frame time before the next frame.
+ *
+ * The wait checks the window's input and the world's latest snapshot every
+ * few milliseconds, and ends as soon as a key event arrives or the world
+ * changes, so a key press reaches the simulation as quickly as it would at
+ * full rate, and the frame after it is drawn in full.
+ */
+public class FramePacer {
+
+	/** Longest time an idle frame waits for input, in milliseconds */
+	public static final int IDLE_FRAME_TIME = 100;
+	/** Time between checks for input while waiting, in milliseconds */
+	public static final int POLL_INTERVAL = 2;
+
+	/** Copy of the latest frame, shown while the world does not change */
+	private Image frame;
+	/** Render version of the latest frame drawn in full */
+	private long drawnVersion = -1;
+	/** Whether the frame holds the world at the drawn version */
+	private boolean cached;
+	/** Whether the current frame should be copied once it is drawn */
+	private boolean capture;
+	/** Whether the current frame shows the copy and then waits */
+	private boolean idle;
+
+	/**
+	 * Creates a pacer for a screen
+	 *
+	 * @param width
+	 *            Width of the screen in pixels
+	 * @param height
+	 *            Height of the screen in pixels
+	 */
+	public FramePacer(int width, int height) throws SlickException {
+		frame = new Image(width, height);
+	}
+
+	/**
+	 * Decides whether the world must be drawn this frame
+	 *
+	 * @param version
+	 *            Render version of the world
+	 * @param active
+	 *            Whether the player is giving input, which keeps the full
+	 *            rate
+	 * @return true if the world should be drawn, false if the copy of an
+	 *         earlier frame can be shown with drawCachedFrame
+	 */
+	public boolean beginFrame(long version, boolean active) {
+		capture = false;
+		idle = false;
+
+		if (active || version != drawnVersion) {
+			drawnVersion = version;
+			cached = false;
+			return true;
+		}
+
+		if (!cached) {
+			// The world held still for a frame, so this one is kept
+			capture = true;
+			return true;
+		}
+
+		idle = true;
+		return false;
+	}
+
+	/**
+	 * Finishes drawing the world, copying the screen if the frame will be
+	 * shown again. Must be called before anything that changes every frame,
+	 * such as the performance overlay, is drawn.
+	 *
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 */
+	public void endFrame(Graphics g) {
+		if (capture) {
+			g.copyArea(frame, 0, 0);
+			cached = true;
+		}
+	}
+
+	/**
+	 * Shows the copy of the latest frame
+	 *
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 */
+	public void drawCachedFrame(Graphics g) {
+		g.drawImage(frame, 0, 0);
+	}
+
+	/**
+	 * Waits out the rest of an idle frame, returning early once a key event
+	 * arrives or the world publishes a new render version. Does nothing if the
+	 * frame was drawn in full.
+	 *
+	 * @param world
+	 *            World whose snapshots are drawn
+	 */
+	public void waitIfIdle(World world) {
+		if (!idle) {
+			return;
+		}
+
+		long deadline = System.nanoTime() + IDLE_FRAME_TIME * 1000000L;
+
+		while (System.nanoTime() < deadline) {
+			// Fetches the window's events into the keyboard queue, where the
+			// next frame's input poll finds them
+			Display.processMessages();
+			if (Keyboard.getNumKeyboardEvents() > 0 || world.getSnapshot().getVersion() != drawnVersion) {
+				return;
+			}
+
+			try {
+				Thread.sleep(POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+}
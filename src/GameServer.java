@@ -0,0 +1,534 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Runs a headless world as an authoritative server. Clients connect over TCP
+ * and all sockets are served by one thread through a non-blocking selector,
+ * which also steps the world at a fixed tick rate.
+ *
+ * Every connection gets its own player. Clients send one byte of input per
+ * frame, packed like the frames of an {@link InputRecorder} recording. The
+ * latest movement is applied every tick, and an attack or talk is applied if
+ * any byte since the last tick asked for one. After every tick each client is
+ * sent the entities around its player, found by the world's
+ * {@link InterestManager} and delta-compressed by a
+ * {@link ReplicationEncoder} against the last state the client acknowledged.
+ *
+ * Server messages start with a type byte. WELCOME is followed by the network
+ * ID of the client's player. STATE is a message of the
+ * {@link ReplicationEncoder}. Clients acknowledge a state by sending the ACK
+ * byte followed by the state's sequence, which input bytes never start with.
+ */
+public class GameServer {
+
+	// Server message types
+	public static final int WELCOME = 1;
+	public static final int STATE = 2;
+
+	/** Client byte that starts an acknowledgement */
+	public static final int ACK = 0x80;
+
+	// Entity kinds in state messages
+	public static final int KIND_PLAYER = 0;
+	public static final int KIND_VILLAGER = 1;
+	public static final int KIND_PASSIVE = 2;
+	public static final int KIND_AGGRESSIVE = 3;
+	public static final int KIND_ITEM = 4;
+
+	/** Size of a welcome message in bytes */
+	public static final int WELCOME_BYTES = 5;
+	/** Size of an acknowledgement in bytes */
+	public static final int ACK_BYTES = 5;
+
+	/** Default port the server listens on */
+	public static final int DEFAULT_PORT = 7777;
+	/** Default number of ticks per second */
+	public static final int DEFAULT_TICK_RATE = 20;
+	/** Number of ticks the server may fall behind before it stops catching up */
+	public static final int MAX_TICKS_BEHIND = 5;
+	/** Size of each connection's input buffer */
+	public static final int INPUT_BUFFER_SIZE = 256;
+	// Distance from a player to the edges of the region its client is sent,
+	// matching the area the client's screen shows
+	public static final int VIEW_HALF_WIDTH = RPG.SCREEN_WIDTH / 2 + World.VIEW_MARGIN;
+	public static final int VIEW_HALF_HEIGHT = (RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT) / 2 + World.VIEW_MARGIN;
+
+	/** World simulated by the server */
+	private final World world;
+	/** Length of a tick in milliseconds */
+	private final int tickTime;
+	/** Encoder of the state messages */
+	private final ReplicationEncoder replication = new ReplicationEncoder();
+
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	/** Every connected client, in the order they joined */
+	private final List<Connection> connections = new ArrayList<Connection>();
+
+	private volatile boolean running = true;
+	/** Number of connected clients, readable from any thread */
+	private volatile int connectionCount;
+
+	// Tick statistics
+	private volatile long ticks;
+	private volatile long tickNanos;
+	private volatile long maxTickNanos;
+
+	/**
+	 * Starts listening for clients
+	 *
+	 * @param world
+	 *            World to simulate
+	 * @param address
+	 *            Address to listen on, port 0 picks any free port
+	 * @param tickRate
+	 *            Number of ticks per second
+	 * @throws IOException
+	 */
+	public GameServer(World world, InetSocketAddress address, int tickRate) throws IOException {
+		this.world = world;
+		this.tickTime = 1000 / tickRate;
+
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.configureBlocking(false);
+		server.bind(address, 1024);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Serves clients and steps the world until stopped
+	 *
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		long period = tickTime * 1000000L;
+		long nextTick = System.nanoTime() + period;
+
+		try {
+			while (running) {
+				long wait = (nextTick - System.nanoTime()) / 1000000;
+
+				if (wait > 0) {
+					selector.select(wait);
+				} else {
+					selector.selectNow();
+				}
+
+				handleKeys();
+
+				long now = System.nanoTime();
+				if (now >= nextTick) {
+					tick();
+					nextTick += period;
+
+					// Skip ticks rather than running them back to back after
+					// a long stall
+					if (now - nextTick > MAX_TICKS_BEHIND * period) {
+						nextTick = now + period;
+					}
+				}
+			}
+		} finally {
+			for (Connection connection : new ArrayList<Connection>(connections)) {
+				close(connection);
+			}
+
+			server.close();
+			selector.close();
+		}
+	}
+
+	/**
+	 * Stops the server. Safe to call from any thread.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Handles every socket that is ready
+	 *
+	 * @throws IOException
+	 */
+	private void handleKeys() throws IOException {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+
+			if (!key.isValid()) {
+				continue;
+			}
+
+			if (key.isAcceptable()) {
+				accept();
+				continue;
+			}
+
+			Connection connection = (Connection) key.attachment();
+
+			try {
+				if (key.isReadable()) {
+					read(connection);
+				}
+
+				if (key.isValid() && key.isWritable()) {
+					flush(connection);
+				}
+			} catch (IOException e) {
+				// A client that breaks its connection only loses its player
+				close(connection);
+			}
+		}
+	}
+
+	/**
+	 * Accepts every pending client and gives each a player
+	 *
+	 * @throws IOException
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			Player player;
+			try {
+				player = world.addPlayer();
+			} catch (SlickException e) {
+				channel.close();
+				System.out.println(e.getMessage());
+				continue;
+			}
+
+			Connection connection = new Connection(channel, player);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			connections.add(connection);
+			connectionCount = connections.size();
+
+			ByteBuffer welcome = ByteBuffer.allocate(WELCOME_BYTES);
+			welcome.put((byte) WELCOME).putInt(player.getNetworkID()).flip();
+
+			try {
+				// The welcome is always the first message of a connection
+				connection.sending = welcome;
+				flush(connection);
+			} catch (IOException e) {
+				close(connection);
+			}
+		}
+	}
+
+	/**
+	 * Reads every input byte and acknowledgement a client has sent
+	 *
+	 * @param connection
+	 *            Client to read from
+	 * @throws IOException
+	 */
+	private void read(Connection connection) throws IOException {
+		ByteBuffer in = connection.in;
+		int read;
+
+		while ((read = connection.channel.read(in)) > 0) {
+			in.flip();
+
+			while (in.hasRemaining()) {
+				int input = in.get(in.position()) & 0xFF;
+
+				if (input == ACK) {
+					if (in.remaining() < ACK_BYTES) {
+						// Wait for the rest of the acknowledgement
+						break;
+					}
+
+					in.get();
+					replication.acknowledge(connection.receiver, in.getInt());
+					continue;
+				}
+
+				in.get();
+
+				// Movement follows the latest frame, actions are kept until
+				// the next tick so that short key presses are not lost
+				connection.input = input;
+				connection.actions |= input & (InputRecorder.ATTACK_BIT | InputRecorder.TALK_BIT);
+			}
+
+			in.compact();
+		}
+
+		if (read < 0) {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Steps the world by one tick using every client's input, then broadcasts
+	 * the new state
+	 *
+	 * @throws IOException
+	 */
+	private void tick() throws IOException {
+		long start = System.nanoTime();
+
+		world.startTick(tickTime);
+
+		for (int i = 0; i < connections.size(); i++) {
+			Connection connection = connections.get(i);
+			int input = connection.input | connection.actions;
+			connection.actions = 0;
+
+			world.applyInput(connection.player, clamp(InputRecorder.dirX(input)), clamp(InputRecorder.dirY(input)),
+					InputRecorder.attack(input), InputRecorder.talk(input), tickTime);
+		}
+
+		world.finishTick(tickTime);
+		replication.capture(world);
+
+		InterestManager interest = world.getInterest();
+
+		for (int i = connections.size() - 1; i >= 0; i--) {
+			Connection connection = connections.get(i);
+			Player player = connection.player;
+
+			interest.observe(connection.observer, player.getPosX() - VIEW_HALF_WIDTH,
+					player.getPosY() - VIEW_HALF_HEIGHT, player.getPosX() + VIEW_HALF_WIDTH,
+					player.getPosY() + VIEW_HALF_HEIGHT);
+
+			try {
+				send(connection, replication.encode(connection.receiver, connection.observer.getVisible()));
+			} catch (IOException e) {
+				close(connection);
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		tickNanos += elapsed;
+		maxTickNanos = Math.max(maxTickNanos, elapsed);
+		ticks++;
+	}
+
+	/**
+	 * Limits a movement direction sent by a client to the range a keyboard
+	 * can produce
+	 *
+	 * @param dir
+	 *            Direction sent by the client
+	 * @return Direction between -1 and 1
+	 */
+	private static double clamp(double dir) {
+		return Math.max(-1, Math.min(1, dir));
+	}
+
+	/**
+	 * Sends a state message to a client without blocking. A state replaces
+	 * any older state that has not started sending yet, so slow clients skip
+	 * states rather than fall further behind.
+	 *
+	 * @param connection
+	 *            Client to send to
+	 * @param state
+	 *            Encoded state, released once sent or skipped
+	 * @throws IOException
+	 */
+	private void send(Connection connection, ReplicationEncoder.Packet state) throws IOException {
+		if (connection.sending == null) {
+			connection.sending = state.getBuffer().duplicate();
+			connection.sendingState = state;
+		} else {
+			if (connection.waiting != null) {
+				replication.release(connection.waiting);
+			}
+			connection.waiting = state;
+		}
+
+		flush(connection);
+	}
+
+	/**
+	 * Writes as much of a client's outgoing messages as the socket accepts
+	 *
+	 * @param connection
+	 *            Client to write to
+	 * @throws IOException
+	 */
+	private void flush(Connection connection) throws IOException {
+		while (connection.sending != null) {
+			connection.channel.write(connection.sending);
+
+			if (connection.sending.hasRemaining()) {
+				// Finish the message once the socket has room again
+				connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+
+			if (connection.sendingState != null) {
+				replication.release(connection.sendingState);
+			}
+
+			connection.sendingState = connection.waiting;
+			connection.sending = connection.waiting == null ? null : connection.waiting.getBuffer().duplicate();
+			connection.waiting = null;
+		}
+
+		connection.key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Disconnects a client and removes its player from the world
+	 *
+	 * @param connection
+	 *            Client to disconnect
+	 */
+	private void close(Connection connection) {
+		if (!connections.remove(connection)) {
+			return;
+		}
+		connectionCount = connections.size();
+
+		world.removePlayer(connection.player);
+		connection.key.cancel();
+
+		if (connection.sendingState != null) {
+			replication.release(connection.sendingState);
+		}
+		if (connection.waiting != null) {
+			replication.release(connection.waiting);
+		}
+
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Gets the port the server listens on
+	 *
+	 * @return Port number
+	 * @throws IOException
+	 */
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) server.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Gets the number of connected clients
+	 *
+	 * @return Number of clients
+	 */
+	public int getConnectionCount() {
+		return connectionCount;
+	}
+
+	/**
+	 * Gets the number of ticks run so far
+	 *
+	 * @return Number of ticks
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Gets the average time taken by a tick, including the broadcast
+	 *
+	 * @return Average tick time in nanoseconds
+	 */
+	public long getAverageTickNanos() {
+		return ticks == 0 ? 0 : tickNanos / ticks;
+	}
+
+	/**
+	 * Gets the longest time taken by a tick, including the broadcast
+	 *
+	 * @return Longest tick time in nanoseconds
+	 */
+	public long getMaxTickNanos() {
+		return maxTickNanos;
+	}
+
+	/**
+	 * A connected client
+	 */
+	private static class Connection {
+		private final SocketChannel channel;
+		private final Player player;
+		private final ByteBuffer in = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+		/** Snapshots the client has acknowledged */
+		private final ReplicationEncoder.Receiver receiver = new ReplicationEncoder.Receiver();
+		/** Entities around the client's player */
+		private final InterestManager.Observer observer = new InterestManager.Observer();
+		private SelectionKey key;
+
+		/** Latest input byte received */
+		private int input = InputRecorder.pack(0, 0, 0, 0);
+		/** Attack and talk bits received since the last tick */
+		private int actions;
+
+		/** Message being written */
+		private ByteBuffer sending;
+		/** State the message being written belongs to, null for a welcome */
+		private ReplicationEncoder.Packet sendingState;
+		/** Newest state waiting for the current message to finish */
+		private ReplicationEncoder.Packet waiting;
+
+		private Connection(SocketChannel channel, Player player) {
+			this.channel = channel;
+			this.player = player;
+		}
+	}
+
+	/**
+	 * Runs a server on a headless world.
+	 *
+	 * @param args
+	 *            "--port port", "--tick-rate ticks per second", "--assets dir"
+	 *            and "--seed seed", all optional
+	 */
+	public static void main(String[] args) throws IOException, SlickException {
+		int port = DEFAULT_PORT;
+		int tickRate = DEFAULT_TICK_RATE;
+		String assets = World.ASSETS;
+		long seed = System.nanoTime();
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("--port"))
+				port = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--tick-rate"))
+				tickRate = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--assets"))
+				assets = args[i + 1].endsWith("/") ? args[i + 1] : args[i + 1] + "/";
+			else if (args[i].equals("--seed"))
+				seed = Long.parseLong(args[i + 1]);
+		}
+
+		World world = new World(AssetLoader.load(assets, true), seed);
+
+		// Every player on a server belongs to a client
+		world.removePlayer(world.getPlayer());
+
+		GameServer server = new GameServer(world, new InetSocketAddress(port), tickRate);
+		System.out.println("Listening on port " + server.getPort());
+		server.run();
+	}
+
+}
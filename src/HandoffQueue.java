@@ -0,0 +1,121 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of units being handed over to a zone. Any number of
+ * zone workers can offer units at the same time; only the zone's owner polls
+ * them. Every slot carries a sequence number, so producers claim slots with a
+ * single compare-and-set and the consumer sees a slot only once it has been
+ * fully written.
+ */
+public class HandoffQueue {
+
+	// Slots of the ring buffer
+	private final Unit[] units;
+	private final int[] sources;
+	/** Sequence each slot expects next, telling producers and the consumer apart */
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	/** Position of the next slot to claim */
+	private final AtomicLong tail = new AtomicLong();
+	/** Position of the next slot to poll, only touched by the consumer */
+	private long head;
+
+	// Entry read by the last successful poll
+	private Unit polledUnit;
+	private int polledSource;
+
+	/**
+	 * Creates a queue
+	 *
+	 * @param capacity
+	 *            Number of slots, must be a power of two
+	 */
+	public HandoffQueue(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+
+		units = new Unit[capacity];
+		sources = new int[capacity];
+		sequences = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Offers a unit to the queue. Safe to call from any thread.
+	 *
+	 * @param unit
+	 *            Unit being handed over
+	 * @param source
+	 *            Index of the zone handing it over
+	 * @return false if the queue is full
+	 */
+	public boolean offer(Unit unit, int source) {
+		while (true) {
+			long position = tail.get();
+			int slot = (int) position & mask;
+			long sequence = sequences.get(slot);
+
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					units[slot] = unit;
+					sources[slot] = source;
+					sequences.lazySet(slot, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				// The consumer has not freed the slot from the previous lap
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Takes the oldest unit from the queue. Must only be called by the owner
+	 * of the queue.
+	 *
+	 * @return false if the queue is empty, otherwise the unit and its source
+	 *         are available from getPolledUnit and getPolledSource
+	 */
+	public boolean poll() {
+		int slot = (int) head & mask;
+
+		if (sequences.get(slot) != head + 1) {
+			return false;
+		}
+
+		polledUnit = units[slot];
+		polledSource = sources[slot];
+		units[slot] = null;
+		sequences.lazySet(slot, head + units.length);
+		head++;
+
+		return true;
+	}
+
+	/**
+	 * Gets the unit taken by the last successful poll
+	 *
+	 * @return Unit
+	 */
+	public Unit getPolledUnit() {
+		return polledUnit;
+	}
+
+	/**
+	 * Gets the zone that handed over the unit taken by the last successful
+	 * poll
+	 *
+	 * @return Index of the source zone
+	 */
+	public int getPolledSource() {
+		return polledSource;
+	}
+
+}
@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of player input handed to the tick thread. Any
+ * number of input sources, such as bot threads, can offer input at the same
+ * time; only the tick thread polls it. Slots carry sequence numbers like those
+ * of a {@link HandoffQueue}.
+ */
+public class InputQueue {
+
+	// Slots of the ring buffer
+	private final int[] players;
+	private final int[] inputs;
+	private final long[] times;
+	/** Sequence each slot expects next, telling producers and the consumer apart */
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	/** Position of the next slot to claim */
+	private final AtomicLong tail = new AtomicLong();
+	/** Position of the next slot to poll, only touched by the consumer */
+	private long head;
+
+	// Entry read by the last successful poll
+	private int polledPlayer;
+	private int polledInput;
+	private long polledTime;
+
+	/**
+	 * Creates a queue
+	 *
+	 * @param capacity
+	 *            Number of slots, must be a power of two
+	 */
+	public InputQueue(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+
+		players = new int[capacity];
+		inputs = new int[capacity];
+		times = new long[capacity];
+		sequences = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Offers one frame of input. Safe to call from any thread.
+	 *
+	 * @param player
+	 *            Index of the player the input belongs to
+	 * @param input
+	 *            Input packed by {@link InputRecorder#pack}
+	 * @param time
+	 *            Time the input was made, from System.nanoTime
+	 * @return false if the queue is full
+	 */
+	public boolean offer(int player, int input, long time) {
+		while (true) {
+			long position = tail.get();
+			int slot = (int) position & mask;
+			long sequence = sequences.get(slot);
+
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					players[slot] = player;
+					inputs[slot] = input;
+					times[slot] = time;
+					sequences.lazySet(slot, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				// The tick thread has not drained the slot from the previous lap
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Takes the oldest input from the queue. Must only be called by the tick
+	 * thread.
+	 *
+	 * @return false if the queue is empty, otherwise the input is available
+	 *         from getPolledPlayer, getPolledInput and getPolledTime
+	 */
+	public boolean poll() {
+		int slot = (int) head & mask;
+
+		if (sequences.get(slot) != head + 1) {
+			return false;
+		}
+
+		polledPlayer = players[slot];
+		polledInput = inputs[slot];
+		polledTime = times[slot];
+		sequences.lazySet(slot, head + players.length);
+		head++;
+
+		return true;
+	}
+
+	/**
+	 * Gets the player of the input taken by the last successful poll
+	 *
+	 * @return Index of the player
+	 */
+	public int getPolledPlayer() {
+		return polledPlayer;
+	}
+
+	/**
+	 * Gets the input taken by the last successful poll
+	 *
+	 * @return Packed input
+	 */
+	public int getPolledInput() {
+		return polledInput;
+	}
+
+	/**
+	 * Gets the time the input taken by the last successful poll was made
+	 *
+	 * @return Time from System.nanoTime
+	 */
+	public long getPolledTime() {
+		return polledTime;
+	}
+
+}
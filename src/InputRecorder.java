@@ -0,0 +1,170 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records the input that RPG.update passes to World.update every frame, so
+ * that a play session can be replayed exactly by {@link ReplayDriver}.
+ * 
+ * A recording starts with a header (magic number, version and world seed).
+ * Every frame is then one byte of packed input followed by the frame's delta
+ * as a variable length integer. The recording ends with an end marker and a
+ * checksum of the final world state.
+ */
+public class InputRecorder {
+
+	// Header constants
+	public static final int MAGIC = 0x52504752; // "RPGR"
+	public static final int VERSION = 1;
+
+	/** Marks the end of the frames, followed by the world checksum */
+	public static final int END_OF_FRAMES = 0xFF;
+
+	// Bit layout of a packed input byte
+	public static final int DIR_X_SHIFT = 0;
+	public static final int DIR_Y_SHIFT = 2;
+	public static final int DIR_MASK = 3;
+	public static final int ATTACK_BIT = 1 << 4;
+	public static final int TALK_BIT = 1 << 5;
+
+	/** Stream the recording is written to */
+	private DataOutputStream out;
+	/** Number of frames recorded so far */
+	private long frames;
+
+	/**
+	 * Starts a new recording
+	 * 
+	 * @param path
+	 *            File to write the recording to
+	 * @param seed
+	 *            Seed of the world being recorded
+	 * @throws IOException
+	 */
+	public InputRecorder(String path, long seed) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(seed);
+	}
+
+	/**
+	 * Packs one frame of input into a single byte
+	 * 
+	 * @param dirX
+	 *            The player's movement in the x axis (-1, 0 or 1)
+	 * @param dirY
+	 *            The player's movement in the y axis (-1, 0 or 1)
+	 * @param attack
+	 *            One if attack key is pressed
+	 * @param talk
+	 *            One if talk key is pressed
+	 * @return Packed input
+	 */
+	public static int pack(double dirX, double dirY, double attack, double talk) {
+		int input = ((int) dirX + 1) << DIR_X_SHIFT | ((int) dirY + 1) << DIR_Y_SHIFT;
+
+		if (attack == 1)
+			input |= ATTACK_BIT;
+		if (talk == 1)
+			input |= TALK_BIT;
+
+		return input;
+	}
+
+	/**
+	 * Gets the movement in the x axis from a packed input
+	 * 
+	 * @param input
+	 *            Packed input
+	 * @return -1, 0 or 1
+	 */
+	public static double dirX(int input) {
+		return ((input >> DIR_X_SHIFT) & DIR_MASK) - 1;
+	}
+
+	/**
+	 * Gets the movement in the y axis from a packed input
+	 * 
+	 * @param input
+	 *            Packed input
+	 * @return -1, 0 or 1
+	 */
+	public static double dirY(int input) {
+		return ((input >> DIR_Y_SHIFT) & DIR_MASK) - 1;
+	}
+
+	/**
+	 * Gets the attack flag from a packed input
+	 * 
+	 * @param input
+	 *            Packed input
+	 * @return One if attack key was pressed
+	 */
+	public static double attack(int input) {
+		return (input & ATTACK_BIT) != 0 ? 1 : 0;
+	}
+
+	/**
+	 * Gets the talk flag from a packed input
+	 * 
+	 * @param input
+	 *            Packed input
+	 * @return One if talk key was pressed
+	 */
+	public static double talk(int input) {
+		return (input & TALK_BIT) != 0 ? 1 : 0;
+	}
+
+	/**
+	 * Records one frame of input
+	 * 
+	 * @param dirX
+	 *            The player's movement in the x axis (-1, 0 or 1)
+	 * @param dirY
+	 *            The player's movement in the y axis (-1, 0 or 1)
+	 * @param attack
+	 *            One if attack key is pressed
+	 * @param talk
+	 *            One if talk key is pressed
+	 * @param delta
+	 *            Time passed since last frame (milliseconds)
+	 * @throws IOException
+	 */
+	public void record(double dirX, double dirY, double attack, double talk, int delta) throws IOException {
+		out.writeByte(pack(dirX, dirY, attack, talk));
+
+		// Deltas are almost always small, so they are written 7 bits at a time
+		while ((delta & ~0x7F) != 0) {
+			out.writeByte((delta & 0x7F) | 0x80);
+			delta >>>= 7;
+		}
+		out.writeByte(delta);
+
+		frames++;
+	}
+
+	/**
+	 * Ends the recording with a checksum of the final world state
+	 * 
+	 * @param world
+	 *            The recorded world
+	 * @throws IOException
+	 */
+	public void close(World world) throws IOException {
+		out.writeByte(END_OF_FRAMES);
+		out.writeLong(world.getChecksum());
+		out.close();
+	}
+
+	/**
+	 * Gets the number of frames recorded so far
+	 * 
+	 * @return Number of frames
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+}
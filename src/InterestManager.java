@@ -0,0 +1,426 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tracks which entities each observer can see. Entities are kept in a grid of
+ * square cells, and every tick the entities that moved or changed are found
+ * once for all observers. An observer, such as the local camera or a server
+ * client, then looks only at the cells around its region to find the entities
+ * that entered it, left it or changed inside it, so its cost depends on the
+ * activity near it rather than on the size of the world.
+ *
+ * Entities are tracked by network ID. Observers should be updated once per
+ * tick, after {@link #update(World)}, for their update sets to be complete.
+ */
+public class InterestManager {
+
+	/** Default width and height of a cell in pixels */
+	public static final int CELL_SIZE = 4 * Camera.TILE_DIMENSION;
+
+	private static final int NO_CELL = -1;
+
+	// Size of the cell grid
+	private final int columns;
+	private final int rows;
+	/** Width and height of a cell in pixels */
+	private final double cellSize;
+	/** Units of every cell, in row-major order */
+	private final List<List<Entity>> cells = new ArrayList<List<Entity>>();
+	/** Items of every cell, kept apart so item queries skip the units */
+	private final List<List<Entity>> itemCells = new ArrayList<List<Entity>>();
+
+	// State of every tracked entity, indexed by network ID
+	private int[] cellOf = new int[0];
+	private int[] slotOf = new int[0];
+	private double[] lastX = new double[0];
+	private double[] lastY = new double[0];
+	private int[] lastHP = new int[0];
+	/** Tick each entity last changed in */
+	private int[] changed = new int[0];
+	// Stamps of the observer being updated, marking its old and new entities
+	private int[] wasVisible = new int[0];
+	private int[] isVisible = new int[0];
+
+	/** Number of ticks tracked so far */
+	private int tick;
+	/** Stamp of the latest observer update */
+	private int stamp;
+
+	/**
+	 * Creates an empty grid covering a map
+	 *
+	 * @param mapWidth
+	 *            Width of the map in pixels
+	 * @param mapHeight
+	 *            Height of the map in pixels
+	 * @param cellSize
+	 *            Width and height of a cell in pixels
+	 */
+	public InterestManager(double mapWidth, double mapHeight, double cellSize) {
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int) Math.ceil(mapWidth / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(mapHeight / cellSize));
+
+		for (int i = 0; i < columns * rows; i++) {
+			cells.add(new ArrayList<Entity>());
+			itemCells.add(new ArrayList<Entity>());
+		}
+	}
+
+	/**
+	 * Starts tracking an entity
+	 *
+	 * @param entity
+	 *            Entity to track
+	 */
+	public void add(Entity entity) {
+		int ID = entity.getNetworkID();
+		if (ID >= cellOf.length) {
+			grow(ID + 1);
+		}
+
+		place(entity, cellAt(entity.getPosX(), entity.getPosY()));
+		lastX[ID] = entity.getPosX();
+		lastY[ID] = entity.getPosY();
+		lastHP[ID] = entity instanceof Unit ? ((Unit) entity).getHP() : 0;
+		changed[ID] = tick;
+	}
+
+	/**
+	 * Stops tracking an entity
+	 *
+	 * @param entity
+	 *            Entity to forget
+	 */
+	public void remove(Entity entity) {
+		int ID = entity.getNetworkID();
+		if (ID < cellOf.length && cellOf[ID] != NO_CELL) {
+			unplace(entity);
+			changed[ID] = tick;
+		}
+	}
+
+	/**
+	 * Finds the units that moved or changed HP during the tick and moves
+	 * those that crossed into another cell
+	 *
+	 * @param world
+	 *            World whose units are tracked
+	 */
+	public void update(World world) {
+		tick++;
+
+		// Items never move, so only units are checked
+		track(world.getPlayers());
+		track(world.getVillagerList());
+		track(world.getPassiveList());
+		track(world.getAggressiveList());
+	}
+
+	/**
+	 * Checks a list of units for changes
+	 *
+	 * @param units
+	 *            Units to check
+	 */
+	private void track(List<? extends Unit> units) {
+		for (int i = 0; i < units.size(); i++) {
+			Unit unit = units.get(i);
+			int ID = unit.getNetworkID();
+
+			if (ID >= cellOf.length || cellOf[ID] == NO_CELL) {
+				continue;
+			}
+
+			double x = unit.getPosX();
+			double y = unit.getPosY();
+
+			if (x == lastX[ID] && y == lastY[ID] && unit.getHP() == lastHP[ID]) {
+				continue;
+			}
+
+			lastX[ID] = x;
+			lastY[ID] = y;
+			lastHP[ID] = unit.getHP();
+			changed[ID] = tick;
+
+			int cell = cellAt(x, y);
+			if (cell != cellOf[ID]) {
+				unplace(unit);
+				place(unit, cell);
+			}
+		}
+	}
+
+	/**
+	 * Updates what an observer sees of a rectangular region
+	 *
+	 * @param observer
+	 *            Observer to update
+	 * @param minX
+	 *            Left edge of the region
+	 * @param minY
+	 *            Top edge of the region
+	 * @param maxX
+	 *            Right edge of the region
+	 * @param maxY
+	 *            Bottom edge of the region
+	 */
+	public void observe(Observer observer, double minX, double minY, double maxX, double maxY) {
+		stamp++;
+		observer.entered.clear();
+		observer.left.clear();
+		observer.updated.clear();
+
+		List<Entity> previous = observer.visible;
+		List<Entity> next = observer.spare;
+		next.clear();
+
+		for (int i = 0; i < previous.size(); i++) {
+			wasVisible[previous.get(i).getNetworkID()] = stamp;
+		}
+
+		int firstColumn = column(minX);
+		int lastColumn = column(maxX);
+		int firstRow = row(minY);
+		int lastRow = row(maxY);
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				// The cell's items, then its units
+				for (int kind = 0; kind < 2; kind++) {
+					List<Entity> cell = (kind == 0 ? itemCells : cells).get(row * columns + column);
+
+					for (int i = 0; i < cell.size(); i++) {
+						Entity entity = cell.get(i);
+						double x = entity.getPosX();
+						double y = entity.getPosY();
+
+						if (x < minX || x > maxX || y < minY || y > maxY) {
+							continue;
+						}
+
+						int ID = entity.getNetworkID();
+						next.add(entity);
+						isVisible[ID] = stamp;
+
+						if (wasVisible[ID] != stamp) {
+							observer.entered.add(entity);
+						} else if (changed[ID] == tick) {
+							observer.updated.add(entity);
+						}
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < previous.size(); i++) {
+			Entity entity = previous.get(i);
+
+			if (isVisible[entity.getNetworkID()] != stamp) {
+				observer.left.add(entity);
+			}
+		}
+
+		observer.visible = next;
+		observer.spare = previous;
+	}
+
+	/**
+	 * Updates what an observer sees of the area shown by a camera
+	 *
+	 * @param observer
+	 *            Observer to update
+	 * @param camera
+	 *            Camera whose view is observed
+	 * @param margin
+	 *            Pixels added around the view, so that entities partly on
+	 *            screen are included
+	 */
+	public void observe(Observer observer, Camera camera, int margin) {
+		observe(observer, camera.getXPos() - margin, camera.getYPos() - margin,
+				camera.getXPos() + RPG.SCREEN_WIDTH + margin,
+				camera.getYPos() + RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT + margin);
+	}
+
+	/**
+	 * Collects the items within a certain pixel range, looking only at the
+	 * item lists of the cells the range overlaps. Items never move, so the
+	 * cell each is kept in is always its own.
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby items are added to
+	 */
+	public void collectItems(int pixels, double posX, double posY, List<Item> nearBy) {
+		int firstColumn = column(posX - pixels);
+		int lastColumn = column(posX + pixels);
+		int firstRow = row(posY - pixels);
+		int lastRow = row(posY + pixels);
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				List<Entity> cell = itemCells.get(row * columns + column);
+
+				for (int i = 0; i < cell.size(); i++) {
+					Item item = (Item) cell.get(i);
+					double a = item.getPosX() - posX;
+					double b = item.getPosY() - posY;
+
+					if (a * a + b * b < (double) pixels * pixels) {
+						nearBy.add(item);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds an entity to a cell, in the cell's item list if it is an item
+	 *
+	 * @param entity
+	 *            Entity to add
+	 * @param cell
+	 *            Index of the cell
+	 */
+	private void place(Entity entity, int cell) {
+		List<Entity> entities = entity instanceof Item ? itemCells.get(cell) : cells.get(cell);
+		cellOf[entity.getNetworkID()] = cell;
+		slotOf[entity.getNetworkID()] = entities.size();
+		entities.add(entity);
+	}
+
+	/**
+	 * Removes an entity from its cell by moving the last entity of the cell
+	 * into its place
+	 *
+	 * @param entity
+	 *            Entity to remove
+	 */
+	private void unplace(Entity entity) {
+		int ID = entity.getNetworkID();
+		List<Entity> entities = entity instanceof Item ? itemCells.get(cellOf[ID]) : cells.get(cellOf[ID]);
+		Entity last = entities.remove(entities.size() - 1);
+
+		if (last != entity) {
+			slotOf[last.getNetworkID()] = slotOf[ID];
+			entities.set(slotOf[ID], last);
+		}
+
+		cellOf[ID] = NO_CELL;
+	}
+
+	/**
+	 * Finds the cell containing a position. Positions off the map belong to
+	 * the edge cells.
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Index of the cell
+	 */
+	private int cellAt(double x, double y) {
+		return row(y) * columns + column(x);
+	}
+
+	/**
+	 * Finds the grid column of a position, clamped to the grid
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @return Column of the position
+	 */
+	private int column(double x) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellSize)));
+	}
+
+	/**
+	 * Finds the grid row of a position, clamped to the grid
+	 *
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Row of the position
+	 */
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+	}
+
+	/**
+	 * Grows the per-entity arrays to hold an ID
+	 *
+	 * @param size
+	 *            Number of IDs to hold
+	 */
+	private void grow(int size) {
+		int length = Math.max(size, cellOf.length * 2);
+		int old = cellOf.length;
+
+		cellOf = Arrays.copyOf(cellOf, length);
+		Arrays.fill(cellOf, old, length, NO_CELL);
+		slotOf = Arrays.copyOf(slotOf, length);
+		lastX = Arrays.copyOf(lastX, length);
+		lastY = Arrays.copyOf(lastY, length);
+		lastHP = Arrays.copyOf(lastHP, length);
+		changed = Arrays.copyOf(changed, length);
+		wasVisible = Arrays.copyOf(wasVisible, length);
+		isVisible = Arrays.copyOf(isVisible, length);
+	}
+
+	/**
+	 * Something that sees part of the world, with the entities it sees and how
+	 * they changed at its latest update
+	 */
+	public static class Observer {
+		private List<Entity> visible = new ArrayList<Entity>();
+		/** List reused for the next visible set */
+		private List<Entity> spare = new ArrayList<Entity>();
+		private final List<Entity> entered = new ArrayList<Entity>();
+		private final List<Entity> left = new ArrayList<Entity>();
+		private final List<Entity> updated = new ArrayList<Entity>();
+
+		/**
+		 * Gets every entity in the observer's region
+		 *
+		 * @return Visible entities
+		 */
+		public List<Entity> getVisible() {
+			return visible;
+		}
+
+		/**
+		 * Gets the entities that came into the region
+		 *
+		 * @return Entered entities
+		 */
+		public List<Entity> getEntered() {
+			return entered;
+		}
+
+		/**
+		 * Gets the entities that left the region or the world
+		 *
+		 * @return Left entities
+		 */
+		public List<Entity> getLeft() {
+			return left;
+		}
+
+		/**
+		 * Gets the entities that stayed in the region and moved or changed HP
+		 * during the latest tick
+		 *
+		 * @return Updated entities
+		 */
+		public List<Entity> getUpdated() {
+			return updated;
+		}
+	}
+
+}
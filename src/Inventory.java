@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the items carried by the player. Which item types are held is
+ * kept in a bitset indexed by item ID, so checking, adding and removing an
+ * item type takes constant time no matter how many item types exist. The
+ * items themselves are also kept in pickup order for display.
+ */
+public class Inventory {
+
+	/** Bits per word of the bitset */
+	private static final int WORD_BITS = 64;
+
+	/** One bit per item ID, set while at least one such item is held */
+	private long[] held = new long[1];
+	/** Number of items held of each item ID */
+	private int[] counts = new int[WORD_BITS];
+	/** Items held, in the order they were picked up */
+	private final List<Item> items = new ArrayList<Item>();
+	/** Read-only view of the held items */
+	private final List<Item> view = Collections.unmodifiableList(items);
+
+	/** Incremented every time the contents change */
+	private int version;
+
+	/**
+	 * Adds an item to the inventory
+	 *
+	 * @param item
+	 *            Item to add
+	 */
+	public void add(Item item) {
+		int ID = item.getID();
+		ensureCapacity(ID);
+
+		counts[ID]++;
+		held[ID / WORD_BITS] |= 1L << ID;
+		items.add(item);
+		version++;
+	}
+
+	/**
+	 * Removes one item of a given ID from the inventory
+	 *
+	 * @param ID
+	 *            Unique identifier of the item
+	 * @return true if an item was removed
+	 */
+	public boolean remove(int ID) {
+		if (!contains(ID)) {
+			return false;
+		}
+
+		if (--counts[ID] == 0) {
+			held[ID / WORD_BITS] &= ~(1L << ID);
+		}
+
+		// Removes the most recently picked up item of that ID
+		for (int i = items.size() - 1; i >= 0; i--) {
+			if (items.get(i).getID() == ID) {
+				items.remove(i);
+				break;
+			}
+		}
+
+		version++;
+		return true;
+	}
+
+	/**
+	 * Checks whether the inventory holds an item of a given ID
+	 *
+	 * @param ID
+	 *            Unique identifier of the item
+	 * @return true if such an item is held
+	 */
+	public boolean contains(int ID) {
+		int word = ID / WORD_BITS;
+
+		return ID >= 0 && word < held.length && (held[word] & (1L << ID)) != 0;
+	}
+
+	/**
+	 * Gets the number of items held of a given ID
+	 *
+	 * @param ID
+	 *            Unique identifier of the item
+	 * @return Number of such items held
+	 */
+	public int count(int ID) {
+		return contains(ID) ? counts[ID] : 0;
+	}
+
+	/**
+	 * Finds the next item ID held by the inventory, used to visit every held
+	 * item type without looking at the ones that are not held
+	 *
+	 * @param from
+	 *            First item ID to look at
+	 * @return Next held item ID, or -1 if there is none
+	 */
+	public int nextHeld(int from) {
+		int word = from / WORD_BITS;
+
+		if (from < 0 || word >= held.length) {
+			return -1;
+		}
+
+		long bits = held[word] & (-1L << from);
+
+		while (true) {
+			if (bits != 0) {
+				return word * WORD_BITS + Long.numberOfTrailingZeros(bits);
+			}
+
+			if (++word == held.length) {
+				return -1;
+			}
+
+			bits = held[word];
+		}
+	}
+
+	/**
+	 * Gets the held items in the order they were picked up
+	 *
+	 * @return Read-only list of items
+	 */
+	public List<Item> getItems() {
+		return view;
+	}
+
+	/**
+	 * Gets the version of the inventory, which changes whenever an item is
+	 * added or removed. Anything derived from the inventory only needs to be
+	 * recomputed when the version differs from the one it was computed at.
+	 *
+	 * @return Version of the contents
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Grows the bitset and counts so that they can hold an item ID
+	 *
+	 * @param ID
+	 *            Unique identifier of the item
+	 */
+	private void ensureCapacity(int ID) {
+		int words = ID / WORD_BITS + 1;
+
+		if (words > held.length) {
+			held = Arrays.copyOf(held, words);
+			counts = Arrays.copyOf(counts, words * WORD_BITS);
+		}
+	}
+
+}
@@ -1,3 +1,4 @@
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
 /**
@@ -32,12 +33,12 @@ public class Item extends Entity {
 	 * @param posY
 	 *            Position of the item on the world's y-axis
 	 * @param sprite
-	 *            File path of item sprite
+	 *            Sprite of item
 	 * @param ID
 	 *            Unique identifier for given item
 	 * @throws SlickException
 	 */
-	public Item(int posX, int posY, String sprite, int ID) throws SlickException {
+	public Item(int posX, int posY, Image sprite, int ID) throws SlickException {
 		this.setPosX(posX);
 		this.setPosY(posY);
 		this.setSprite(sprite);
@@ -62,21 +63,41 @@ public class Item extends Entity {
 	public void itemCollected(Player player) {
 		player.getInventory().add(this);
 
-		// Based on the ID of the item, there will be a different effect
-		switch (this.ID) {
-		case AMULET_ID:
-			player.setMaxHP(player.getMaxHP() + AMULET_BUFF);
-			player.setHP(player.getHP() + AMULET_BUFF);
-			break;
-		case SWORD_ID:
-			player.setDamage(player.getDamage() + SWORD_BUFF);
-			break;
-		case TOME_ID:
-			player.setCooldown(player.getCooldown() - TOME_BUFF);
-			break;
-		case ELIXIR_ID:
-			break;
-		}
+		// The amulet also heals the player by the HP it adds
+		player.setHP(player.getHP() + getHPBuff(this.ID));
+	}
+
+	/**
+	 * Gets the max HP an item of a given type adds to its holder
+	 * 
+	 * @param ID
+	 *            Unique identifier of the item type
+	 * @return HP buff
+	 */
+	public static int getHPBuff(int ID) {
+		return ID == AMULET_ID ? AMULET_BUFF : 0;
+	}
+
+	/**
+	 * Gets the damage an item of a given type adds to its holder
+	 * 
+	 * @param ID
+	 *            Unique identifier of the item type
+	 * @return Damage buff
+	 */
+	public static int getDamageBuff(int ID) {
+		return ID == SWORD_ID ? SWORD_BUFF : 0;
+	}
+
+	/**
+	 * Gets the cooldown an item of a given type takes off its holder
+	 * 
+	 * @param ID
+	 *            Unique identifier of the item type
+	 * @return Cooldown buff
+	 */
+	public static int getCooldownBuff(int ID) {
+		return ID == TOME_ID ? TOME_BUFF : 0;
 	}
 
 }
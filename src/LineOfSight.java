@@ -0,0 +1,146 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Answers whether one tile of the map can be seen from another. A line is
+ * walked from tile to tile with Bresenham's algorithm, and is blocked by any
+ * tile between the two that blocks sight. The tiles the line starts and ends
+ * on never block it, since units always see out of and into the tiles they
+ * stand on.
+ *
+ * The map does not change, so the answer for a pair of tiles never does
+ * either, and is kept in a direct-mapped cache keyed by the pair. A later
+ * pair that maps to the same slot replaces the earlier one. Slots are read and
+ * written atomically, so zone workers share the cache without locks; two
+ * workers racing on a slot at worst walk the same line twice.
+ */
+public class LineOfSight {
+
+	/** Bits of the index of a cache slot */
+	public static final int CACHE_BITS = 16;
+
+	/** Multiplier that spreads the keys of neighbouring pairs over the cache */
+	private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+	/** Whether each tile blocks sight, in row-major order */
+	private final boolean[] opaque;
+	// Size of the map in tiles
+	private final int columns;
+	private final int rows;
+	/** Width and height of a tile in pixels */
+	private final double tileSize;
+
+	/**
+	 * Cached answers, each the key of its pair plus one shifted left by one,
+	 * with the lowest bit set if the line is clear, or 0 for an empty slot
+	 */
+	private final AtomicLongArray cache = new AtomicLongArray(1 << CACHE_BITS);
+
+	/**
+	 * Reads which tiles of a map block sight
+	 *
+	 * @param map
+	 *            Map to read
+	 * @param tileSize
+	 *            Width and height of a tile in pixels
+	 */
+	public LineOfSight(WorldMap map, double tileSize) {
+		this.columns = map.getWidth();
+		this.rows = map.getHeight();
+		this.tileSize = tileSize;
+		this.opaque = new boolean[columns * rows];
+
+		TileProperties properties = map.getTileProperties();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				opaque[row * columns + column] = properties.blocksSight(map.getTileId(column, row, World.LAYER_ID));
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of the tile under a position, for use with isClear.
+	 * Positions off the map take the nearest tile on it.
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Row-major index of the tile
+	 */
+	public int tileAt(double x, double y) {
+		int column = Math.max(0, Math.min(columns - 1, (int) Math.floor(x / tileSize)));
+		int row = Math.max(0, Math.min(rows - 1, (int) Math.floor(y / tileSize)));
+
+		return row * columns + column;
+	}
+
+	/**
+	 * Checks whether a tile can be seen from another
+	 *
+	 * @param from
+	 *            Index of the tile looked from, given by tileAt
+	 * @param to
+	 *            Index of the tile looked at, given by tileAt
+	 * @return true if no tile between the two blocks sight
+	 */
+	public boolean isClear(int from, int to) {
+		if (from == to) {
+			return true;
+		}
+
+		long key = (long) from * opaque.length + to + 1;
+		int slot = (int) ((key * HASH_MULTIPLIER) >>> (64 - CACHE_BITS));
+		long entry = cache.get(slot);
+
+		if (entry >>> 1 == key) {
+			return (entry & 1) != 0;
+		}
+
+		boolean clear = walk(from, to);
+		cache.set(slot, key << 1 | (clear ? 1 : 0));
+
+		return clear;
+	}
+
+	/**
+	 * Walks the line between two tiles
+	 *
+	 * @param from
+	 *            Index of the first tile
+	 * @param to
+	 *            Index of the last tile, other than the first
+	 * @return true if no tile between the two blocks sight
+	 */
+	private boolean walk(int from, int to) {
+		int column = from % columns;
+		int row = from / columns;
+		int endColumn = to % columns;
+		int endRow = to / columns;
+
+		int width = Math.abs(endColumn - column);
+		int height = -Math.abs(endRow - row);
+		int stepX = column < endColumn ? 1 : -1;
+		int stepY = row < endRow ? 1 : -1;
+		int error = width + height;
+
+		while (true) {
+			int doubled = 2 * error;
+			if (doubled >= height) {
+				error += height;
+				column += stepX;
+			}
+			if (doubled <= width) {
+				error += width;
+				row += stepY;
+			}
+
+			if (column == endColumn && row == endRow) {
+				return true;
+			}
+			if (opaque[row * columns + column]) {
+				return false;
+			}
+		}
+	}
+
+}
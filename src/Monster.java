@@ -11,26 +11,69 @@ public abstract class Monster extends Unit {
 	public static final int PASSIVE_AI = -1;
 	public static final int AGGRESSIVE_AI = 1;
 
+	/** Spawner whose camp the monster belongs to, if any */
+	private MonsterSpawner spawner;
+
+	/**
+	 * Gets the spawner whose camp the monster belongs to
+	 * 
+	 * @return Spawner of the monster, or null if it was placed by the map
+	 */
+	public MonsterSpawner getSpawner() {
+		return spawner;
+	}
+
+	/**
+	 * Sets the spawner whose camp the monster belongs to
+	 * 
+	 * @param spawner
+	 *            Spawner of the monster, or null
+	 */
+	public void setSpawner(MonsterSpawner spawner) {
+		this.spawner = spawner;
+	}
+
+	@Override
+	public void onDeath(World world) {
+		super.onDeath(world);
+		world.recycle(this);
+	}
+
 	/**
-	 * Chooses suitable x and y movement based on the current position of the
-	 * player relative to the monster
+	 * Chooses suitable x movement based on the current position of the player
+	 * relative to the monster. Each axis is returned on its own so that the
+	 * tick allocates nothing.
 	 * 
 	 * @param posX
 	 *            Position of the player in the x axis
+	 * @param distance
+	 *            Distance between the player and the monster
+	 * @param aggressive
+	 *            1 if aggressive and -1 if passive
+	 * @return The dirX of the monster
+	 */
+	public double AIDirX(double posX, double distance, int aggressive) {
+		double a = posX - this.getPosX();
+
+		return aggressive * a / distance;
+	}
+
+	/**
+	 * Chooses suitable y movement based on the current position of the player
+	 * relative to the monster
+	 * 
 	 * @param posY
 	 *            Position of the player in the y axis
 	 * @param distance
 	 *            Distance between the player and the monster
 	 * @param aggressive
 	 *            1 if aggressive and -1 if passive
-	 * @return An array with the dirX and dirY of the monster
+	 * @return The dirY of the monster
 	 */
-	public double[] AI(double posX, double posY, double distance, int aggressive) {
-		double a = posX - this.getPosX();
+	public double AIDirY(double posY, double distance, int aggressive) {
 		double b = posY - this.getPosY();
 
-		double[] movement = { aggressive * a / distance, aggressive * b / distance };
-		return movement;
+		return aggressive * b / distance;
 	}
 
 }
\ No newline at end of file
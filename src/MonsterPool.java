@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * Keeps the dead monsters of every type that spawners respawn, so that a
+ * respawn brings back an instance, with its sprite, timers and random stream,
+ * instead of creating a new one. Each type has its own stack of instances,
+ * sized up front for every monster of the type, so releasing and acquiring
+ * allocate nothing.
+ */
+public class MonsterPool {
+
+	/** Dead monsters of every pooled type, or null for types not pooled */
+	private final Monster[][] pools;
+	/** Number of dead monsters of every type */
+	private final int[] counts;
+
+	/**
+	 * Creates a pool that keeps no type
+	 *
+	 * @param types
+	 *            Number of unit types in the attributes file
+	 */
+	public MonsterPool(int types) {
+		this.pools = new Monster[types][];
+		this.counts = new int[types];
+	}
+
+	/**
+	 * Starts keeping the dead monsters of a type, with room for a number of
+	 * them
+	 *
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @param capacity
+	 *            Number of dead monsters the pool holds before growing
+	 */
+	public void reserve(int typeID, int capacity) {
+		if (pools[typeID] == null) {
+			pools[typeID] = new Monster[Math.max(capacity, 1)];
+		} else if (pools[typeID].length < capacity) {
+			pools[typeID] = Arrays.copyOf(pools[typeID], capacity);
+		}
+	}
+
+	/**
+	 * Keeps a dead monster for reuse, if its type is pooled
+	 *
+	 * @param monster
+	 *            Monster that has died and left the world
+	 * @return true if the monster was kept
+	 */
+	public boolean release(Monster monster) {
+		int typeID = monster.getTypeID();
+		Monster[] pool = pools[typeID];
+
+		if (pool == null) {
+			return false;
+		}
+
+		if (counts[typeID] == pool.length) {
+			pool = Arrays.copyOf(pool, 2 * pool.length);
+			pools[typeID] = pool;
+		}
+
+		pool[counts[typeID]++] = monster;
+		return true;
+	}
+
+	/**
+	 * Takes a dead monster of a type out of the pool
+	 *
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @return Dead monster, or null if the pool has none of the type
+	 */
+	public Monster acquire(int typeID) {
+		if (counts[typeID] == 0) {
+			return null;
+		}
+
+		Monster[] pool = pools[typeID];
+		Monster monster = pool[--counts[typeID]];
+		pool[counts[typeID]] = null;
+
+		return monster;
+	}
+
+	/**
+	 * Gets the number of dead monsters of a type in the pool
+	 *
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @return Number of dead monsters
+	 */
+	public int size(int typeID) {
+		return counts[typeID];
+	}
+
+}
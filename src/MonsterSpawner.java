@@ -0,0 +1,186 @@
+import java.util.SplittableRandom;
+
+/**
+ * Keeps a camp of monsters of one type populated. The camp is filled up to
+ * its population cap when the world loads, and every time one of its monsters
+ * dies, another is respawned at a random open spot of the camp's region once
+ * the respawn delay has passed. Respawns are spaced out by the delay, one at a
+ * time, until the camp is full again.
+ *
+ * Respawned monsters are taken from the world's {@link MonsterPool}, so a
+ * camp that has filled once respawns without creating units or loading
+ * sprites.
+ */
+public class MonsterSpawner implements TimerWheel.Listener {
+
+	// Columns of a spawner in the spawner file
+	public static final int COL_TYPE = 0;
+	public static final int COL_MIN_X = 1;
+	public static final int COL_MIN_Y = 2;
+	public static final int COL_MAX_X = 3;
+	public static final int COL_MAX_Y = 4;
+	public static final int COL_CAP = 5;
+	public static final int COL_DELAY = 6;
+
+	/** ID of the timer that respawns the next monster */
+	public static final int RESPAWN_TIMER = 0;
+	/** Random spots tried for a monster before its respawn is put off */
+	public static final int PLACEMENT_TRIES = 8;
+
+	/** ID of the monsters' type in the attributes file */
+	private final int typeID;
+	// Region the monsters are spawned in, in pixels
+	private final int minX;
+	private final int minY;
+	private final int maxX;
+	private final int maxY;
+	/** Most monsters of the camp alive at once */
+	private final int cap;
+	/** Time between a death and the next respawn, in milliseconds */
+	private final int delay;
+
+	/** Timer that respawns the next monster */
+	private final TimerWheel.Timer respawnTimer = new TimerWheel.Timer(this, RESPAWN_TIMER);
+
+	private World world;
+	private SplittableRandom random;
+	private TimerWheel timers;
+	/** Number of the camp's monsters alive */
+	private int population;
+
+	/**
+	 * Creates a spawner from a line of the spawner file
+	 *
+	 * @param data
+	 *            Type ID, region, population cap and respawn delay
+	 */
+	public MonsterSpawner(int[] data) {
+		this.typeID = data[COL_TYPE];
+		this.minX = data[COL_MIN_X];
+		this.minY = data[COL_MIN_Y];
+		this.maxX = data[COL_MAX_X];
+		this.maxY = data[COL_MAX_Y];
+		this.cap = data[COL_CAP];
+		this.delay = data[COL_DELAY];
+	}
+
+	/**
+	 * Adds the spawner to a world's simulation, giving it its own random stream
+	 * and the timing wheel its respawns run on
+	 *
+	 * @param world
+	 *            World the monsters are spawned in
+	 * @param random
+	 *            Random number stream
+	 * @param timers
+	 *            Timing wheel of the world
+	 */
+	public void join(World world, SplittableRandom random, TimerWheel timers) {
+		this.world = world;
+		this.random = random;
+		this.timers = timers;
+	}
+
+	/**
+	 * Spawns monsters until the camp is full. Monsters that find no open spot
+	 * are respawned later instead.
+	 */
+	public void fill() {
+		while (population < cap) {
+			if (!spawn()) {
+				timers.schedule(respawnTimer, delay);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Counts the death of one of the camp's monsters, and starts the respawn
+	 * timer unless a respawn is already waiting
+	 */
+	public void onDeath() {
+		population--;
+
+		if (!respawnTimer.isScheduled()) {
+			timers.schedule(respawnTimer, delay);
+		}
+	}
+
+	@Override
+	public void onTimer(int timer) {
+		if (timer == RESPAWN_TIMER) {
+			spawn();
+
+			// A spot that could not be found is tried again after the delay
+			if (population < cap) {
+				timers.schedule(respawnTimer, delay);
+			}
+		}
+	}
+
+	/**
+	 * Spawns one monster at a random open spot of the region
+	 *
+	 * @return false if no open spot was found
+	 */
+	private boolean spawn() {
+		for (int i = 0; i < PLACEMENT_TRIES; i++) {
+			double x = minX + random.nextDouble() * (maxX - minX);
+			double y = minY + random.nextDouble() * (maxY - minY);
+
+			if (fits(x, y)) {
+				Monster monster = world.spawnMonster(typeID, x, y);
+				monster.setSpawner(this);
+				population++;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether a unit's body fits at a position without touching a
+	 * blocked tile
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return true if the position is open
+	 */
+	private boolean fits(double x, double y) {
+		double half = Unit.BODY_HALF_SIZE;
+
+		return !world.isBlocked(x - half, y - half) && !world.isBlocked(x + half, y - half)
+				&& !world.isBlocked(x - half, y + half) && !world.isBlocked(x + half, y + half);
+	}
+
+	/**
+	 * Gets the ID of the monsters' type
+	 *
+	 * @return ID of the type in the attributes file
+	 */
+	public int getTypeID() {
+		return typeID;
+	}
+
+	/**
+	 * Gets the most monsters of the camp alive at once
+	 *
+	 * @return Population cap
+	 */
+	public int getCap() {
+		return cap;
+	}
+
+	/**
+	 * Gets the number of the camp's monsters alive
+	 *
+	 * @return Population
+	 */
+	public int getPopulation() {
+		return population;
+	}
+
+}
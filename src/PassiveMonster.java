@@ -1,5 +1,6 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
 /**
@@ -20,10 +21,16 @@ public class PassiveMonster extends Monster {
 	/** Time allocated before the monster feels safe again */
 	public static final int SAFE_TIME = 5000;
 
-	/** Current time elapsed wandering */
-	private int wanderTime;
-	/** Current time elapsed wandering */
-	private int safeTime;
+	// IDs of the monster's timers
+	public static final int WANDER_TIMER = 1;
+	public static final int SAFE_TIMER = 2;
+
+	/** Timer that changes the direction of wandering */
+	private final TimerWheel.Timer wanderTimer = new TimerWheel.Timer(this, WANDER_TIMER);
+	/** Timer that makes the monster feel safe again after being attacked */
+	private final TimerWheel.Timer safeTimer = new TimerWheel.Timer(this, SAFE_TIMER);
+	/** Whether the monster feels safe, otherwise it runs away */
+	private boolean safe = true;
 	/** Direction of movement in the x-axis when wandering */
 	private int wanderX;
 	/** Direction of movement in the y-axis when wandering */
@@ -37,7 +44,7 @@ public class PassiveMonster extends Monster {
 	 * @param posY
 	 *            Initial position of entity in the y-axis
 	 * @param sprite
-	 *            File path of entity sprite
+	 *            Sprite of entity
 	 * @param maxHP
 	 *            Max HP of unit
 	 * @param damage
@@ -48,7 +55,7 @@ public class PassiveMonster extends Monster {
 	 *            Name of unit
 	 * @throws SlickException
 	 */
-	public PassiveMonster(double posX, double posY, String sprite, int maxHP, int damage, int cooldown, String name)
+	public PassiveMonster(double posX, double posY, Image sprite, int maxHP, int damage, int cooldown, String name)
 			throws SlickException {
 		this.setSprite(sprite);
 		this.setMaxHP(maxHP);
@@ -58,83 +65,102 @@ public class PassiveMonster extends Monster {
 		this.setSpeed(PASSIVE_MONSTER_SPEED);
 		this.setName(name);
 		this.setHP(maxHP);
-		this.setCooldownTime(cooldown);
-		this.wanderTime = WANDER_TIME;
-		this.safeTime = SAFE_TIME;
+	}
+
+	@Override
+	public void join(SplittableRandom random, TimerWheel timers) {
+		super.join(random, timers);
+		changeWanderDirection();
+	}
+
+	@Override
+	public void respawn(double posX, double posY) {
+		super.respawn(posX, posY);
+		this.safe = true;
+		changeWanderDirection();
 	}
 
 	@Override
 	public void update(World world, double dirX, double dirY, int delta) {
-		double[] movement;
+		Player player = world.getNearestPlayer(this.getPosX(), this.getPosY());
 
 		// If the monster is not safe, it will run away otherwise it will wander
-		if (this.safeTime < SAFE_TIME) {
-			movement = runAway(world);
-			this.safeTime = this.safeTime + delta;
-		} else if (this.safeTime != SAFE_TIME) {
-			this.safeTime = SAFE_TIME;
-			movement = wander(delta);
+		if (!this.safe && player != null) {
+			double distance = world.getDistance(this.getPosX(), this.getPosY(), player.getPosX(),
+					player.getPosY());
+
+			super.update(world, runAwayX(player, distance), runAwayY(player, distance), delta);
 		} else {
-			movement = wander(delta);
+			super.update(world, wanderX, wanderY, delta);
 		}
-
-		super.update(world, movement[0], movement[1], delta);
 	}
 
 	/**
-	 * Calculates the movement direction required in order to run away from the
-	 * attacking player
-	 * 
-	 * @param world
-	 *            Dependency on the world object
-	 * @return An array with the dirX and dirY of the monster
+	 * Calculates the movement in the x-axis required in order to run away
+	 * from the nearest player
 	 * 
+	 * @param player
+	 *            Player to run away from
+	 * @param distance
+	 *            Distance between the player and the monster
+	 * @return The dirX of the monster
 	 */
-	private double[] runAway(World world) {
-		Player player = world.getPlayer();
-		double distance = world.getDistance(this.getPosX(), this.getPosY(), player.getPosX(), player.getPosY());
-
-		double[] movement = AI(player.getPosX(), player.getPosY(), distance, PASSIVE_AI);
-
-		return movement;
+	private double runAwayX(Player player, double distance) {
+		return AIDirX(player.getPosX(), distance, PASSIVE_AI);
 	}
 
 	/**
-	 * Decides the random movement of the passive monster as it roams around the
-	 * world
+	 * Calculates the movement in the y-axis required in order to run away
+	 * from the nearest player
 	 * 
-	 * @param delta
-	 *            Time in milliseconds between frames
-	 * @return An array with the dirX and dirY of the monster
+	 * @param player
+	 *            Player to run away from
+	 * @param distance
+	 *            Distance between the player and the monster
+	 * @return The dirY of the monster
 	 */
-	private double[] wander(int delta) {
-		double movement[] = { 0, 0 };
-		Random ran = new Random();
-
-		// Wander in a different direction after a specifed time interval
-		if (this.wanderTime < WANDER_TIME) {
-			movement[0] = wanderX;
-			movement[1] = wanderY;
+	private double runAwayY(Player player, double distance) {
+		return AIDirY(player.getPosY(), distance, PASSIVE_AI);
+	}
 
-			this.wanderTime = this.wanderTime + delta;
-		} else {
-			this.wanderTime = 0;
+	/**
+	 * Decides the random movement of the passive monster as it roams around the
+	 * world, and when it will next change direction
+	 */
+	private void changeWanderDirection() {
+		wanderX = getRandom().nextInt(RANDOM_MOVEMENT_CONSTANT) - 1;
+		wanderY = getRandom().nextInt(RANDOM_MOVEMENT_CONSTANT) - 1;
 
-			movement[0] = ran.nextInt(RANDOM_MOVEMENT_CONSTANT) - 1;
-			movement[1] = ran.nextInt(RANDOM_MOVEMENT_CONSTANT) - 1;
+		getTimers().schedule(wanderTimer, WANDER_TIME);
+	}
 
-			wanderX = (int) movement[0];
-			wanderY = (int) movement[1];
+	@Override
+	public void onTimer(int timer) {
+		switch (timer) {
+		case WANDER_TIMER:
+			changeWanderDirection();
+			break;
+		case SAFE_TIMER:
+			this.safe = true;
+			break;
+		default:
+			super.onTimer(timer);
 		}
-
-		return movement;
-
 	}
 
 	@Override
 	public void onAttack(World world, int damage) {
 		// On attack, the monster will reset its safety timer
-		this.safeTime = 0;
+		this.safe = false;
+		getTimers().schedule(safeTimer, SAFE_TIME);
 		super.onAttack(world, damage);
 	}
+
+	@Override
+	public void onDeath(World world) {
+		// Dead monsters no longer wander or run away
+		getTimers().cancel(wanderTimer);
+		getTimers().cancel(safeTimer);
+		super.onDeath(world);
+	}
 }
@@ -0,0 +1,364 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Font;
+import org.newdawn.slick.Graphics;
+
+/**
+ * Overlay of performance telemetry drawn over the game: a graph of recent
+ * frame times split into update and render time, the number of entities of
+ * every type, the spatial queries made each frame and the rate the tick thread
+ * allocates memory at.
+ *
+ * Ticks run on the simulation thread and report to the overlay there, and the
+ * render thread picks their totals up at the start of every frame, so a frame
+ * shows the time spent on the ticks that ran during it.
+ *
+ * The overlay allocates nothing per frame, so that it does not show up in the
+ * allocation rate it measures. Samples go into fixed ring buffers, and numbers
+ * are drawn digit by digit from constant strings.
+ */
+public class PerformanceOverlay {
+
+	/** Number of frames shown by the graph */
+	public static final int GRAPH_FRAMES = 120;
+	/** Height of the graph in pixels */
+	public static final int GRAPH_HEIGHT = 60;
+	/** Frame time shown at the top of the graph, in milliseconds */
+	public static final int GRAPH_MAX_TIME = 50;
+	/** Frame time of 60 frames per second, marked on the graph */
+	public static final double TARGET_TIME = 1000 / 60.0;
+	/** Time between two samples of the allocation rate, in milliseconds */
+	public static final int ALLOCATION_INTERVAL = 500;
+
+	// Layout of the overlay in pixels
+	public static final int MARGIN = 10;
+	public static final int PADDING = 6;
+	public static final int LINE_HEIGHT = 16;
+	public static final int VALUE_COLUMN = 96;
+	public static final int SECOND_COLUMN = 140;
+	public static final int SECOND_VALUE_COLUMN = 196;
+	public static final int LINES = 7;
+
+	private static final Color BACKGROUND = new Color(0, 0, 0, 0.7f);
+	private static final Color FRAME_COLOR = new Color(0.45f, 0.45f, 0.45f);
+	private static final Color UPDATE_COLOR = new Color(0.3f, 0.6f, 1f);
+	private static final Color RENDER_COLOR = new Color(1f, 0.6f, 0.2f);
+	private static final Color TARGET_COLOR = new Color(0.3f, 1f, 0.3f);
+
+	/** Strings of the digits, drawn one at a time */
+	private static final String[] DIGITS = { "0", "1", "2", "3", "4", "5", "6", "7", "8", "9" };
+	private static final String POINT = ".";
+	private static final String SLASH = "/";
+	private static final String UNAVAILABLE = "n/a";
+
+	private boolean visible;
+
+	// Times of the latest frames in milliseconds, GRAPH_FRAMES long rings
+	// written at next
+	private final float[] frameTimes = new float[GRAPH_FRAMES];
+	private final float[] updateTimes = new float[GRAPH_FRAMES];
+	private final float[] renderTimes = new float[GRAPH_FRAMES];
+	/** Spatial queries made in each of the latest frames */
+	private final int[] queries = new int[GRAPH_FRAMES];
+	/** Ring slot of the current frame */
+	private int next;
+	/** Start of the current frame, from System.nanoTime, or zero before the first */
+	private long frameStart;
+	// Time spent ticking and spatial queries made, in total and up to the
+	// start of the current frame. The totals are written by the tick thread.
+	private volatile long tickNanos;
+	private volatile long tickQueries;
+	private long frameTickNanos;
+	private long frameQueries;
+
+	/** Allocation counters of the JVM's threads, null if they are not supported */
+	private com.sun.management.ThreadMXBean threads;
+	/** ID of the thread that ticks the world, found at its first update */
+	private long tickThread = -1;
+	// Tick thread's allocated bytes and the time at the latest sample
+	private long sampledBytes;
+	private long sampledTime;
+	/** Tick thread's allocation rate over the latest interval, in bytes per second */
+	private volatile long allocationRate;
+
+	// Scratch space for the digits of a number
+	private final int[] digits = new int[20];
+
+	/**
+	 * Creates a hidden overlay
+	 */
+	public PerformanceOverlay() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+
+			if (allocations.isThreadAllocatedMemorySupported()) {
+				if (!allocations.isThreadAllocatedMemoryEnabled()) {
+					allocations.setThreadAllocatedMemoryEnabled(true);
+				}
+				threads = allocations;
+			}
+		}
+	}
+
+	/**
+	 * Shows the overlay if it is hidden, or hides it if it is shown
+	 */
+	public void toggle() {
+		visible = !visible;
+	}
+
+	/**
+	 * Checks whether the overlay is shown
+	 *
+	 * @return true if the overlay is drawn
+	 */
+	public boolean isVisible() {
+		return visible;
+	}
+
+	/**
+	 * Starts a frame, recording the time since the previous one and the ticks
+	 * that ran during it. Called on the render thread.
+	 */
+	public void beginFrame() {
+		long now = System.nanoTime();
+		long nanos = tickNanos;
+		long total = tickQueries;
+
+		if (frameStart != 0) {
+			next = (next + 1) % GRAPH_FRAMES;
+			frameTimes[next] = (now - frameStart) / 1e6f;
+			updateTimes[next] = (nanos - frameTickNanos) / 1e6f;
+			renderTimes[next] = 0;
+			queries[next] = (int) (total - frameQueries);
+		}
+
+		frameStart = now;
+		frameTickNanos = nanos;
+		frameQueries = total;
+	}
+
+	/**
+	 * Records a tick of the world. Called on the tick thread after the world
+	 * is updated.
+	 *
+	 * @param world
+	 *            World that was updated
+	 * @param nanos
+	 *            Time the update took, in nanoseconds
+	 */
+	public void recordUpdate(World world, long nanos) {
+		// Only the tick thread writes the totals
+		tickNanos = tickNanos + nanos;
+		tickQueries = world.getSpatialQueries();
+
+		sampleAllocations();
+	}
+
+	/**
+	 * Records the world's rendering of the current frame. Called on the render
+	 * thread.
+	 *
+	 * @param nanos
+	 *            Time the rendering took, in nanoseconds
+	 */
+	public void recordRender(long nanos) {
+		renderTimes[next] = nanos / 1e6f;
+	}
+
+	/**
+	 * Samples the tick thread's allocated bytes when an interval has passed
+	 * since the previous sample, and updates the allocation rate
+	 */
+	private void sampleAllocations() {
+		if (threads == null) {
+			return;
+		}
+
+		long now = System.nanoTime();
+
+		if (tickThread == -1) {
+			tickThread = Thread.currentThread().getId();
+			sampledBytes = threads.getThreadAllocatedBytes(tickThread);
+			sampledTime = now;
+			return;
+		}
+
+		if (now - sampledTime < ALLOCATION_INTERVAL * 1000000L) {
+			return;
+		}
+
+		long bytes = threads.getThreadAllocatedBytes(tickThread);
+		allocationRate = (long) ((bytes - sampledBytes) * 1e9 / (now - sampledTime));
+		sampledBytes = bytes;
+		sampledTime = now;
+	}
+
+	/**
+	 * Draws the overlay in the top left corner of the screen, if it is shown
+	 *
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 * @param snapshot
+	 *            Latest snapshot of the world, whose entities are counted
+	 */
+	public void render(Graphics g, RenderSnapshot snapshot) {
+		if (!visible) {
+			return;
+		}
+
+		int graphWidth = 2 * GRAPH_FRAMES;
+		int width = graphWidth + 2 * PADDING;
+		int height = GRAPH_HEIGHT + LINES * LINE_HEIGHT + 3 * PADDING;
+
+		g.setColor(BACKGROUND);
+		g.fillRect(MARGIN, MARGIN, width, height);
+
+		renderGraph(g, MARGIN + PADDING, MARGIN + PADDING, graphWidth);
+
+		// Averages and peaks over the frames in the graph
+		float frameSum = 0, updateSum = 0, renderSum = 0, frameMax = 0;
+		int queryMax = 0;
+		for (int i = 0; i < GRAPH_FRAMES; i++) {
+			frameSum += frameTimes[i];
+			updateSum += updateTimes[i];
+			renderSum += renderTimes[i];
+			frameMax = Math.max(frameMax, frameTimes[i]);
+			queryMax = Math.max(queryMax, queries[i]);
+		}
+
+		int x = MARGIN + PADDING;
+		int y = MARGIN + 2 * PADDING + GRAPH_HEIGHT;
+		Font font = g.getFont();
+
+		g.setColor(Color.white);
+		g.drawString("Frame ms", x, y);
+		renderValue(g, font, x + VALUE_COLUMN, y, Math.round(100 * frameSum / GRAPH_FRAMES), 2);
+		g.drawString("max", x + SECOND_COLUMN, y);
+		renderValue(g, font, x + SECOND_VALUE_COLUMN, y, Math.round(100 * frameMax), 2);
+
+		y += LINE_HEIGHT;
+		g.setColor(UPDATE_COLOR);
+		g.drawString("Update ms", x, y);
+		renderValue(g, font, x + VALUE_COLUMN, y, Math.round(100 * updateSum / GRAPH_FRAMES), 2);
+		g.setColor(RENDER_COLOR);
+		g.drawString("Render", x + SECOND_COLUMN, y);
+		renderValue(g, font, x + SECOND_VALUE_COLUMN, y, Math.round(100 * renderSum / GRAPH_FRAMES), 2);
+
+		y += LINE_HEIGHT;
+		g.setColor(Color.white);
+		g.drawString("Players", x, y);
+		renderValue(g, font, x + VALUE_COLUMN, y, snapshot.getPlayers(), 0);
+		g.drawString("Items", x + SECOND_COLUMN, y);
+		renderValue(g, font, x + SECOND_VALUE_COLUMN, y, snapshot.getItems(), 0);
+
+		y += LINE_HEIGHT;
+		g.drawString("Villagers", x, y);
+		renderValue(g, font, x + VALUE_COLUMN, y, snapshot.getVillagers(), 0);
+
+		y += LINE_HEIGHT;
+		g.drawString("Monsters", x, y);
+		int end = renderValue(g, font, x + VALUE_COLUMN, y, snapshot.getPassives(), 0);
+		g.drawString(SLASH, end, y);
+		renderValue(g, font, end + font.getWidth(SLASH), y, snapshot.getAggressives(), 0);
+
+		y += LINE_HEIGHT;
+		g.drawString("Queries", x, y);
+		renderValue(g, font, x + VALUE_COLUMN, y, queries[next], 0);
+		g.drawString("max", x + SECOND_COLUMN, y);
+		renderValue(g, font, x + SECOND_VALUE_COLUMN, y, queryMax, 0);
+
+		y += LINE_HEIGHT;
+		g.drawString("Alloc KB/s", x, y);
+		if (threads != null) {
+			renderValue(g, font, x + VALUE_COLUMN, y, allocationRate / 1024, 0);
+		} else {
+			g.drawString(UNAVAILABLE, x + VALUE_COLUMN, y);
+		}
+	}
+
+	/**
+	 * Draws the frame time graph, one column per frame with the oldest on the
+	 * left. Each column shows the whole frame, with its update and render
+	 * time stacked at the bottom.
+	 *
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 * @param left
+	 *            Left edge of the graph
+	 * @param top
+	 *            Top edge of the graph
+	 * @param width
+	 *            Width of the graph
+	 */
+	private void renderGraph(Graphics g, int left, int top, int width) {
+		float scale = GRAPH_HEIGHT / (float) GRAPH_MAX_TIME;
+		int bottom = top + GRAPH_HEIGHT;
+
+		for (int i = 0; i < GRAPH_FRAMES; i++) {
+			int slot = (next + 1 + i) % GRAPH_FRAMES;
+			float x = left + 2 * i;
+
+			float frame = Math.min(GRAPH_HEIGHT, frameTimes[slot] * scale);
+			float update = Math.min(frame, updateTimes[slot] * scale);
+			float render = Math.min(frame - update, renderTimes[slot] * scale);
+
+			g.setColor(FRAME_COLOR);
+			g.fillRect(x, bottom - frame, 2, frame - update - render);
+			g.setColor(RENDER_COLOR);
+			g.fillRect(x, bottom - update - render, 2, render);
+			g.setColor(UPDATE_COLOR);
+			g.fillRect(x, bottom - update, 2, update);
+		}
+
+		float target = bottom - (float) TARGET_TIME * scale;
+		g.setColor(TARGET_COLOR);
+		g.drawLine(left, target, left + width, target);
+	}
+
+	/**
+	 * Draws a non-negative number one digit at a time, so that no string is
+	 * built for it
+	 *
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 * @param font
+	 *            Font the digits are drawn in
+	 * @param x
+	 *            Left edge of the number
+	 * @param y
+	 *            Top edge of the number
+	 * @param value
+	 *            Number to draw, scaled up by ten to the power of decimals
+	 * @param decimals
+	 *            Number of digits after the decimal point
+	 * @return Right edge of the number
+	 */
+	private int renderValue(Graphics g, Font font, int x, int y, long value, int decimals) {
+		int count = 0;
+		value = Math.max(0, value);
+
+		do {
+			digits[count++] = (int) (value % 10);
+			value /= 10;
+		} while ((value > 0 || count <= decimals) && count < digits.length);
+
+		for (int i = count - 1; i >= 0; i--) {
+			String digit = DIGITS[digits[i]];
+			g.drawString(digit, x, y);
+			x += font.getWidth(digit);
+
+			if (i == decimals && decimals > 0) {
+				g.drawString(POINT, x, y);
+				x += font.getWidth(POINT);
+			}
+		}
+
+		return x;
+	}
+
+}
@@ -1,6 +1,7 @@
 import java.util.ArrayList;
 import java.util.List;
 
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
 /**
@@ -13,9 +14,6 @@ public class Player extends Unit {
 	/** Speed of the player */
 	public static final float PLAYER_SPEED = 0.25f;
 
-	/** Item not found */
-	public static final int ITEM_NOT_FOUND = -1;
-	
 	/** Interaction range */
 	public static final int INTERACT_RANGE = 50;
 
@@ -23,8 +21,21 @@ public class Player extends Unit {
 	public static final double RESPAWN_POS_X = 738.0;
 	public static final double RESPAWN_POS_Y = 549.0;
 
-	/** ArrayList of item objects that represents the player's inventory */
-	private List<Item> inventory;
+	/** Items carried by the player */
+	private Inventory inventory = new Inventory();
+
+	// Lists reused by the nearby queries of every tick
+	private final List<Item> nearByItems = new ArrayList<Item>();
+	private final List<Monster> nearByMonsters = new ArrayList<Monster>();
+	private final List<Villager> nearByVillagers = new ArrayList<Villager>();
+
+	// Stats including the buffs of every carried item, recomputed only when
+	// the inventory changes
+	private int effectiveMaxHP;
+	private int effectiveDamage;
+	private int effectiveCooldown;
+	/** Inventory version the effective stats were computed at */
+	private int statsVersion = -1;
 
 	/**
 	 * Initializes the player object with necessary attributes
@@ -34,7 +45,7 @@ public class Player extends Unit {
 	 * @param posY
 	 *            Initial position of entity in the y-axis
 	 * @param sprite
-	 *            File path of entity sprite
+	 *            Sprite of entity
 	 * @param maxHP
 	 *            Max HP of unit
 	 * @param damage
@@ -45,20 +56,16 @@ public class Player extends Unit {
 	 *            Name of unit
 	 * @throws SlickException
 	 */
-	public Player(double posX, double posY, String sprite, int maxHP, int damage, int cooldown, String name)
+	public Player(double posX, double posY, Image sprite, int maxHP, int damage, int cooldown, String name)
 			throws SlickException {
 		this.setSprite(sprite);
 		this.setMaxHP(maxHP);
 		this.setHP(maxHP);
 		this.setCooldown(cooldown);
-		this.setCooldownTime(cooldown);
 		this.setPosX(posX);
 		this.setPosY(posY);
 		this.setDamage(damage);
 		this.setSpeed(PLAYER_SPEED);
-
-		// Initializes the inventory list
-		inventory = new ArrayList<Item>();
 	}
 
 	@Override
@@ -75,32 +82,48 @@ public class Player extends Unit {
 	 *            Dependency on the world object
 	 */
 	private void checkForItem(World world) {
-		List<Entity> nearBy = world.getNearByEntity(INTERACT_RANGE, this.getPosX(), this.getPosY());
+		List<Item> nearBy = world.getNearByItems(INTERACT_RANGE, this.getPosX(), this.getPosY(), nearByItems);
 
 		// If an item is found, remove it from the world and add it to the
 		// inventory
-		for (Entity currentEntity : nearBy) {
-			if (currentEntity instanceof Item) {
-				((Item) currentEntity).itemCollected(this);
-				world.remove(currentEntity);
-			}
+		for (int i = 0; i < nearBy.size(); i++) {
+			Item item = nearBy.get(i);
+			item.itemCollected(this);
+			world.remove(item);
+			world.getEvents().publish(EventBus.PICKUP, this, item, item.getID());
 		}
+		nearBy.clear();
 	}
 
 	/**
-	 * Attacks nearby units
+	 * Attacks the nearest unit in range. Monsters at the same distance are
+	 * told apart by network ID, so the target does not depend on the order
+	 * the world finds them in.
 	 * 
 	 * @param world
 	 *            Dependency on the world object
 	 */
 	public void attackUnit(World world) {
-		List<Entity> nearBy = world.getNearByEntity(INTERACT_RANGE, this.getPosX(), this.getPosY());
+		List<Monster> nearBy = world.getNearByMonsters(INTERACT_RANGE, this.getPosX(), this.getPosY(),
+				nearByMonsters);
+
+		Monster target = null;
+		double targetDistance = 0;
+		for (int i = 0; i < nearBy.size(); i++) {
+			Monster monster = nearBy.get(i);
+			double distance = world.getDistance(this.getPosX(), this.getPosY(), monster.getPosX(), monster.getPosY());
+
+			if (target == null || distance < targetDistance
+					|| (distance == targetDistance && monster.getNetworkID() < target.getNetworkID())) {
+				target = monster;
+				targetDistance = distance;
+			}
+		}
+		nearBy.clear();
 
 		// If there is a monster nearby, attack it
-		for (Entity currentEntity : nearBy) {
-			if (currentEntity instanceof Monster) {
-				((Monster) currentEntity).onAttack(world, this.attack());
-			}
+		if (target != null) {
+			world.queueAttack(this, target);
 		}
 	}
 
@@ -111,53 +134,36 @@ public class Player extends Unit {
 	 *            Dependency on the world object
 	 */
 	public void interactVillager(World world) {
-		List<Entity> nearBy = world.getNearByEntity(INTERACT_RANGE, this.getPosX(), this.getPosY());
+		List<Villager> nearBy = world.getNearByVillagers(INTERACT_RANGE, this.getPosX(), this.getPosY(),
+				nearByVillagers);
 
 		// If there is a villager nearby, talk to it
-		for (Entity currentEntity : nearBy) {
-			if (currentEntity instanceof Villager) {
-				((Villager) currentEntity).talk(world, this);
-			}
+		for (int i = 0; i < nearBy.size(); i++) {
+			Villager villager = nearBy.get(i);
+			villager.talk(world, this);
+			world.getEvents().publish(EventBus.TALK, this, villager, 0);
 		}
+		nearBy.clear();
 	}
 
 	/**
-	 * Gets the inventory list of player
+	 * Gets the inventory of player
 	 * 
-	 * @return Inventory list
+	 * @return Inventory
 	 */
-	public List<Item> getInventory() {
+	public Inventory getInventory() {
 		return this.inventory;
 	}
 
-	@Override
-	public void onAttack(World world, int damage) {
-		takeDamage(damage);
-
-		// If the player dies, respawn him/her instead of removing him
-		if (this.getHP() < 1) {
-			this.setPosX(RESPAWN_POS_X);
-			this.setPosY(RESPAWN_POS_Y);
-
-			this.setHP(this.getMaxHP());
-		}
-	}
-
 	/**
-	 * Returns the index of an item in the player's inventory
+	 * Checks whether the player carries an item
 	 * 
 	 * @param ID
 	 *            Unique identifier of the item
-	 * @return Index of the item in the inventory ArrayList
+	 * @return true if the item is in the inventory
 	 */
-	public int findItem(int ID) {
-		for (Item currentItem : inventory) {
-			if (currentItem.getID() == ID) {
-				return currentItem.getIndex();
-			}
-		}
-
-		return ITEM_NOT_FOUND;
+	public boolean hasItem(int ID) {
+		return inventory.contains(ID);
 	}
 
 	/**
@@ -167,11 +173,80 @@ public class Player extends Unit {
 	 *            Unique identifier of the item
 	 */
 	public void removeItem(int ID) {
-		int itemIndex = findItem(ID);
+		inventory.remove(ID);
+	}
+
+	/**
+	 * Recomputes the player's stats from the carried items if the inventory
+	 * has changed since they were last computed
+	 */
+	private void refreshStats() {
+		if (statsVersion == inventory.getVersion()) {
+			return;
+		}
+
+		int maxHP = super.getMaxHP();
+		int damage = super.getDamage();
+		int cooldown = super.getCooldown();
+
+		// Only the item types actually carried are visited
+		for (int ID = inventory.nextHeld(0); ID != -1; ID = inventory.nextHeld(ID + 1)) {
+			int count = inventory.count(ID);
 
-		if (itemIndex != ITEM_NOT_FOUND) {
-			inventory.remove(itemIndex);
+			maxHP += Item.getHPBuff(ID) * count;
+			damage += Item.getDamageBuff(ID) * count;
+			cooldown -= Item.getCooldownBuff(ID) * count;
 		}
+
+		effectiveMaxHP = maxHP;
+		effectiveDamage = damage;
+		effectiveCooldown = Math.max(cooldown, 0);
+		statsVersion = inventory.getVersion();
+	}
+
+	@Override
+	public int getMaxHP() {
+		refreshStats();
+		return effectiveMaxHP;
+	}
+
+	@Override
+	public int getDamage() {
+		refreshStats();
+		return effectiveDamage;
+	}
+
+	@Override
+	public int getCooldown() {
+		refreshStats();
+		return effectiveCooldown;
+	}
+
+	@Override
+	public void setMaxHP(int maxHP) {
+		super.setMaxHP(maxHP);
+		statsVersion = -1;
+	}
+
+	@Override
+	public void setDamage(int damage) {
+		super.setDamage(damage);
+		statsVersion = -1;
+	}
+
+	@Override
+	public void setCooldown(int cooldown) {
+		super.setCooldown(cooldown);
+		statsVersion = -1;
+	}
+
+	@Override
+	public void onDeath(World world) {
+		// If the player dies, respawn him/her instead of removing him
+		this.setPosX(RESPAWN_POS_X);
+		this.setPosY(RESPAWN_POS_Y);
+
+		this.setHP(this.getMaxHP());
 	}
 
 }
@@ -4,9 +4,12 @@
  * Author: Matt Giuca <mgiuca>
  */
 
+import java.io.IOException;
+
 import org.newdawn.slick.AppGameContainer;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.BasicGame;
+import org.newdawn.slick.Color;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Input;
 import org.newdawn.slick.SlickException;
@@ -17,6 +20,22 @@ import org.newdawn.slick.SlickException;
  */
 public class RPG extends BasicGame {
 	private World world;
+	/** Loads the world's assets in the background while the game starts. */
+	private AssetLoader assets;
+	/** File to record the session's input to, or null to not record. */
+	private String recordPath;
+	/** Records the session's input for later replay. */
+	private InputRecorder recorder;
+	/** Whether every world event is printed. */
+	private boolean logEvents;
+	/** Frame time, entity and allocation telemetry, toggled with F3. */
+	private PerformanceOverlay overlay = new PerformanceOverlay();
+	/** Redraws the world only when it changes, idling in between. */
+	private FramePacer pacer;
+	/** Whether the player pressed any game key during the latest update. */
+	private boolean inputActive;
+	/** Ticks the world on its own thread once it is loaded. */
+	private SimulationThread simulation;
 
 	/** Screen width, in pixels. */
 	public static final int SCREEN_WIDTH = 800;
@@ -25,11 +44,34 @@ public class RPG extends BasicGame {
 
 	public static final int PANEL_HEIGHT = 70;
 
+	/** Height of the loading screen's progress bar, in pixels. */
+	public static final int LOADING_BAR_HEIGHT = 20;
+
 	/** Create a new RPG object. */
 	public RPG() {
 		super("RPG Game");
 	}
 
+	/**
+	 * Record the session's input to a file.
+	 * 
+	 * @param recordPath
+	 *            File to record the session's input to, or null to not record.
+	 */
+	public void setRecordPath(String recordPath) {
+		this.recordPath = recordPath;
+	}
+
+	/**
+	 * Print every world event as it happens.
+	 * 
+	 * @param logEvents
+	 *            Whether events are printed.
+	 */
+	public void setLogEvents(boolean logEvents) {
+		this.logEvents = logEvents;
+	}
+
 	/**
 	 * Initialise the game state.
 	 * 
@@ -38,11 +80,13 @@ public class RPG extends BasicGame {
 	 */
 	@Override
 	public void init(GameContainer gc) throws SlickException {
-		world = new World();
+		assets = new AssetLoader(World.ASSETS);
+		pacer = new FramePacer(SCREEN_WIDTH, SCREEN_HEIGHT);
 	}
 
 	/**
-	 * Update the game state for a frame.
+	 * Hand the frame's input to the simulation thread, which updates the game
+	 * state.
 	 * 
 	 * @param gc
 	 *            The Slick game container object.
@@ -51,6 +95,35 @@ public class RPG extends BasicGame {
 	 */
 	@Override
 	public void update(GameContainer gc, int delta) throws SlickException {
+		// Upload any assets decoded since the last frame until the world is ready
+		if (world == null) {
+			if (assets.upload()) {
+				world = new World(assets);
+				assets = null;
+
+				if (logEvents)
+					world.getEvents().subscribe(new EventLog());
+
+				if (recordPath != null) {
+					try {
+						recorder = new InputRecorder(recordPath, world.getSeed());
+					} catch (IOException e) {
+						throw new SlickException("Unable to record to " + recordPath, e);
+					}
+				}
+
+				simulation = new SimulationThread(world, recorder, overlay);
+				simulation.start();
+			}
+			return;
+		}
+
+		// A failed tick stops the game on this thread
+		if (simulation.getFailure() != null) {
+			throw new SlickException("Simulation failed: " + simulation.getFailure().getMessage(),
+					simulation.getFailure());
+		}
+
 		// Get data about the current input (keyboard state).
 		Input input = gc.getInput();
 
@@ -71,12 +144,46 @@ public class RPG extends BasicGame {
 			attack = 1;
 		if (input.isKeyDown(Input.KEY_T))
 			talk = 1;
-		
-			
-			
+		if (input.isKeyPressed(Input.KEY_F3))
+			overlay.toggle();
+		inputActive = dir_x != 0 || dir_y != 0 || attack != 0 || talk != 0;
 
-		// Let World.update decide what to do with this data.
-		world.update(dir_x, dir_y, attack, talk, delta);
+		// The simulation thread hands this data to World.update at its next
+		// tick.
+		overlay.beginFrame();
+		simulation.setInput(dir_x, dir_y, attack, talk);
+	}
+
+	/**
+	 * Finish the input recording, if any, before the game closes.
+	 * 
+	 * @return true, the game may always close
+	 */
+	@Override
+	public boolean closeRequested() {
+		finish();
+		return true;
+	}
+
+	/**
+	 * Stops the simulation and ends the input recording, if any, with the
+	 * final checksum. Called however the game ends, whether closed, failed or
+	 * killed, and only acts the first time.
+	 */
+	public synchronized void finish() {
+		if (simulation != null) {
+			simulation.shutdown();
+		}
+
+		if (recorder != null) {
+			try {
+				recorder.close(world);
+				System.out.println("Recorded " + recorder.getFrames() + " frames to " + recordPath);
+			} catch (IOException e) {
+				System.out.println(e.getMessage());
+			}
+			recorder = null;
+		}
 	}
 
 	/**
@@ -88,21 +195,85 @@ public class RPG extends BasicGame {
 	 *            The Slick graphics object, used for drawing.
 	 */
 	public void render(GameContainer gc, Graphics g) throws SlickException {
-		// Let World.render handle the rendering.
-		world.render(g);
+		if (world == null) {
+			renderLoading(g);
+			return;
+		}
+
+		// Let World.render draw the latest tick's snapshot, unless nothing
+		// changed since the latest frame. The overlay keeps the full rate so
+		// that its timings stay meaningful.
+		RenderSnapshot snapshot = world.getSnapshot();
+		long start = System.nanoTime();
+		if (pacer.beginFrame(snapshot.getVersion(), inputActive || overlay.isVisible())) {
+			world.render(g, snapshot);
+			pacer.endFrame(g);
+		} else {
+			pacer.drawCachedFrame(g);
+		}
+		overlay.recordRender(System.nanoTime() - start);
+
+		// The overlay is drawn over the status panel
+		overlay.render(g, snapshot);
+
+		pacer.waitIfIdle(world);
+	}
+
+	/**
+	 * Render the loading screen while the world's assets are being loaded.
+	 * 
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 */
+	private void renderLoading(Graphics g) {
+		int bar_width = SCREEN_WIDTH / 2;
+		int bar_x = (SCREEN_WIDTH - bar_width) / 2;
+		int bar_y = SCREEN_HEIGHT / 2;
+
+		g.setColor(Color.white);
+		g.drawString("Loading...", bar_x, bar_y - 25);
+		g.drawRect(bar_x, bar_y, bar_width, LOADING_BAR_HEIGHT);
+		g.fillRect(bar_x, bar_y, bar_width * assets.getProgress(), LOADING_BAR_HEIGHT);
 	}
 
 	/**
 	 * Start-up method. Creates the game and runs it.
 	 * 
 	 * @param args
-	 *            Command-line arguments (ignored).
+	 *            Command-line arguments. "--record file" records the session's
+	 *            input for replay with ReplayDriver, "--log-events" prints
+	 *            every world event. F3 toggles the performance overlay while
+	 *            playing. The screen is only redrawn while something on it
+	 *            changes.
 	 */
 	public static void main(String[] args) throws SlickException {
-		AppGameContainer app = new AppGameContainer(new RPG());
+		RPG game = new RPG();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--record") && i + 1 < args.length)
+				game.setRecordPath(args[++i]);
+			else if (args[i].equals("--log-events"))
+				game.setLogEvents(true);
+		}
+
+		// The recording is also ended when the JVM is stopped, for example by
+		// a kill or the System.exit that follows a closed window
+		final RPG finishing = game;
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				finishing.finish();
+			}
+		}));
+
+		AppGameContainer app = new AppGameContainer(game);
 		// setShowFPS(true), to show frames-per-second.
 		app.setShowFPS(false);
 		app.setDisplayMode(SCREEN_WIDTH, SCREEN_HEIGHT, false);
-		app.start();
+		try {
+			app.start();
+		} finally {
+			// A failed tick or any other exception ends the game here
+			game.finish();
+		}
 	}
 }
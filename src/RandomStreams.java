@@ -0,0 +1,46 @@
+import java.util.SplittableRandom;
+
+/**
+ * Hands out independent random number streams derived from a single world
+ * seed. Each unit owns its own stream, so its rolls are reproducible from the
+ * seed regardless of the order units are updated in, and no unit shares a
+ * generator with another thread.
+ */
+public class RandomStreams {
+
+	/** Seed that every stream is derived from */
+	private final long seed;
+	/** Root generator that new streams are split from */
+	private final SplittableRandom root;
+
+	/**
+	 * Creates the streams for a world
+	 * 
+	 * @param seed
+	 *            Seed of the world
+	 */
+	public RandomStreams(long seed) {
+		this.seed = seed;
+		this.root = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Splits off a new stream. Streams must be requested in a fixed order (e.g.
+	 * load order) for a run to be reproducible.
+	 * 
+	 * @return A new independent stream
+	 */
+	public SplittableRandom nextStream() {
+		return root.split();
+	}
+
+	/**
+	 * Gets the seed every stream is derived from
+	 * 
+	 * @return Seed of the world
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+}
@@ -0,0 +1,453 @@
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.slick.Image;
+
+/**
+ * Everything the screen shows of the world at the end of one tick: the
+ * camera, the entities in view in the order they are drawn, the status panel
+ * and the entity counts of the performance overlay.
+ *
+ * The tick thread fills a snapshot and publishes it through a
+ * {@link TripleBuffer}, after which it is only read, by the render thread,
+ * until the buffer hands it back to be filled again. Snapshots are reused, so
+ * filling one allocates nothing once its arrays are large enough.
+ */
+public class RenderSnapshot {
+
+	// Kinds of entities, which decide what is drawn with them
+	public static final byte ITEM = 0;
+	public static final byte UNIT = 1;
+	public static final byte VILLAGER = 2;
+	public static final byte PLAYER = 3;
+
+	/** Initial number of entities the arrays hold before growing */
+	public static final int INITIAL_CAPACITY = 64;
+	/** Initial number of inventory items the panel holds before growing */
+	public static final int INITIAL_INVENTORY = 8;
+
+	/** Render version of the world, see World.getRenderVersion */
+	private long version;
+
+	// Position of the camera in pixels and tiles
+	private int cameraX;
+	private int cameraY;
+	private int cameraXTile;
+	private int cameraYTile;
+
+	// Entities in view, in drawing order
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	private Image[] sprites = new Image[INITIAL_CAPACITY];
+	private int[] xs = new int[INITIAL_CAPACITY];
+	private int[] ys = new int[INITIAL_CAPACITY];
+	/** Share of each unit's HP left, between 0 and 1 */
+	private float[] health = new float[INITIAL_CAPACITY];
+	private String[] names = new String[INITIAL_CAPACITY];
+	private String[] dialogues = new String[INITIAL_CAPACITY];
+	private int count;
+
+	// Status panel of the local player
+	private int playerHP;
+	private int playerMaxHP;
+	private String hpText;
+	private String damageText;
+	private String cooldownText;
+	private Image[] inventory = new Image[INITIAL_INVENTORY];
+	private int inventoryCount;
+
+	// Entities of every type in the world
+	private int players;
+	private int items;
+	private int villagers;
+	private int passives;
+	private int aggressives;
+
+	/**
+	 * Starts filling the snapshot of a tick, forgetting the previous one
+	 *
+	 * @param version
+	 *            Render version of the world
+	 * @param camera
+	 *            Camera of the local view
+	 */
+	public void begin(long version, Camera camera) {
+		this.version = version;
+		this.cameraX = camera.getXPos();
+		this.cameraY = camera.getYPos();
+		this.cameraXTile = camera.getXTile();
+		this.cameraYTile = camera.getYTile();
+
+		// Entities that left the world should not be kept alive by the arrays
+		Arrays.fill(sprites, 0, count, null);
+		Arrays.fill(names, 0, count, null);
+		Arrays.fill(dialogues, 0, count, null);
+		Arrays.fill(inventory, 0, inventoryCount, null);
+		count = 0;
+		inventoryCount = 0;
+	}
+
+	/**
+	 * Adds an item to be drawn
+	 *
+	 * @param item
+	 *            Item in view
+	 */
+	public void addItem(Item item) {
+		add(ITEM, item, false, 0, null, null);
+	}
+
+	/**
+	 * Adds a unit to be drawn. Players are drawn without a health bar, and
+	 * villagers with their dialogue box.
+	 *
+	 * @param unit
+	 *            Unit in view
+	 */
+	public void addUnit(Unit unit) {
+		byte kind = UNIT;
+		String dialogue = null;
+
+		if (unit instanceof Player) {
+			kind = PLAYER;
+		} else if (unit instanceof Villager) {
+			kind = VILLAGER;
+			dialogue = ((Villager) unit).getDialogue();
+		}
+
+		add(kind, unit, unit.getFacing(), (float) unit.getHP() / (float) unit.getMaxHP(), unit.getName(),
+				dialogue);
+	}
+
+	/**
+	 * Adds an entity to be drawn
+	 *
+	 * @param kind
+	 *            Kind of the entity
+	 * @param entity
+	 *            Entity in view
+	 * @param flip
+	 *            Whether its sprite faces left
+	 * @param share
+	 *            Share of its HP left
+	 * @param name
+	 *            Name shown over its health bar, or null
+	 * @param dialogue
+	 *            Dialogue it is speaking, or null
+	 */
+	private void add(byte kind, Entity entity, boolean flip, float share, String name, String dialogue) {
+		if (count == kinds.length) {
+			grow(2 * count);
+		}
+
+		kinds[count] = kind;
+		sprites[count] = flip ? entity.getFlippedSprite() : entity.getSprite();
+		xs[count] = (int) entity.getPosX();
+		ys[count] = (int) entity.getPosY();
+		health[count] = share;
+		names[count] = name;
+		dialogues[count] = dialogue;
+		count++;
+	}
+
+	/**
+	 * Grows the per-entity arrays
+	 *
+	 * @param size
+	 *            Number of entities to hold
+	 */
+	private void grow(int size) {
+		kinds = Arrays.copyOf(kinds, size);
+		sprites = Arrays.copyOf(sprites, size);
+		xs = Arrays.copyOf(xs, size);
+		ys = Arrays.copyOf(ys, size);
+		health = Arrays.copyOf(health, size);
+		names = Arrays.copyOf(names, size);
+		dialogues = Arrays.copyOf(dialogues, size);
+	}
+
+	/**
+	 * Sets the status panel of the local player
+	 *
+	 * @param player
+	 *            Local player
+	 * @param hpText
+	 *            Text of the player's HP out of max HP
+	 * @param damageText
+	 *            Text of the player's damage
+	 * @param cooldownText
+	 *            Text of the player's cooldown
+	 */
+	public void setPanel(Player player, String hpText, String damageText, String cooldownText) {
+		this.playerHP = player.getHP();
+		this.playerMaxHP = player.getMaxHP();
+		this.hpText = hpText;
+		this.damageText = damageText;
+		this.cooldownText = cooldownText;
+
+		List<Item> items = player.getInventory().getItems();
+		if (items.size() > inventory.length) {
+			inventory = Arrays.copyOf(inventory, Math.max(items.size(), 2 * inventory.length));
+		}
+		for (int i = 0; i < items.size(); i++) {
+			inventory[i] = items.get(i).getSprite();
+		}
+		inventoryCount = items.size();
+	}
+
+	/**
+	 * Sets the number of entities of every type in the world
+	 *
+	 * @param world
+	 *            World whose entities are counted
+	 */
+	public void setCounts(World world) {
+		this.players = world.getPlayers().size();
+		this.items = world.getItemList().size();
+		this.villagers = world.getVillagerList().size();
+		this.passives = world.getPassiveList().size();
+		this.aggressives = world.getAggressiveList().size();
+	}
+
+	/**
+	 * Gets the render version of the world the snapshot was taken at
+	 *
+	 * @return Render version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the camera's x-coordinate in the world
+	 *
+	 * @return Camera position in pixels
+	 */
+	public int getCameraX() {
+		return cameraX;
+	}
+
+	/**
+	 * Gets the camera's y-coordinate in the world
+	 *
+	 * @return Camera position in pixels
+	 */
+	public int getCameraY() {
+		return cameraY;
+	}
+
+	/**
+	 * Gets the camera's x-coordinate in tiles
+	 *
+	 * @return Camera position in tiles
+	 */
+	public int getCameraXTile() {
+		return cameraXTile;
+	}
+
+	/**
+	 * Gets the camera's y-coordinate in tiles
+	 *
+	 * @return Camera position in tiles
+	 */
+	public int getCameraYTile() {
+		return cameraYTile;
+	}
+
+	/**
+	 * Gets the number of entities to draw
+	 *
+	 * @return Number of entities
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the kind of an entity
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return ITEM, UNIT, VILLAGER or PLAYER
+	 */
+	public byte getKind(int i) {
+		return kinds[i];
+	}
+
+	/**
+	 * Gets the sprite of an entity
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return Sprite, flipped if the entity faces left
+	 */
+	public Image getSprite(int i) {
+		return sprites[i];
+	}
+
+	/**
+	 * Gets the x-coordinate of an entity in the world
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return Position in pixels
+	 */
+	public int getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * Gets the y-coordinate of an entity in the world
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return Position in pixels
+	 */
+	public int getY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * Gets the share of a unit's HP left
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return HP over max HP
+	 */
+	public float getHealth(int i) {
+		return health[i];
+	}
+
+	/**
+	 * Gets the name of a unit
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return Name, or null for items
+	 */
+	public String getName(int i) {
+		return names[i];
+	}
+
+	/**
+	 * Gets the dialogue a villager is speaking
+	 *
+	 * @param i
+	 *            Index of the entity in drawing order
+	 * @return Dialogue, empty if the villager is quiet, or null for other
+	 *         entities
+	 */
+	public String getDialogue(int i) {
+		return dialogues[i];
+	}
+
+	/**
+	 * Gets the local player's HP
+	 *
+	 * @return HP
+	 */
+	public int getPlayerHP() {
+		return playerHP;
+	}
+
+	/**
+	 * Gets the local player's max HP
+	 *
+	 * @return Max HP
+	 */
+	public int getPlayerMaxHP() {
+		return playerMaxHP;
+	}
+
+	/**
+	 * Gets the text of the local player's HP out of max HP
+	 *
+	 * @return HP text
+	 */
+	public String getHPText() {
+		return hpText;
+	}
+
+	/**
+	 * Gets the text of the local player's damage
+	 *
+	 * @return Damage text
+	 */
+	public String getDamageText() {
+		return damageText;
+	}
+
+	/**
+	 * Gets the text of the local player's cooldown
+	 *
+	 * @return Cooldown text
+	 */
+	public String getCooldownText() {
+		return cooldownText;
+	}
+
+	/**
+	 * Gets the number of items in the local player's inventory
+	 *
+	 * @return Number of items
+	 */
+	public int getInventoryCount() {
+		return inventoryCount;
+	}
+
+	/**
+	 * Gets the sprite of an inventory item
+	 *
+	 * @param i
+	 *            Index of the item in the inventory
+	 * @return Sprite of the item
+	 */
+	public Image getInventorySprite(int i) {
+		return inventory[i];
+	}
+
+	/**
+	 * Gets the number of players in the world
+	 *
+	 * @return Number of players
+	 */
+	public int getPlayers() {
+		return players;
+	}
+
+	/**
+	 * Gets the number of items in the world
+	 *
+	 * @return Number of items
+	 */
+	public int getItems() {
+		return items;
+	}
+
+	/**
+	 * Gets the number of villagers in the world
+	 *
+	 * @return Number of villagers
+	 */
+	public int getVillagers() {
+		return villagers;
+	}
+
+	/**
+	 * Gets the number of passive monsters in the world
+	 *
+	 * @return Number of monsters
+	 */
+	public int getPassives() {
+		return passives;
+	}
+
+	/**
+	 * Gets the number of aggressive monsters in the world
+	 *
+	 * @return Number of monsters
+	 */
+	public int getAggressives() {
+		return aggressives;
+	}
+
+}
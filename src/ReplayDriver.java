@@ -0,0 +1,161 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Replays a recording made by {@link InputRecorder} against a headless world
+ * as fast as possible, then checks that the final world state matches the
+ * recorded checksum.
+ */
+public class ReplayDriver {
+
+	/** Stream the recording is read from */
+	private DataInputStream in;
+	/** Seed of the recorded world */
+	private long seed;
+	/** Checksum of the final world state, read once the frames run out */
+	private long checksum;
+	/** Whether the recording ended without its end marker and checksum */
+	private boolean truncated;
+
+	/**
+	 * Opens a recording
+	 * 
+	 * @param path
+	 *            File the recording was written to
+	 * @throws IOException
+	 */
+	public ReplayDriver(String path) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+
+		if (in.readInt() != InputRecorder.MAGIC || in.readByte() != InputRecorder.VERSION) {
+			in.close();
+			throw new IOException(path + " is not an input recording");
+		}
+
+		seed = in.readLong();
+	}
+
+	/**
+	 * Feeds every recorded frame to the world. A recording cut short, for
+	 * example by a crash or a kill, is replayed up to its last whole frame and
+	 * marked as truncated.
+	 * 
+	 * @param world
+	 *            World created with the recording's seed
+	 * @return Number of frames replayed
+	 * @throws IOException
+	 * @throws SlickException
+	 */
+	public long replay(World world) throws IOException, SlickException {
+		long frames = 0;
+		int input;
+
+		try {
+			while ((input = in.readUnsignedByte()) != InputRecorder.END_OF_FRAMES) {
+				int delta = readDelta();
+				world.update(InputRecorder.dirX(input), InputRecorder.dirY(input), InputRecorder.attack(input),
+						InputRecorder.talk(input), delta);
+				frames++;
+			}
+
+			checksum = in.readLong();
+		} catch (EOFException e) {
+			truncated = true;
+		} finally {
+			in.close();
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Reads a variable length frame delta
+	 * 
+	 * @return Time passed since last frame (milliseconds)
+	 * @throws IOException
+	 */
+	private int readDelta() throws IOException {
+		int delta = 0;
+		int shift = 0;
+		int next;
+
+		do {
+			next = in.readUnsignedByte();
+			delta |= (next & 0x7F) << shift;
+			shift += 7;
+		} while ((next & 0x80) != 0);
+
+		return delta;
+	}
+
+	/**
+	 * Gets the seed of the recorded world
+	 * 
+	 * @return Seed of the world
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Checks whether the recording ended before its checksum. Only valid
+	 * after {@link #replay(World)}.
+	 * 
+	 * @return true if the recording was truncated
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Gets the recorded checksum of the final world state. Only valid after
+	 * {@link #replay(World)}, and only if the recording is not truncated.
+	 * 
+	 * @return Recorded checksum
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * Replays a recording headless and reports whether it matched.
+	 * 
+	 * @param args
+	 *            Path of the recording
+	 */
+	public static void main(String[] args) throws IOException, SlickException {
+		if (args.length != 1) {
+			System.out.println("Usage: ReplayDriver <recording>");
+			System.exit(2);
+		}
+
+		ReplayDriver replay = new ReplayDriver(args[0]);
+		World world = new World(AssetLoader.load(World.ASSETS, true), replay.getSeed());
+
+		long start = System.nanoTime();
+		long frames = replay.replay(world);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("Replayed " + frames + " frames in " + elapsed / 1000000 + " ms");
+
+		if (replay.isTruncated()) {
+			System.out.println("Recording truncated, no checksum");
+			System.out.println("Replayed checksum: " + Long.toHexString(world.getChecksum()));
+			return;
+		}
+
+		System.out.println("Recorded checksum: " + Long.toHexString(replay.getChecksum()));
+		System.out.println("Replayed checksum: " + Long.toHexString(world.getChecksum()));
+
+		if (world.getChecksum() != replay.getChecksum()) {
+			System.out.println("Replay diverged from the recording");
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Measures the size and encode time of delta-compressed state messages. A
+ * world is loaded headless and ticked, and every tick its state is encoded
+ * for a number of receivers that acknowledge snapshots after different
+ * delays. Each message is decoded again and checked against the server's
+ * snapshot.
+ */
+public class ReplicationBenchmark {
+
+	/** Frame length the world is ticked with, in milliseconds */
+	public static final int FRAME_TIME = 50;
+	/** Frames ticked before measuring starts */
+	public static final int WARMUP_TICKS = 50;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            Assets directory, followed by options
+	 */
+	public static void main(String[] args) throws SlickException {
+		if (args.length < 1 || args.length % 2 != 1) {
+			System.out.println("Usage: ReplicationBenchmark <assets dir> [--ticks count] [--receivers count]"
+					+ " [--latency ticks] [--seed seed]");
+			System.exit(2);
+		}
+
+		String assets = args[0].endsWith("/") ? args[0] : args[0] + "/";
+		int ticks = 500;
+		int receivers = 4;
+		int latency = 4;
+		long seed = 1;
+
+		for (int i = 1; i < args.length; i += 2) {
+			String value = args[i + 1];
+
+			switch (args[i]) {
+			case "--ticks":
+				ticks = Integer.parseInt(value);
+				break;
+			case "--receivers":
+				receivers = Integer.parseInt(value);
+				break;
+			case "--latency":
+				latency = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		World world = new World(AssetLoader.load(assets, true), seed);
+		ReplicationEncoder encoder = new ReplicationEncoder();
+
+		ReplicationEncoder.Receiver[] receiving = new ReplicationEncoder.Receiver[receivers];
+		ReplicationDecoder[] decoders = new ReplicationDecoder[receivers];
+		List<ArrayDeque<Integer>> acks = new ArrayList<ArrayDeque<Integer>>();
+
+		for (int i = 0; i < receivers; i++) {
+			receiving[i] = new ReplicationEncoder.Receiver();
+			decoders[i] = new ReplicationDecoder();
+			acks.add(new ArrayDeque<Integer>());
+		}
+
+		long captureNanos = 0;
+		long encodeNanos = 0;
+		long deltaBytes = 0;
+		long fullBytes = 0;
+		int mismatches = 0;
+
+		for (int tick = -WARMUP_TICKS; tick < ticks; tick++) {
+			world.update(0, 0, 0, 0, FRAME_TIME);
+
+			long start = System.nanoTime();
+			encoder.capture(world);
+			long captured = System.nanoTime();
+
+			ReplicationEncoder.Packet[] packets = new ReplicationEncoder.Packet[receivers];
+			for (int i = 0; i < receivers; i++) {
+				packets[i] = encoder.encode(receiving[i]);
+			}
+			long encoded = System.nanoTime();
+
+			// A receiver that has never acknowledged anything gets the full state
+			ReplicationEncoder.Packet full = encoder.encode(new ReplicationEncoder.Receiver());
+			int fullSize = full.getBuffer().remaining();
+			encoder.release(full);
+
+			for (int i = 0; i < receivers; i++) {
+				ByteBuffer message = packets[i].getBuffer().duplicate();
+				int size = message.remaining();
+				message.position(ReplicationEncoder.HEADER_BYTES);
+
+				acks.get(i).add(decoders[i].decode(message));
+				encoder.release(packets[i]);
+
+				if (!decoders[i].getSnapshot().matches(encoder.getSnapshot())) {
+					mismatches++;
+				}
+
+				// Receiver i acknowledges each state 1 to latency ticks late
+				while (acks.get(i).size() > 1 + i % Math.max(1, latency)) {
+					encoder.acknowledge(receiving[i], acks.get(i).poll());
+				}
+
+				if (tick >= 0) {
+					deltaBytes += size;
+				}
+			}
+
+			if (tick >= 0) {
+				captureNanos += captured - start;
+				encodeNanos += encoded - captured;
+				fullBytes += fullSize;
+			}
+		}
+
+		int monsters = world.getPassiveList().size() + world.getAggressiveList().size();
+
+		System.out.printf("%d entities, %d monsters, %d receivers, %d ticks%n", world.getEntityCount(), monsters,
+				receivers, ticks);
+		System.out.printf("Full state: %.0f bytes per tick%n", fullBytes / (double) ticks);
+		System.out.printf("Delta state: %.0f bytes per tick per receiver (%.1f%% of full)%n",
+				deltaBytes / (double) ticks / receivers, 100.0 * deltaBytes / receivers / Math.max(1, fullBytes));
+		System.out.printf("Capture: %.3f ms per tick, encode: %.3f ms per tick for all receivers%n",
+				captureNanos / 1e6 / ticks, encodeNanos / 1e6 / ticks);
+
+		if (mismatches > 0) {
+			System.out.println(mismatches + " decoded states did not match the server");
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Rebuilds the snapshots sent by a {@link ReplicationEncoder} on the
+ * receiving side. Recent snapshots are kept so that each message can be
+ * applied to the baseline it was encoded against.
+ */
+public class ReplicationDecoder {
+
+	/** Snapshots received lately, indexed by sequence */
+	private final ReplicationEncoder.Snapshot[] history = new ReplicationEncoder.Snapshot[ReplicationEncoder.HISTORY];
+	/** Sequence of the latest snapshot decoded */
+	private int sequence = ReplicationEncoder.NO_BASELINE;
+
+	/**
+	 * Creates a decoder with an empty history
+	 */
+	public ReplicationDecoder() {
+		for (int i = 0; i < history.length; i++) {
+			history[i] = new ReplicationEncoder.Snapshot();
+		}
+	}
+
+	/**
+	 * Decodes a state message
+	 *
+	 * @param in
+	 *            Buffer positioned after the type and length of the message
+	 * @return Sequence of the decoded snapshot, to be acknowledged
+	 * @throws IllegalStateException
+	 *             If the baseline of the message is no longer known
+	 */
+	public int decode(ByteBuffer in) {
+		int next = in.getInt();
+		int baseline = in.getInt();
+
+		ReplicationEncoder.Snapshot base = null;
+		if (baseline != ReplicationEncoder.NO_BASELINE) {
+			base = history[baseline % history.length];
+
+			if (base.getSequence() != baseline) {
+				throw new IllegalStateException("Unknown baseline " + baseline);
+			}
+		}
+
+		ReplicationEncoder.Snapshot snapshot = history[next % history.length];
+		snapshot.clear(next);
+
+		if (base != null) {
+			snapshot.copy(base);
+		}
+
+		int updates = in.getInt();
+		int ID = -1;
+
+		for (int i = 0; i < updates; i++) {
+			ID += ReplicationEncoder.getVarInt(in) + 1;
+			int fields = in.get();
+
+			// Fields left out of the update keep the baseline's values
+			int kind;
+			int type;
+			int tileX;
+			int tileY;
+			int offsetX;
+			int offsetY;
+			int HP;
+
+			if ((fields & ReplicationEncoder.FIELD_NEW) == 0) {
+				kind = snapshot.getKind(ID);
+				type = snapshot.getType(ID);
+			} else {
+				kind = in.get();
+				type = in.get();
+			}
+
+			if ((fields & ReplicationEncoder.FIELD_TILE) == 0) {
+				tileX = snapshot.getTileX(ID);
+				tileY = snapshot.getTileY(ID);
+			} else {
+				tileX = in.getShort();
+				tileY = in.getShort();
+			}
+
+			if ((fields & ReplicationEncoder.FIELD_OFFSET) == 0) {
+				offsetX = snapshot.getOffsetX(ID);
+				offsetY = snapshot.getOffsetY(ID);
+			} else {
+				offsetX = in.get() & 0xFF;
+				offsetY = in.get() & 0xFF;
+			}
+
+			if ((fields & ReplicationEncoder.FIELD_HP) == 0) {
+				HP = snapshot.getHP(ID);
+			} else {
+				HP = in.get() & 0xFF;
+			}
+
+			snapshot.put(ID, kind, type, tileX, tileY, offsetX, offsetY, HP);
+		}
+
+		int removals = in.getInt();
+		ID = -1;
+
+		for (int i = 0; i < removals; i++) {
+			ID += ReplicationEncoder.getVarInt(in) + 1;
+			snapshot.remove(ID);
+		}
+
+		sequence = Math.max(sequence, next);
+		return next;
+	}
+
+	/**
+	 * Gets the latest snapshot decoded
+	 *
+	 * @return Latest snapshot
+	 */
+	public ReplicationEncoder.Snapshot getSnapshot() {
+		return history[Math.max(0, sequence) % history.length];
+	}
+
+	/**
+	 * Gets the sequence of the latest snapshot decoded
+	 *
+	 * @return Sequence, or NO_BASELINE before the first message
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+}
@@ -0,0 +1,845 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the state of a world as delta-compressed state messages. Every tick
+ * the world is captured in a quantised {@link Snapshot}, and each receiver is
+ * sent only the fields that changed since the last snapshot it acknowledged.
+ * Receivers that have not acknowledged a recent snapshot are sent everything.
+ *
+ * Positions are sent as a tile index and a position within the tile, HP as a
+ * byte. Receivers that share a baseline share one encoded message, and
+ * messages are written to pooled direct buffers that are handed back once
+ * every receiver has sent them. A receiver can instead be sent only the
+ * entities it can see, such as those an {@link InterestManager} finds around
+ * it.
+ *
+ * A state message starts with the type byte and the length of the rest of the
+ * message, followed by the sequence number of the snapshot, the sequence of
+ * the baseline it is relative to and the number of updated entities. Each
+ * update is the gap from the previous network ID, a byte of field bits and
+ * the fields those bits name. The number of removed entities and the ID gaps
+ * of the removed entities come last.
+ */
+public class ReplicationEncoder {
+
+	// Field bits of an entity update
+	public static final int FIELD_NEW = 1;
+	public static final int FIELD_TILE = 1 << 1;
+	public static final int FIELD_OFFSET = 1 << 2;
+	public static final int FIELD_HP = 1 << 3;
+	public static final int FIELD_ALL = FIELD_NEW | FIELD_TILE | FIELD_OFFSET | FIELD_HP;
+
+	/** Baseline of a message that holds every entity */
+	public static final int NO_BASELINE = -1;
+	/** Number of snapshots kept as possible baselines */
+	public static final int HISTORY = 32;
+	/** Size of the type and length that start a state message */
+	public static final int HEADER_BYTES = 5;
+	/** Size of the sequences and counts of a state message */
+	public static final int BODY_BYTES = 16;
+	/** Largest size of one entity update */
+	public static final int MAX_UPDATE_BYTES = 15;
+	/** Number of unused packets kept for reuse, enough for one per client */
+	public static final int POOL_SIZE = 1024;
+	/** Number of sub-tile steps a position is quantised to */
+	public static final int TILE_STEPS = 256;
+
+	/** Position of the update count in a state message */
+	private static final int UPDATES_AT = HEADER_BYTES + 8;
+
+	/** Snapshots of the latest ticks, indexed by sequence */
+	private final Snapshot[] history = new Snapshot[HISTORY];
+	/** Sequence of the latest snapshot */
+	private int sequence = NO_BASELINE;
+
+	/** Messages encoded for the latest snapshot, by baseline */
+	private final Packet[] encoded = new Packet[HISTORY + 1];
+	/** Packets no longer referenced by anyone */
+	private final ArrayDeque<Packet> pool = new ArrayDeque<Packet>();
+
+	/**
+	 * Creates an encoder with an empty history
+	 */
+	public ReplicationEncoder() {
+		for (int i = 0; i < HISTORY; i++) {
+			history[i] = new Snapshot();
+		}
+	}
+
+	/**
+	 * Captures the current state of a world as the next snapshot
+	 *
+	 * @param world
+	 *            World to capture
+	 * @return Sequence of the new snapshot
+	 */
+	public int capture(World world) {
+		// Messages of the previous snapshot are kept alive only by receivers
+		for (int i = 0; i < encoded.length; i++) {
+			if (encoded[i] != null) {
+				release(encoded[i]);
+				encoded[i] = null;
+			}
+		}
+
+		sequence++;
+		Snapshot snapshot = history[sequence % HISTORY];
+		snapshot.clear(sequence);
+
+		for (Player player : world.getPlayers()) {
+			snapshot.put(player, GameServer.KIND_PLAYER, player.getTypeID(), player.getHP());
+		}
+
+		for (Item item : world.getItemList()) {
+			snapshot.put(item, GameServer.KIND_ITEM, item.getID(), 0);
+		}
+
+		for (Villager villager : world.getVillagerList()) {
+			snapshot.put(villager, GameServer.KIND_VILLAGER, villager.getTypeID(), villager.getHP());
+		}
+
+		for (PassiveMonster passive : world.getPassiveList()) {
+			snapshot.put(passive, GameServer.KIND_PASSIVE, passive.getTypeID(), passive.getHP());
+		}
+
+		for (AggressiveMonster aggressive : world.getAggressiveList()) {
+			snapshot.put(aggressive, GameServer.KIND_AGGRESSIVE, aggressive.getTypeID(), aggressive.getHP());
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * Records that a receiver has received a snapshot. Older or unknown
+	 * sequences are ignored.
+	 *
+	 * @param receiver
+	 *            Receiver that acknowledged the snapshot
+	 * @param acked
+	 *            Sequence of the snapshot
+	 */
+	public void acknowledge(Receiver receiver, int acked) {
+		if (acked > receiver.acked && acked <= sequence) {
+			receiver.acked = acked;
+		}
+	}
+
+	/**
+	 * Encodes the whole latest snapshot for a receiver, relative to the last
+	 * snapshot it acknowledged. The returned packet is retained for the
+	 * caller, who must {@link #release(Packet)} it once sent.
+	 *
+	 * @param receiver
+	 *            Receiver to encode for
+	 * @return Packet holding the message
+	 */
+	public Packet encode(Receiver receiver) {
+		int baseline = receiver.acked;
+		if (baseline == NO_BASELINE || sequence - baseline >= HISTORY
+				|| receiver.sentSequence[baseline % HISTORY] == baseline) {
+			// Nothing recent was acknowledged, or only part of the world was
+			baseline = NO_BASELINE;
+		}
+
+		receiver.sentSequence[sequence % HISTORY] = NO_BASELINE;
+
+		int slot = baseline == NO_BASELINE ? HISTORY : baseline % HISTORY;
+		Packet packet = encoded[slot];
+
+		if (packet == null) {
+			packet = encodeDelta(baseline == NO_BASELINE ? null : history[slot], history[sequence % HISTORY]);
+			encoded[slot] = packet;
+		}
+
+		packet.references++;
+		return packet;
+	}
+
+	/**
+	 * Encodes the entities of the latest snapshot that a receiver can see,
+	 * relative to what it saw in the last snapshot it acknowledged. Entities
+	 * that came into view are sent whole and those that went out of view are
+	 * sent as removals. The returned packet belongs to the caller, who must
+	 * {@link #release(Packet)} it once sent.
+	 *
+	 * @param receiver
+	 *            Receiver to encode for
+	 * @param visible
+	 *            Entities the receiver can see
+	 * @return Packet holding the message
+	 */
+	public Packet encode(Receiver receiver, List<? extends Entity> visible) {
+		Snapshot current = history[sequence % HISTORY];
+		int slot = sequence % HISTORY;
+
+		int[] sent = receiver.sent[slot];
+		if (sent.length < visible.size()) {
+			sent = new int[Math.max(visible.size(), sent.length * 2)];
+			receiver.sent[slot] = sent;
+		}
+
+		int count = 0;
+		for (int i = 0; i < visible.size(); i++) {
+			int ID = visible.get(i).getNetworkID();
+
+			if (current.isPresent(ID)) {
+				sent[count++] = ID;
+			}
+		}
+
+		// IDs are sent in ascending order as gaps
+		Arrays.sort(sent, 0, count);
+		receiver.sentCount[slot] = count;
+		receiver.sentSequence[slot] = sequence;
+
+		int baseline = receiver.acked;
+		Snapshot base = null;
+		int[] known = null;
+		int knownCount = 0;
+
+		if (baseline != NO_BASELINE && sequence - baseline < HISTORY
+				&& receiver.sentSequence[baseline % HISTORY] == baseline) {
+			base = history[baseline % HISTORY];
+			known = receiver.sent[baseline % HISTORY];
+			knownCount = receiver.sentCount[baseline % HISTORY];
+		}
+
+		Packet packet = acquire(HEADER_BYTES + BODY_BYTES + (count + knownCount) * MAX_UPDATE_BYTES);
+		ByteBuffer out = packet.buffer;
+		begin(out, current, base);
+
+		int updates = 0;
+		int previous = -1;
+		int j = 0;
+
+		for (int i = 0; i < count; i++) {
+			int ID = sent[i];
+
+			while (j < knownCount && known[j] < ID) {
+				j++;
+			}
+
+			boolean wasSent = j < knownCount && known[j] == ID;
+			int fields = wasSent ? current.compare(ID, base) : FIELD_ALL;
+
+			if (fields != 0) {
+				putUpdate(out, current, ID, fields, previous);
+				previous = ID;
+				updates++;
+			}
+		}
+
+		out.putInt(UPDATES_AT, updates);
+
+		int removalsAt = out.position();
+		int removals = 0;
+		previous = -1;
+		out.putInt(0);
+
+		j = 0;
+		for (int i = 0; i < knownCount; i++) {
+			int ID = known[i];
+
+			while (j < count && sent[j] < ID) {
+				j++;
+			}
+
+			if (j == count || sent[j] != ID) {
+				putVarInt(out, ID - previous - 1);
+				previous = ID;
+				removals++;
+			}
+		}
+
+		finish(out, removalsAt, removals);
+		return packet;
+	}
+
+	/**
+	 * Hands back a packet returned by one of the encode methods
+	 *
+	 * @param packet
+	 *            Packet that is no longer needed
+	 */
+	public void release(Packet packet) {
+		if (--packet.references == 0 && pool.size() < POOL_SIZE) {
+			pool.push(packet);
+		}
+	}
+
+	/**
+	 * Encodes the changes between two snapshots
+	 *
+	 * @param base
+	 *            Snapshot the receiver has, or null for none
+	 * @param current
+	 *            Snapshot to send
+	 * @return Packet holding the message, referenced once by the encoder
+	 */
+	private Packet encodeDelta(Snapshot base, Snapshot current) {
+		// Every ID is at most one update or one removal, and removals are smaller
+		int limit = base == null ? current.limit : Math.max(base.limit, current.limit);
+		Packet packet = acquire(HEADER_BYTES + BODY_BYTES + limit * MAX_UPDATE_BYTES);
+		ByteBuffer out = packet.buffer;
+		begin(out, current, base);
+
+		int updates = 0;
+		int previous = -1;
+
+		for (int ID = 0; ID < current.limit; ID++) {
+			if (!current.isPresent(ID)) {
+				continue;
+			}
+
+			int fields = base == null ? FIELD_ALL : current.compare(ID, base);
+			if (fields != 0) {
+				putUpdate(out, current, ID, fields, previous);
+				previous = ID;
+				updates++;
+			}
+		}
+
+		out.putInt(UPDATES_AT, updates);
+
+		int removalsAt = out.position();
+		int removals = 0;
+		previous = -1;
+		out.putInt(0);
+
+		if (base != null) {
+			for (int ID = 0; ID < base.limit; ID++) {
+				if (base.isPresent(ID) && !current.isPresent(ID)) {
+					putVarInt(out, ID - previous - 1);
+					previous = ID;
+					removals++;
+				}
+			}
+		}
+
+		finish(out, removalsAt, removals);
+		return packet;
+	}
+
+	/**
+	 * Writes the start of a state message, leaving the update count to be
+	 * filled in
+	 *
+	 * @param out
+	 *            Buffer of the message
+	 * @param current
+	 *            Snapshot being sent
+	 * @param base
+	 *            Baseline of the message, or null for none
+	 */
+	private static void begin(ByteBuffer out, Snapshot current, Snapshot base) {
+		out.put((byte) GameServer.STATE).putInt(0);
+		out.putInt(current.sequence).putInt(base == null ? NO_BASELINE : base.sequence);
+		out.putInt(0);
+	}
+
+	/**
+	 * Writes one entity update
+	 *
+	 * @param out
+	 *            Buffer of the message
+	 * @param current
+	 *            Snapshot being sent
+	 * @param ID
+	 *            Network ID of the entity
+	 * @param fields
+	 *            Field bits of the fields to send
+	 * @param previous
+	 *            Network ID of the previous update, or -1 for none
+	 */
+	private static void putUpdate(ByteBuffer out, Snapshot current, int ID, int fields, int previous) {
+		putVarInt(out, ID - previous - 1);
+		out.put((byte) fields);
+
+		if ((fields & FIELD_NEW) != 0) {
+			out.put(current.kind[ID]).put(current.type[ID]);
+		}
+		if ((fields & FIELD_TILE) != 0) {
+			out.putShort(current.tileX[ID]).putShort(current.tileY[ID]);
+		}
+		if ((fields & FIELD_OFFSET) != 0) {
+			out.put(current.offsetX[ID]).put(current.offsetY[ID]);
+		}
+		if ((fields & FIELD_HP) != 0) {
+			out.put(current.HP[ID]);
+		}
+	}
+
+	/**
+	 * Fills in the removal count and length of a state message and readies
+	 * it for sending
+	 *
+	 * @param out
+	 *            Buffer of the message
+	 * @param removalsAt
+	 *            Position of the removal count
+	 * @param removals
+	 *            Number of removals written
+	 */
+	private static void finish(ByteBuffer out, int removalsAt, int removals) {
+		out.putInt(removalsAt, removals);
+		out.putInt(1, out.position() - HEADER_BYTES);
+		out.flip();
+	}
+
+	/**
+	 * Takes a packet from the pool, or allocates one
+	 *
+	 * @param capacity
+	 *            Number of bytes the packet must hold
+	 * @return Empty packet, referenced once
+	 */
+	private Packet acquire(int capacity) {
+		Packet packet = pool.poll();
+		if (packet == null) {
+			packet = new Packet();
+		}
+
+		if (packet.buffer == null || packet.buffer.capacity() < capacity) {
+			// Round up so that a slowly growing world does not reallocate every tick
+			packet.buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(capacity - 1) << 1);
+		}
+
+		packet.buffer.clear();
+		packet.references = 1;
+		return packet;
+	}
+
+	/**
+	 * Writes an unsigned variable-length integer, seven bits per byte
+	 *
+	 * @param out
+	 *            Buffer to write to
+	 * @param value
+	 *            Value to write, not negative
+	 */
+	public static void putVarInt(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * Reads an unsigned variable-length integer
+	 *
+	 * @param in
+	 *            Buffer to read from
+	 * @return Value read
+	 */
+	public static int getVarInt(ByteBuffer in) {
+		int value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = in.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	/**
+	 * Gets the sequence of the latest snapshot
+	 *
+	 * @return Sequence, or NO_BASELINE before the first capture
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets the latest snapshot
+	 *
+	 * @return Latest snapshot
+	 */
+	public Snapshot getSnapshot() {
+		return history[Math.max(0, sequence) % HISTORY];
+	}
+
+	/**
+	 * The replication state of one receiver
+	 */
+	public static class Receiver {
+		/** Sequence of the latest snapshot the receiver acknowledged */
+		private int acked = NO_BASELINE;
+
+		// Sorted network IDs sent to the receiver, by sequence, when only
+		// the entities it can see are encoded
+		private final int[][] sent = new int[HISTORY][0];
+		private final int[] sentCount = new int[HISTORY];
+		private final int[] sentSequence = new int[HISTORY];
+
+		/**
+		 * Creates a receiver that has acknowledged nothing
+		 */
+		public Receiver() {
+			Arrays.fill(sentSequence, NO_BASELINE);
+		}
+
+		/**
+		 * Gets the sequence of the latest acknowledged snapshot
+		 *
+		 * @return Sequence, or NO_BASELINE if none
+		 */
+		public int getAcked() {
+			return acked;
+		}
+	}
+
+	/**
+	 * An encoded state message shared by the receivers it was sent to
+	 */
+	public static class Packet {
+		private ByteBuffer buffer;
+		private int references;
+
+		/**
+		 * Gets the encoded message. Senders should write from a duplicate so
+		 * that the position is their own.
+		 *
+		 * @return Buffer holding the message, ready to be read
+		 */
+		public ByteBuffer getBuffer() {
+			return buffer;
+		}
+	}
+
+	/**
+	 * The quantised state of every entity at one tick, stored in arrays
+	 * indexed by network ID
+	 */
+	public static class Snapshot {
+		/** Sequence of the snapshot */
+		private int sequence = NO_BASELINE;
+		/** One more than the highest network ID seen so far */
+		private int limit;
+
+		/** Sequence of the snapshot each ID was last present in */
+		private int[] present = new int[0];
+		private byte[] kind = new byte[0];
+		private byte[] type = new byte[0];
+		private short[] tileX = new short[0];
+		private short[] tileY = new short[0];
+		private byte[] offsetX = new byte[0];
+		private byte[] offsetY = new byte[0];
+		private byte[] HP = new byte[0];
+
+		/**
+		 * Empties the snapshot for reuse. Stale entries are left in place and
+		 * told apart by their sequence.
+		 *
+		 * @param sequence
+		 *            Sequence of the new snapshot
+		 */
+		public void clear(int sequence) {
+			this.sequence = sequence;
+			this.limit = 0;
+		}
+
+		/**
+		 * Adds an entity
+		 *
+		 * @param entity
+		 *            Entity to add
+		 * @param kind
+		 *            Kind of the entity
+		 * @param type
+		 *            Unit type or item ID of the entity
+		 * @param HP
+		 *            HP of the entity
+		 */
+		public void put(Entity entity, int kind, int type, int HP) {
+			int ID = entity.getNetworkID();
+			int tileX = (int) Math.floor(entity.getPosX() / Camera.TILE_DIMENSION);
+			int tileY = (int) Math.floor(entity.getPosY() / Camera.TILE_DIMENSION);
+
+			put(ID, kind, type, tileX, tileY, quantise(entity.getPosX() - tileX * Camera.TILE_DIMENSION),
+					quantise(entity.getPosY() - tileY * Camera.TILE_DIMENSION), Math.max(0, Math.min(255, HP)));
+		}
+
+		/**
+		 * Adds an entity from its quantised fields
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @param kind
+		 *            Kind of the entity
+		 * @param type
+		 *            Unit type or item ID
+		 * @param tileX
+		 *            Tile column
+		 * @param tileY
+		 *            Tile row
+		 * @param offsetX
+		 *            Position within the tile in the x-axis, 0 to 255
+		 * @param offsetY
+		 *            Position within the tile in the y-axis, 0 to 255
+		 * @param HP
+		 *            HP, 0 to 255
+		 */
+		public void put(int ID, int kind, int type, int tileX, int tileY, int offsetX, int offsetY, int HP) {
+			if (ID >= present.length) {
+				grow(ID + 1);
+			}
+
+			limit = Math.max(limit, ID + 1);
+			present[ID] = sequence;
+			this.kind[ID] = (byte) kind;
+			this.type[ID] = (byte) type;
+			this.tileX[ID] = (short) tileX;
+			this.tileY[ID] = (short) tileY;
+			this.offsetX[ID] = (byte) offsetX;
+			this.offsetY[ID] = (byte) offsetY;
+			this.HP[ID] = (byte) HP;
+		}
+
+		/**
+		 * Removes an entity
+		 *
+		 * @param ID
+		 *            Network ID
+		 */
+		public void remove(int ID) {
+			if (ID < limit) {
+				present[ID] = NO_BASELINE;
+			}
+		}
+
+		/**
+		 * Copies every entity of another snapshot into this one
+		 *
+		 * @param other
+		 *            Snapshot to copy
+		 */
+		public void copy(Snapshot other) {
+			for (int ID = 0; ID < other.limit; ID++) {
+				if (other.isPresent(ID)) {
+					put(ID, other.kind[ID], other.type[ID], other.tileX[ID], other.tileY[ID], other.getOffsetX(ID),
+							other.getOffsetY(ID), other.getHP(ID));
+				}
+			}
+		}
+
+		/**
+		 * Finds the fields of an entity that differ from another snapshot
+		 *
+		 * @param ID
+		 *            Network ID of an entity present in this snapshot
+		 * @param base
+		 *            Snapshot to compare with
+		 * @return Field bits of the changed fields
+		 */
+		private int compare(int ID, Snapshot base) {
+			if (!base.isPresent(ID) || base.kind[ID] != kind[ID] || base.type[ID] != type[ID]) {
+				return FIELD_ALL;
+			}
+
+			int fields = 0;
+			if (base.tileX[ID] != tileX[ID] || base.tileY[ID] != tileY[ID]) {
+				fields |= FIELD_TILE;
+			}
+			if (base.offsetX[ID] != offsetX[ID] || base.offsetY[ID] != offsetY[ID]) {
+				fields |= FIELD_OFFSET;
+			}
+			if (base.HP[ID] != HP[ID]) {
+				fields |= FIELD_HP;
+			}
+
+			return fields;
+		}
+
+		/**
+		 * Checks whether two snapshots hold the same entities with the same
+		 * fields
+		 *
+		 * @param other
+		 *            Snapshot to compare with
+		 * @return true if both hold the same state
+		 */
+		public boolean matches(Snapshot other) {
+			for (int ID = 0; ID < Math.max(limit, other.limit); ID++) {
+				if (isPresent(ID) != other.isPresent(ID) || isPresent(ID) && compare(ID, other) != 0) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Grows the arrays to hold an ID
+		 *
+		 * @param size
+		 *            Number of IDs to hold
+		 */
+		private void grow(int size) {
+			int length = Math.max(size, present.length * 2);
+			int old = present.length;
+
+			present = Arrays.copyOf(present, length);
+			Arrays.fill(present, old, length, NO_BASELINE);
+			kind = Arrays.copyOf(kind, length);
+			type = Arrays.copyOf(type, length);
+			tileX = Arrays.copyOf(tileX, length);
+			tileY = Arrays.copyOf(tileY, length);
+			offsetX = Arrays.copyOf(offsetX, length);
+			offsetY = Arrays.copyOf(offsetY, length);
+			HP = Arrays.copyOf(HP, length);
+		}
+
+		/**
+		 * Quantises a position within a tile
+		 *
+		 * @param offset
+		 *            Pixels from the tile's top-left corner
+		 * @return Step within the tile, 0 to 255
+		 */
+		private static int quantise(double offset) {
+			return Math.max(0, Math.min(TILE_STEPS - 1, (int) (offset * TILE_STEPS / Camera.TILE_DIMENSION)));
+		}
+
+		/**
+		 * Checks whether an entity is in the snapshot
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return true if present
+		 */
+		public boolean isPresent(int ID) {
+			return ID >= 0 && ID < limit && present[ID] == sequence;
+		}
+
+		/**
+		 * Gets the sequence of the snapshot
+		 *
+		 * @return Sequence
+		 */
+		public int getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * Gets one more than the highest network ID in the snapshot
+		 *
+		 * @return Limit of the network IDs
+		 */
+		public int getLimit() {
+			return limit;
+		}
+
+		/**
+		 * Gets the kind of an entity
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Kind of the entity
+		 */
+		public int getKind(int ID) {
+			return kind[ID];
+		}
+
+		/**
+		 * Gets the unit type or item ID of an entity
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Type of the entity
+		 */
+		public int getType(int ID) {
+			return type[ID];
+		}
+
+		/**
+		 * Gets the tile column of an entity
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Tile column
+		 */
+		public int getTileX(int ID) {
+			return tileX[ID];
+		}
+
+		/**
+		 * Gets the tile row of an entity
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Tile row
+		 */
+		public int getTileY(int ID) {
+			return tileY[ID];
+		}
+
+		/**
+		 * Gets the quantised position of an entity within its tile in the
+		 * x-axis
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Step within the tile, 0 to 255
+		 */
+		public int getOffsetX(int ID) {
+			return offsetX[ID] & 0xFF;
+		}
+
+		/**
+		 * Gets the quantised position of an entity within its tile in the
+		 * y-axis
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Step within the tile, 0 to 255
+		 */
+		public int getOffsetY(int ID) {
+			return offsetY[ID] & 0xFF;
+		}
+
+		/**
+		 * Gets the position of an entity in the x-axis, at the centre of its
+		 * quantisation step
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Position in pixels
+		 */
+		public double getPosX(int ID) {
+			return (tileX[ID] + ((offsetX[ID] & 0xFF) + 0.5) / TILE_STEPS) * Camera.TILE_DIMENSION;
+		}
+
+		/**
+		 * Gets the position of an entity in the y-axis, at the centre of its
+		 * quantisation step
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return Position in pixels
+		 */
+		public double getPosY(int ID) {
+			return (tileY[ID] + ((offsetY[ID] & 0xFF) + 0.5) / TILE_STEPS) * Camera.TILE_DIMENSION;
+		}
+
+		/**
+		 * Gets the HP of an entity, capped at 255
+		 *
+		 * @param ID
+		 *            Network ID
+		 * @return HP
+		 */
+		public int getHP(int ID) {
+			return HP[ID] & 0xFF;
+		}
+	}
+
+}
@@ -0,0 +1,506 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Generates synthetic worlds for benchmarks and soak tests. A generated world
+ * is a complete assets directory: a map in the same format as map.tmx, unit
+ * positions and item positions, plus copies of the tileset, attributes and
+ * sprites of the source assets. Every unit and item is placed on a walkable
+ * tile, and the result is checked against World.isBlocked before returning.
+ */
+public class ScenarioGenerator {
+
+	/** Average radius of an obstacle, in tiles */
+	public static final int OBSTACLE_RADIUS = 3;
+	/** Tiles kept clear around the player's spawn */
+	public static final int SPAWN_CLEARING = 4;
+	/** Smallest width and height of a map, in tiles, that fits the clearing */
+	public static final int MIN_SIZE = 2 * SPAWN_CLEARING + 1;
+
+	// Configurable scenario settings, with their defaults
+	private int width = 1024;
+	private int height = 1024;
+	private int units = 100000;
+	private double density = 0;
+	private int items = 4;
+	private int clusters = 0;
+	private double spread = 10 * Camera.TILE_DIMENSION;
+	private double obstacles = 0.15;
+	private double[] mix;
+	private long seed = 1;
+
+	/** Source of every random decision */
+	private Random random;
+
+	// Data read from the source assets
+	private int[][] attributeTable;
+	private String[] itemSprites;
+	private int[] walkableTiles;
+	private int[] blockedTiles;
+	private boolean[] blockedTileIDs;
+
+	/** Tile ID of every tile of the generated map */
+	private int[] tiles;
+
+	/**
+	 * Reads the source assets the scenario is derived from
+	 *
+	 * @param source
+	 *            Source assets directory
+	 * @throws SlickException
+	 */
+	public ScenarioGenerator(String source) throws SlickException {
+		AssetLoader assets = AssetLoader.load(source, true);
+		attributeTable = assets.getAttributeTable();
+		itemSprites = assets.getItemSprites().toArray(new String[0]);
+		readTiles(assets.getMap());
+
+		// By default, only monsters are generated
+		mix = new double[World.NUM_CHARACTERS];
+		for (int i = 0; i < World.NUM_CHARACTERS; i++) {
+			int type = attributeTable[i][World.COL_TYPE];
+			if (type == World.PASSIVE_ID || type == World.AGGRESSIVE_ID) {
+				mix[i] = 1;
+			}
+		}
+	}
+
+	/**
+	 * Splits the tiles used by the source map into walkable and blocked tiles.
+	 * Tiles are listed once per use, so generated terrain keeps the source's
+	 * proportions.
+	 *
+	 * @param map
+	 *            Source map
+	 */
+	private void readTiles(WorldMap map) {
+		List<Integer> walkable = new ArrayList<Integer>();
+		List<Integer> blocked = new ArrayList<Integer>();
+
+		for (int x = 0; x < map.getWidth(); x++) {
+			for (int y = 0; y < map.getHeight(); y++) {
+				int tileID = map.getTileId(x, y, World.LAYER_ID);
+				if (map.getTileProperties().isBlocked(tileID)) {
+					blocked.add(tileID);
+				} else {
+					walkable.add(tileID);
+				}
+			}
+		}
+
+		walkableTiles = toArray(walkable);
+		blockedTiles = toArray(blocked);
+
+		int maxTileID = 0;
+		for (int tileID : blockedTiles) {
+			maxTileID = Math.max(maxTileID, tileID);
+		}
+
+		blockedTileIDs = new boolean[maxTileID + 1];
+		for (int tileID : blockedTiles) {
+			blockedTileIDs[tileID] = true;
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Generates the scenario and writes it to a directory
+	 *
+	 * @param source
+	 *            Source assets directory
+	 * @param output
+	 *            Directory to write the scenario to
+	 * @throws IOException
+	 */
+	public void generate(String source, String output) throws IOException {
+		random = new Random(seed);
+		new File(output + World.UNITS).mkdirs();
+		new File(output + World.ITEMS).mkdirs();
+
+		copyAssets(new File(source), new File(output));
+		generateTerrain();
+		writeMap(output + World.MAP);
+		writeUnits(output + World.UNITS + World.UNIT_POSITIONS);
+		writeItems(output + World.ITEMS + World.ITEM_POSITIONS);
+	}
+
+	/**
+	 * Copies every source asset that is not generated, such as the tileset,
+	 * attributes and sprites. The camps of the spawner file are placed on the
+	 * source map, so scenarios are generated without any.
+	 *
+	 * @param from
+	 *            Source directory
+	 * @param to
+	 *            Destination directory
+	 * @throws IOException
+	 */
+	private void copyAssets(File from, File to) throws IOException {
+		for (File file : from.listFiles()) {
+			String name = file.getName();
+			File target = new File(to, name);
+
+			if (file.isDirectory()) {
+				target.mkdirs();
+				copyAssets(file, target);
+			} else if (!name.equals(World.MAP) && !name.equals(World.UNIT_POSITIONS)
+					&& !name.equals(World.ITEM_POSITIONS) && !name.equals(World.SPAWNERS)) {
+				Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 * Fills the map with walkable terrain, a blocked border and scattered
+	 * blocked obstacles
+	 */
+	private void generateTerrain() {
+		tiles = new int[width * height];
+
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = walkableTiles[random.nextInt(walkableTiles.length)];
+		}
+
+		// Roughly circular obstacles until the requested fraction is covered
+		int area = (int) (Math.PI * OBSTACLE_RADIUS * OBSTACLE_RADIUS);
+		int count = (int) (obstacles * tiles.length / area);
+
+		for (int i = 0; i < count; i++) {
+			int centreX = random.nextInt(width);
+			int centreY = random.nextInt(height);
+			int radius = 1 + random.nextInt(2 * OBSTACLE_RADIUS - 1);
+
+			for (int x = centreX - radius; x <= centreX + radius; x++) {
+				for (int y = centreY - radius; y <= centreY + radius; y++) {
+					int dx = x - centreX;
+					int dy = y - centreY;
+					if (x >= 0 && y >= 0 && x < width && y < height && dx * dx + dy * dy <= radius * radius) {
+						tiles[y * width + x] = blockedTiles[random.nextInt(blockedTiles.length)];
+					}
+				}
+			}
+		}
+
+		// Keep the spawn clear so the player can always move
+		for (int x = width / 2 - SPAWN_CLEARING; x <= width / 2 + SPAWN_CLEARING; x++) {
+			for (int y = height / 2 - SPAWN_CLEARING; y <= height / 2 + SPAWN_CLEARING; y++) {
+				tiles[y * width + x] = walkableTiles[random.nextInt(walkableTiles.length)];
+			}
+		}
+
+		// Blocked border so no unit can walk off the map
+		for (int x = 0; x < width; x++) {
+			tiles[x] = blockedTiles[random.nextInt(blockedTiles.length)];
+			tiles[(height - 1) * width + x] = blockedTiles[random.nextInt(blockedTiles.length)];
+		}
+		for (int y = 0; y < height; y++) {
+			tiles[y * width] = blockedTiles[random.nextInt(blockedTiles.length)];
+			tiles[y * width + width - 1] = blockedTiles[random.nextInt(blockedTiles.length)];
+		}
+	}
+
+	/**
+	 * Checks whether a tile of the generated map can be walked on
+	 */
+	private boolean isWalkable(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return false;
+		}
+
+		int tileID = tiles[y * width + x];
+		return tileID >= blockedTileIDs.length || !blockedTileIDs[tileID];
+	}
+
+	/**
+	 * Writes the map with the same layout and encoding as map.tmx
+	 *
+	 * @param path
+	 *            File to write to
+	 * @throws IOException
+	 */
+	private void writeMap(String path) throws IOException {
+		// Layer data is gzipped little endian tile IDs, encoded in base64
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		byte[] row = new byte[width * 4];
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int tileID = tiles[y * width + x];
+				row[x * 4] = (byte) tileID;
+				row[x * 4 + 1] = (byte) (tileID >> 8);
+				row[x * 4 + 2] = (byte) (tileID >> 16);
+				row[x * 4 + 3] = (byte) (tileID >> 24);
+			}
+			gzip.write(row);
+		}
+		gzip.close();
+
+		PrintWriter out = new PrintWriter(new FileWriter(path));
+		out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		out.println("<map version=\"1.0\" orientation=\"orthogonal\" width=\"" + width + "\" height=\"" + height
+				+ "\" tilewidth=\"" + Camera.TILE_DIMENSION + "\" tileheight=\"" + Camera.TILE_DIMENSION + "\">");
+		out.println(" <tileset firstgid=\"1\" source=\"tileset.tsx\"/>");
+		out.println(" <layer name=\"Layer 0\" width=\"" + width + "\" height=\"" + height + "\">");
+		out.println("  <data encoding=\"base64\" compression=\"gzip\">");
+		out.println("   " + Base64.getEncoder().encodeToString(bytes.toByteArray()));
+		out.println("  </data>");
+		out.println(" </layer>");
+		out.println("</map>");
+		out.close();
+	}
+
+	/**
+	 * Writes the player at the centre of the map followed by every generated
+	 * unit
+	 *
+	 * @param path
+	 *            File to write to
+	 * @throws IOException
+	 */
+	private void writeUnits(String path) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(path));
+		int count = density > 0 ? (int) (density * width * height) : units;
+		double[] centres = new double[clusters * 2];
+
+		for (int i = 0; i < clusters; i++) {
+			double[] position = randomPosition();
+			centres[i * 2] = position[0];
+			centres[i * 2 + 1] = position[1];
+		}
+
+		int centre = Camera.TILE_DIMENSION / 2;
+		out.print(World.PLAYER_ID + "\t" + (width / 2 * Camera.TILE_DIMENSION + centre) + "\t"
+				+ (height / 2 * Camera.TILE_DIMENSION + centre));
+
+		for (int i = 0; i < count; i++) {
+			double[] position;
+
+			if (clusters > 0) {
+				int cluster = random.nextInt(clusters);
+				position = clusteredPosition(centres[cluster * 2], centres[cluster * 2 + 1]);
+			} else {
+				position = randomPosition();
+			}
+
+			out.println();
+			out.print(pickType() + "\t" + (int) position[0] + "\t" + (int) position[1]);
+		}
+
+		out.close();
+	}
+
+	/**
+	 * Writes items cycling through every item type, in ID order
+	 *
+	 * @param path
+	 *            File to write to
+	 * @throws IOException
+	 */
+	private void writeItems(String path) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(path));
+
+		for (int i = 0; i < items; i++) {
+			double[] position = randomPosition();
+
+			if (i > 0) {
+				out.println();
+			}
+			out.print((int) position[0] + "\t" + (int) position[1] + "\t" + itemSprites[i % itemSprites.length]);
+		}
+
+		out.close();
+	}
+
+	/**
+	 * Picks a unit type, weighted by the configured type mix
+	 *
+	 * @return Row of the unit type in attributes.txt
+	 */
+	private int pickType() {
+		double total = 0;
+		for (double weight : mix) {
+			total += weight;
+		}
+
+		double pick = random.nextDouble() * total;
+		for (int i = 0; i < mix.length; i++) {
+			pick -= mix[i];
+			if (pick < 0 && mix[i] > 0) {
+				return i;
+			}
+		}
+
+		return mix.length - 1;
+	}
+
+	/**
+	 * Picks a random walkable position anywhere on the map
+	 *
+	 * @return Pixel position
+	 */
+	private double[] randomPosition() {
+		while (true) {
+			int x = random.nextInt(width);
+			int y = random.nextInt(height);
+
+			if (isWalkable(x, y)) {
+				return new double[] { (x + random.nextDouble()) * Camera.TILE_DIMENSION,
+						(y + random.nextDouble()) * Camera.TILE_DIMENSION };
+			}
+		}
+	}
+
+	/**
+	 * Picks a random walkable position around a cluster centre
+	 *
+	 * @return Pixel position
+	 */
+	private double[] clusteredPosition(double centreX, double centreY) {
+		while (true) {
+			double x = centreX + random.nextGaussian() * spread;
+			double y = centreY + random.nextGaussian() * spread;
+
+			if (x >= 0 && y >= 0 && isWalkable((int) x / Camera.TILE_DIMENSION, (int) y / Camera.TILE_DIMENSION)) {
+				return new double[] { x, y };
+			}
+		}
+	}
+
+	/**
+	 * Loads a generated scenario and checks that no unit or item starts on a
+	 * blocked tile
+	 *
+	 * @param output
+	 *            Directory the scenario was written to
+	 * @return Number of entities placed on blocked tiles
+	 * @throws SlickException
+	 */
+	public static int validate(String output) throws SlickException {
+		World world = new World(AssetLoader.load(output, true), 0);
+		int invalid = 0;
+
+		if (world.isBlocked(world.getPlayer().getPosX(), world.getPlayer().getPosY())) {
+			invalid++;
+		}
+
+		for (Entity currentEntity : world.getEntityList()) {
+			if (world.isBlocked(currentEntity.getPosX(), currentEntity.getPosY())) {
+				invalid++;
+			}
+		}
+
+		System.out.println("Validated " + (world.getEntityCount() + 1) + " entities, " + invalid
+				+ " on blocked tiles");
+		return invalid;
+	}
+
+	/**
+	 * Parses a type mix of the form "row:weight,row:weight"
+	 *
+	 * @param value
+	 *            Type mix to parse
+	 */
+	private void parseMix(String value) {
+		mix = new double[World.NUM_CHARACTERS];
+
+		for (String entry : value.split(",")) {
+			String[] pair = entry.split(":");
+			int row = Integer.parseInt(pair[0]);
+
+			if (attributeTable[row][World.COL_TYPE] == World.PLAYER_ID) {
+				throw new IllegalArgumentException("The player cannot be part of the type mix");
+			}
+			mix[row] = Double.parseDouble(pair[1]);
+		}
+	}
+
+	/**
+	 * Generates a scenario from the command line.
+	 *
+	 * @param args
+	 *            Output directory followed by options
+	 */
+	public static void main(String[] args) throws IOException, SlickException {
+		if (args.length < 1 || args.length % 2 != 1) {
+			System.out.println("Usage: ScenarioGenerator <output dir> [--width tiles] [--height tiles]"
+					+ " [--units count | --density units-per-tile] [--items count] [--clusters count]"
+					+ " [--spread pixels] [--obstacles fraction] [--mix row:weight,...] [--seed seed]");
+			System.exit(2);
+		}
+
+		String output = args[0].endsWith("/") ? args[0] : args[0] + "/";
+		ScenarioGenerator generator = new ScenarioGenerator(World.ASSETS);
+
+		for (int i = 1; i < args.length; i += 2) {
+			String value = args[i + 1];
+
+			switch (args[i]) {
+			case "--width":
+				generator.width = Integer.parseInt(value);
+				break;
+			case "--height":
+				generator.height = Integer.parseInt(value);
+				break;
+			case "--units":
+				generator.units = Integer.parseInt(value);
+				break;
+			case "--density":
+				generator.density = Double.parseDouble(value);
+				break;
+			case "--items":
+				generator.items = Integer.parseInt(value);
+				break;
+			case "--clusters":
+				generator.clusters = Integer.parseInt(value);
+				break;
+			case "--spread":
+				generator.spread = Double.parseDouble(value);
+				break;
+			case "--obstacles":
+				generator.obstacles = Double.parseDouble(value);
+				break;
+			case "--mix":
+				generator.parseMix(value);
+				break;
+			case "--seed":
+				generator.seed = Long.parseLong(value);
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		if (generator.width < MIN_SIZE || generator.height < MIN_SIZE) {
+			System.out.println("Width and height must be at least " + MIN_SIZE + " tiles");
+			System.exit(2);
+		}
+
+		generator.generate(World.ASSETS, output);
+
+		if (validate(output) != 0) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Measures the cost of pushing apart overlapping units as crowds grow larger
+ * and denser. For every crowd size and density, a world is loaded headless,
+ * its monsters beyond the crowd size are removed and the rest are scattered
+ * over a square around the middle of the map that gives the density. The
+ * crowd is then separated for a number of ticks while it spreads out.
+ */
+public class SeparationBenchmark {
+
+	/** Ticks run before timing starts */
+	public static final int WARMUP_TICKS = 20;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            Assets directory, followed by options
+	 */
+	public static void main(String[] args) throws SlickException {
+		if (args.length < 1 || args.length % 2 != 1) {
+			System.out.println("Usage: SeparationBenchmark <assets dir> [--units count,count,...]"
+					+ " [--densities units per tile,...] [--ticks count] [--seed seed]");
+			System.exit(2);
+		}
+
+		String assets = args[0].endsWith("/") ? args[0] : args[0] + "/";
+		String sizes = "1000,2500,5000,10000";
+		String densities = "1,4,16";
+		int ticks = 100;
+		long seed = 1;
+
+		for (int i = 1; i < args.length; i += 2) {
+			String value = args[i + 1];
+
+			switch (args[i]) {
+			case "--units":
+				sizes = value;
+				break;
+			case "--densities":
+				densities = value;
+				break;
+			case "--ticks":
+				ticks = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		for (String size : sizes.split(",")) {
+			for (String density : densities.split(",")) {
+				run(assets, Integer.parseInt(size), Double.parseDouble(density), ticks, seed);
+			}
+		}
+	}
+
+	/**
+	 * Separates one crowd and prints the results
+	 *
+	 * @param assets
+	 *            Assets directory of the world
+	 * @param size
+	 *            Number of units in the crowd
+	 * @param density
+	 *            Units per tile the crowd starts with
+	 * @param ticks
+	 *            Number of ticks to time
+	 * @param seed
+	 *            Seed of the world and of the crowd's positions
+	 */
+	private static void run(String assets, int size, double density, int ticks, long seed) throws SlickException {
+		World world = new World(AssetLoader.load(assets, true), seed);
+
+		List<Monster> monsters = new ArrayList<Monster>();
+		monsters.addAll(world.getPassiveList());
+		monsters.addAll(world.getAggressiveList());
+
+		if (monsters.size() < size) {
+			System.out.printf("Skipping %d units, the world only has %d monsters%n", size, monsters.size());
+			world.getZones().shutdown();
+			return;
+		}
+
+		for (int i = size; i < monsters.size(); i++) {
+			world.remove(monsters.get(i));
+		}
+
+		// Scatter the crowd over a square around the player
+		Player player = world.getPlayer();
+		double side = Math.sqrt(size / density) * Camera.TILE_DIMENSION;
+		SplittableRandom random = new SplittableRandom(seed);
+
+		for (int i = 0; i < size; i++) {
+			Monster monster = monsters.get(i);
+			monster.setPosX(player.getPosX() + (random.nextDouble() - 0.5) * side);
+			monster.setPosY(player.getPosY() + (random.nextDouble() - 0.5) * side);
+		}
+
+		UnitSeparation separation = world.getSeparation();
+		long elapsed = 0;
+		long pairChecks = 0;
+		long contacts = 0;
+
+		for (int tick = -WARMUP_TICKS; tick < ticks; tick++) {
+			long start = System.nanoTime();
+			separation.separate(world);
+			long end = System.nanoTime();
+			world.getZones().acceptHandoffs();
+
+			if (tick >= 0) {
+				elapsed += end - start;
+				pairChecks += separation.getPairChecks();
+				contacts += separation.getContacts();
+			}
+		}
+
+		world.getZones().shutdown();
+
+		System.out.printf("%d units at %.0f per tile: %.3f ms per tick, %.0f ns per unit, %.1f pair tests and"
+				+ " %.1f contacts per unit%n", separation.getUnitCount(), density, elapsed / 1e6 / ticks,
+				(double) elapsed / ticks / separation.getUnitCount(),
+				(double) pairChecks / ticks / separation.getUnitCount(),
+				(double) contacts / ticks / separation.getUnitCount());
+	}
+
+}
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Starts a {@link GameServer} on loopback and connects many simulated clients
+ * to it. Every client sends random input each frame, decodes every state the
+ * server sends and acknowledges it. Reports how many clients joined, how many
+ * states each of them received and how long the server's ticks took.
+ */
+public class ServerLoadTest {
+
+	/** Time between two inputs of a client, in milliseconds */
+	public static final int INPUT_INTERVAL = 16;
+	/** Initial size of each client's receive buffer, grown to fit any state */
+	public static final int RECEIVE_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args
+	 *            "--clients count", "--seconds duration", "--tick-rate ticks
+	 *            per second" and "--assets dir", all optional
+	 */
+	public static void main(String[] args) throws IOException, SlickException, InterruptedException {
+		int clients = 500;
+		int seconds = 10;
+		int tickRate = GameServer.DEFAULT_TICK_RATE;
+		String assets = World.ASSETS;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("--clients"))
+				clients = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--seconds"))
+				seconds = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--tick-rate"))
+				tickRate = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--assets"))
+				assets = args[i + 1].endsWith("/") ? args[i + 1] : args[i + 1] + "/";
+		}
+
+		World world = new World(AssetLoader.load(assets, true), 1);
+		world.removePlayer(world.getPlayer());
+
+		final GameServer server = new GameServer(world, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				tickRate);
+		Thread serverThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					server.run();
+				} catch (IOException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+		}, "game-server");
+		serverThread.start();
+
+		Selector selector = Selector.open();
+		Client[] connected = new Client[clients];
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+
+		for (int i = 0; i < clients; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.configureBlocking(false);
+			connected[i] = new Client(channel, new SplittableRandom(i));
+			channel.register(selector, SelectionKey.OP_READ, connected[i]);
+		}
+
+		long end = System.currentTimeMillis() + seconds * 1000L;
+		long nextInput = 0;
+		ByteBuffer input = ByteBuffer.allocate(1);
+
+		while (System.currentTimeMillis() < end) {
+			selector.select(INPUT_INTERVAL);
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				((Client) key.attachment()).receive();
+			}
+
+			if (System.currentTimeMillis() >= nextInput) {
+				nextInput = System.currentTimeMillis() + INPUT_INTERVAL;
+
+				for (Client client : connected) {
+					input.clear();
+					input.put((byte) client.randomInput()).flip();
+					client.channel.write(input);
+				}
+			}
+		}
+
+		int welcomed = 0;
+		long states = 0;
+		long bytes = 0;
+		long minStates = Long.MAX_VALUE;
+		long deltas = 0;
+
+		System.out.println("Players connected: " + server.getConnectionCount());
+
+		for (Client client : connected) {
+			if (client.networkID >= 0) {
+				welcomed++;
+			}
+
+			states += client.states;
+			deltas += client.deltas;
+			bytes += client.bytes;
+			minStates = Math.min(minStates, client.states);
+			client.channel.close();
+		}
+
+		System.out.println("Clients welcomed: " + welcomed + "/" + clients);
+
+		server.stop();
+		serverThread.join();
+		selector.close();
+
+		System.out.printf("Server ticks: %d (%.1f/s), average %.2f ms, longest %.2f ms%n", server.getTicks(),
+				server.getTicks() / (double) seconds, server.getAverageTickNanos() / 1e6,
+				server.getMaxTickNanos() / 1e6);
+		System.out.printf("States per client: %.1f/s average, %.1f/s slowest, %.1f KB/s received per client%n",
+				states / (double) clients / seconds, minStates / (double) seconds,
+				bytes / 1024.0 / clients / seconds);
+		System.out.printf("States sent as deltas: %.1f%%%n", states == 0 ? 0 : 100.0 * deltas / states);
+	}
+
+	/**
+	 * A simulated client that decodes, counts and acknowledges server messages
+	 */
+	private static class Client {
+		private final SocketChannel channel;
+		private final SplittableRandom random;
+		private final ReplicationDecoder decoder = new ReplicationDecoder();
+		private final ByteBuffer ack = ByteBuffer.allocate(GameServer.ACK_BYTES);
+		private ByteBuffer in = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+
+		/** Network ID of the client's player, once welcomed */
+		private int networkID = -1;
+		private long states;
+		/** Number of states relative to an acknowledged baseline */
+		private long deltas;
+		private long bytes;
+
+		// Current movement, changed now and then
+		private int dirX;
+		private int dirY;
+
+		private Client(SocketChannel channel, SplittableRandom random) {
+			this.channel = channel;
+			this.random = random;
+		}
+
+		/**
+		 * Picks the next frame of input
+		 *
+		 * @return Packed input
+		 */
+		private int randomInput() {
+			if (random.nextInt(30) == 0) {
+				dirX = random.nextInt(3) - 1;
+				dirY = random.nextInt(3) - 1;
+			}
+
+			return InputRecorder.pack(dirX, dirY, random.nextInt(10) == 0 ? 1 : 0, random.nextInt(50) == 0 ? 1 : 0);
+		}
+
+		/**
+		 * Reads and parses everything the server has sent
+		 *
+		 * @throws IOException
+		 */
+		private void receive() throws IOException {
+			int read;
+
+			while ((read = channel.read(in)) > 0) {
+				bytes += read;
+				in.flip();
+
+				while (parse()) {
+					// Keep parsing until only a partial message is left
+				}
+
+				in.compact();
+			}
+		}
+
+		/**
+		 * Parses one message from the receive buffer
+		 *
+		 * @return false if the buffer does not hold a whole message
+		 * @throws IOException
+		 */
+		private boolean parse() throws IOException {
+			if (in.remaining() < GameServer.WELCOME_BYTES) {
+				return false;
+			}
+
+			int type = in.get(in.position());
+			int size = in.getInt(in.position() + 1);
+
+			if (type == GameServer.WELCOME) {
+				networkID = size;
+				in.position(in.position() + GameServer.WELCOME_BYTES);
+				return true;
+			}
+
+			int length = ReplicationEncoder.HEADER_BYTES + size;
+
+			if (in.remaining() < length) {
+				if (length > in.capacity()) {
+					// Make room for the whole state, keeping what was read
+					ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+					larger.put(in).flip();
+					in = larger;
+				}
+
+				return false;
+			}
+
+			int end = in.position() + length;
+			in.position(in.position() + ReplicationEncoder.HEADER_BYTES);
+
+			if (in.getInt(in.position() + 4) != ReplicationEncoder.NO_BASELINE) {
+				deltas++;
+			}
+
+			int sequence = decoder.decode(in);
+			in.position(end);
+			states++;
+
+			ack.clear();
+			ack.put((byte) GameServer.ACK).putInt(sequence).flip();
+			channel.write(ack);
+			return true;
+		}
+	}
+
+}
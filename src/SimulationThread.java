@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Ticks the world on its own thread, so that a slow tick never delays a
+ * frame and a slow frame never delays a tick. The world is ticked every
+ * TICK_TIME milliseconds with the latest input handed over by the render
+ * thread, and every tick publishes a snapshot of the local view that the
+ * render thread draws.
+ *
+ * Nothing but the input, the snapshots and the performance overlay's totals
+ * is shared with the render thread. Movement follows the latest frame's
+ * input, while an attack or talk press is kept until a tick has applied it,
+ * so a press shorter than a tick is never lost. Anything thrown by a tick
+ * stops the thread, and is kept for the render thread to rethrow.
+ */
+public class SimulationThread extends Thread {
+
+	/** Time simulated by one tick, in milliseconds */
+	public static final int TICK_TIME = 16;
+	/**
+	 * Most ticks run back to back to catch up after a stall, beyond which the
+	 * lost time is skipped rather than simulated in a burst
+	 */
+	public static final int MAX_CATCH_UP = 5;
+
+	private final World world;
+	/** Records the input of every tick, or null to not record */
+	private final InputRecorder recorder;
+	private final PerformanceOverlay overlay;
+
+	/** Bits of the packed input that are kept until a tick applies them */
+	private static final int ACTIONS = InputRecorder.ATTACK_BIT | InputRecorder.TALK_BIT;
+
+	/**
+	 * Latest movement of the local player, and every action pressed since the
+	 * last tick, packed by InputRecorder.pack
+	 */
+	private final AtomicInteger input = new AtomicInteger();
+	private volatile boolean running = true;
+	/** Exception or error that stopped the thread, or null */
+	private volatile Throwable failure;
+
+	/**
+	 * Creates a thread that ticks a world once started
+	 *
+	 * @param world
+	 *            World to tick, which no other thread may update
+	 * @param recorder
+	 *            Recorder of every tick's input, or null to not record
+	 * @param overlay
+	 *            Overlay that the tick times are reported to
+	 */
+	public SimulationThread(World world, InputRecorder recorder, PerformanceOverlay overlay) {
+		super("Simulation");
+		this.world = world;
+		this.recorder = recorder;
+		this.overlay = overlay;
+		setDaemon(true);
+	}
+
+	/**
+	 * Hands the local player's input to the following ticks. Movement replaces
+	 * the earlier frames' movement, while actions are added to those the next
+	 * tick has not applied yet.
+	 *
+	 * @param dirX
+	 *            The player's movement in the x axis (-1, 0 or 1).
+	 * @param dirY
+	 *            The player's movement in the y axis (-1, 0 or 1).
+	 * @param attack
+	 *            One if attack key is pressed
+	 * @param talk
+	 *            One if talk key is pressed
+	 */
+	public void setInput(double dirX, double dirY, double attack, double talk) {
+		int packed = InputRecorder.pack(dirX, dirY, attack, talk);
+		int current;
+
+		do {
+			current = input.get();
+		} while (!input.compareAndSet(current, packed | (current & ACTIONS)));
+	}
+
+	/**
+	 * Takes the input of the next tick, clearing the actions it applies
+	 *
+	 * @return Input packed by InputRecorder.pack
+	 */
+	private int takeInput() {
+		int current;
+
+		do {
+			current = input.get();
+		} while (!input.compareAndSet(current, current & ~ACTIONS));
+
+		return current;
+	}
+
+	@Override
+	public void run() {
+		long nextTick = System.nanoTime();
+
+		try {
+			while (running) {
+				long now = System.nanoTime();
+
+				if (now < nextTick) {
+					Thread.sleep((nextTick - now) / 1000000L, (int) ((nextTick - now) % 1000000L));
+					continue;
+				}
+
+				// After a stall, only the latest ticks are caught up on
+				if (now - nextTick > MAX_CATCH_UP * TICK_TIME * 1000000L) {
+					nextTick = now - MAX_CATCH_UP * TICK_TIME * 1000000L;
+				}
+
+				tick(takeInput());
+				nextTick += TICK_TIME * 1000000L;
+			}
+		} catch (InterruptedException e) {
+			// Nothing interrupts the thread, which stops once running is cleared
+		} catch (Throwable e) {
+			// Runtime exceptions and errors, such as a failed zone worker,
+			// must reach the render thread as well, or the game would keep
+			// drawing the last snapshot
+			failure = e;
+		}
+	}
+
+	/**
+	 * Runs one tick of the world
+	 *
+	 * @param input
+	 *            Input of the local player, packed by InputRecorder.pack
+	 */
+	private void tick(int input) throws SlickException, IOException {
+		double dirX = InputRecorder.dirX(input);
+		double dirY = InputRecorder.dirY(input);
+		double attack = InputRecorder.attack(input);
+		double talk = InputRecorder.talk(input);
+
+		if (recorder != null) {
+			recorder.record(dirX, dirY, attack, talk, TICK_TIME);
+		}
+
+		long start = System.nanoTime();
+		world.update(dirX, dirY, attack, talk, TICK_TIME);
+		overlay.recordUpdate(world, System.nanoTime() - start);
+	}
+
+	/**
+	 * Gets the exception or error that stopped the thread
+	 *
+	 * @return Anything thrown by a tick, or null if the thread is running or
+	 *         was shut down
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Stops ticking and waits for the current tick to finish, after which the
+	 * world may be used by the calling thread
+	 */
+	public void shutdown() {
+		running = false;
+
+		try {
+			join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
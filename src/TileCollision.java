@@ -0,0 +1,350 @@
+/**
+ * Moves bodies through the map without letting them enter blocked tiles. A
+ * body is an axis-aligned box around an entity's position, and a move sweeps
+ * the box along its whole path, visiting the tiles its leading edges cross in
+ * the order they are crossed, like a ray walking a grid. The box stops at the
+ * first blocked tile it would enter and slides along it, so a move of any
+ * length gives the same result as many small ones and never tunnels through a
+ * wall.
+ *
+ * Only the tiles a box enters are tested, so a box that already overlaps a
+ * blocked tile can still move out of it. Tiles off the map are blocked.
+ */
+public class TileCollision {
+
+	/** Tolerance for positions that land on a tile edge after rounding */
+	private static final double EPSILON = 1e-9;
+
+	/** Most times the axes of one move can stop or start again */
+	private static final int MAX_EVENTS = 64;
+
+	// Changes to a move's axes found by a sweep
+	private static final int NONE = 0;
+	private static final int STOP_X = 1;
+	private static final int STOP_Y = 2;
+	private static final int RESUME_X = 3;
+	private static final int RESUME_Y = 4;
+
+	/** Global ID of each tile of the map, in row-major order */
+	private final int[] tiles;
+	/** Whether each tile is blocked, in row-major order */
+	private final boolean[] blocked;
+	// Size of the map in tiles
+	private final int columns;
+	private final int rows;
+	/** Width and height of a tile in pixels */
+	private final double tileSize;
+
+	/**
+	 * Reads the tiles of a map and which of them are blocked
+	 *
+	 * @param map
+	 *            Map to read
+	 * @param tileSize
+	 *            Width and height of a tile in pixels
+	 */
+	public TileCollision(WorldMap map, double tileSize) {
+		this.columns = map.getWidth();
+		this.rows = map.getHeight();
+		this.tileSize = tileSize;
+		this.tiles = new int[columns * rows];
+		this.blocked = new boolean[columns * rows];
+
+		TileProperties properties = map.getTileProperties();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int tileID = map.getTileId(column, row, World.LAYER_ID);
+
+				tiles[row * columns + column] = tileID;
+				blocked[row * columns + column] = properties.isBlocked(tileID);
+			}
+		}
+	}
+
+	/**
+	 * Gets the global ID of the tile under a position
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Tile ID, or 0 off the map
+	 */
+	public int getTileAt(double x, double y) {
+		int column = (int) Math.floor(x / tileSize);
+		int row = (int) Math.floor(y / tileSize);
+
+		if (column < 0 || row < 0 || column >= columns || row >= rows) {
+			return 0;
+		}
+
+		return tiles[row * columns + column];
+	}
+
+	/**
+	 * Checks whether a tile is blocked
+	 *
+	 * @param column
+	 *            Column of the tile
+	 * @param row
+	 *            Row of the tile
+	 * @return true if the tile is blocked or off the map
+	 */
+	public boolean isBlocked(int column, int row) {
+		if (column < 0 || row < 0 || column >= columns || row >= rows) {
+			return true;
+		}
+
+		return blocked[row * columns + column];
+	}
+
+	/**
+	 * Checks whether the tile under a position is blocked
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return true if the tile is blocked or off the map
+	 */
+	public boolean isBlockedAt(double x, double y) {
+		return isBlocked((int) Math.floor(x / tileSize), (int) Math.floor(y / tileSize));
+	}
+
+	/**
+	 * Moves an entity's body as far as it can go along a path. An axis of the
+	 * move that runs into a blocked tile stops while the other slides along
+	 * the tile, and starts again once the slide has cleared the tile. Safe to
+	 * call from several threads at once.
+	 *
+	 * @param entity
+	 *            Entity to move
+	 * @param halfSize
+	 *            Half the width and height of the entity's body, in pixels
+	 * @param distanceX
+	 *            Distance to move in the x-axis, in pixels
+	 * @param distanceY
+	 *            Distance to move in the y-axis, in pixels
+	 */
+	public void move(Entity entity, double halfSize, double distanceX, double distanceY) {
+		double x = entity.getPosX();
+		double y = entity.getPosY();
+
+		// Fraction of the move done so far, and the axes stopped by a wall
+		double time = 0;
+		boolean stoppedX = false;
+		boolean stoppedY = false;
+		// Column and row of the tiles that stopped each axis
+		int wallColumn = 0;
+		int wallRow = 0;
+
+		for (int event = 0; event < MAX_EVENTS && time < 1; event++) {
+			double moveX = stoppedX ? 0 : distanceX;
+			double moveY = stoppedY ? 0 : distanceY;
+
+			if (moveX == 0 && moveY == 0) {
+				break;
+			}
+
+			// Tiles the box overlaps, as half-open ranges
+			int firstColumn = first(x - halfSize);
+			int lastColumn = last(x + halfSize);
+			int firstRow = first(y - halfSize);
+			int lastRow = last(y + halfSize);
+
+			// Times at which the leading edges cross into the next column and
+			// row, and the time between two crossings
+			double stepX = tileSize / Math.abs(moveX);
+			double stepY = tileSize / Math.abs(moveY);
+			double nextX = crossing(time, moveX > 0 ? lastColumn + 1 : firstColumn, moveX > 0 ? x + halfSize
+					: x - halfSize, moveX);
+			double nextY = crossing(time, moveY > 0 ? lastRow + 1 : firstRow, moveY > 0 ? y + halfSize
+					: y - halfSize, moveY);
+
+			// While sliding along a wall, the times at which the trailing edge
+			// leaves a row or column, which may clear the wall
+			double trailX = Double.POSITIVE_INFINITY;
+			double trailY = Double.POSITIVE_INFINITY;
+			if (stoppedY && moveX != 0) {
+				trailX = crossing(time, moveX > 0 ? firstColumn + 1 : lastColumn, moveX > 0 ? x - halfSize
+						: x + halfSize, moveX);
+			}
+			if (stoppedX && moveY != 0) {
+				trailY = crossing(time, moveY > 0 ? firstRow + 1 : lastRow, moveY > 0 ? y - halfSize
+						: y + halfSize, moveY);
+			}
+
+			int change = NONE;
+			double end = 1;
+
+			while (true) {
+				double next = Math.min(Math.min(nextX, nextY), Math.min(trailX, trailY));
+				if (next > 1) {
+					break;
+				}
+
+				if (next == nextX) {
+					int column = moveX > 0 ? ++lastColumn : --firstColumn;
+
+					// The trailing edge in the other axis may have left a row
+					if (moveY > 0) {
+						firstRow = first(y - halfSize + moveY * (next - time));
+					} else if (moveY < 0) {
+						lastRow = last(y + halfSize + moveY * (next - time));
+					}
+
+					if (isAnyBlocked(column, column, firstRow, lastRow)) {
+						change = STOP_X;
+						wallColumn = column;
+						end = next;
+						break;
+					}
+
+					nextX += stepX;
+				} else if (next == nextY) {
+					int row = moveY > 0 ? ++lastRow : --firstRow;
+
+					if (moveX > 0) {
+						firstColumn = first(x - halfSize + moveX * (next - time));
+					} else if (moveX < 0) {
+						lastColumn = last(x + halfSize + moveX * (next - time));
+					}
+
+					if (isAnyBlocked(firstColumn, lastColumn, row, row)) {
+						change = STOP_Y;
+						wallRow = row;
+						end = next;
+						break;
+					}
+
+					nextY += stepY;
+				} else if (next == trailY) {
+					if (moveY > 0) {
+						firstRow++;
+					} else {
+						lastRow--;
+					}
+
+					if (!isAnyBlocked(wallColumn, wallColumn, firstRow, lastRow)) {
+						change = RESUME_X;
+						end = next;
+						break;
+					}
+
+					trailY += stepY;
+				} else {
+					if (moveX > 0) {
+						firstColumn++;
+					} else {
+						lastColumn--;
+					}
+
+					if (!isAnyBlocked(firstColumn, lastColumn, wallRow, wallRow)) {
+						change = RESUME_Y;
+						end = next;
+						break;
+					}
+
+					trailX += stepX;
+				}
+			}
+
+			x += moveX * (end - time);
+			y += moveY * (end - time);
+			time = end;
+
+			// A stopped axis rests exactly against the wall's edge
+			switch (change) {
+			case STOP_X:
+				x = moveX > 0 ? wallColumn * tileSize - halfSize : (wallColumn + 1) * tileSize + halfSize;
+				stoppedX = true;
+				break;
+			case STOP_Y:
+				y = moveY > 0 ? wallRow * tileSize - halfSize : (wallRow + 1) * tileSize + halfSize;
+				stoppedY = true;
+				break;
+			case RESUME_X:
+				stoppedX = false;
+				break;
+			case RESUME_Y:
+				stoppedY = false;
+				break;
+			}
+		}
+
+		entity.setPosX(x);
+		entity.setPosY(y);
+	}
+
+	/**
+	 * Calculates when an edge moving along an axis reaches a tile boundary
+	 *
+	 * @param time
+	 *            Current fraction of the move
+	 * @param boundary
+	 *            Index of the tile the boundary is the low edge of
+	 * @param edge
+	 *            Current position of the edge
+	 * @param distance
+	 *            Distance of the whole move along the axis
+	 * @return Fraction of the move at which the edge reaches the boundary, or
+	 *         infinity if it does not move
+	 */
+	private double crossing(double time, int boundary, double edge, double distance) {
+		if (distance == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		return time + Math.max(0, (boundary * tileSize - edge) / distance);
+	}
+
+	/**
+	 * Checks whether any tile of a rectangle is blocked
+	 *
+	 * @param firstColumn
+	 *            Left column of the rectangle
+	 * @param lastColumn
+	 *            Right column of the rectangle
+	 * @param firstRow
+	 *            Top row of the rectangle
+	 * @param lastRow
+	 *            Bottom row of the rectangle
+	 * @return true if a tile is blocked
+	 */
+	private boolean isAnyBlocked(int firstColumn, int lastColumn, int firstRow, int lastRow) {
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				if (isBlocked(column, row)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Finds the first tile overlapped by a box whose low edge is at a
+	 * position
+	 *
+	 * @param edge
+	 *            Low edge of the box
+	 * @return Index of the tile
+	 */
+	private int first(double edge) {
+		return (int) Math.floor(edge / tileSize + EPSILON);
+	}
+
+	/**
+	 * Finds the last tile overlapped by a box whose high edge is at a
+	 * position. A box ending exactly on a tile's edge does not overlap it.
+	 *
+	 * @param edge
+	 *            High edge of the box
+	 * @return Index of the tile
+	 */
+	private int last(double edge) {
+		return (int) Math.ceil(edge / tileSize - EPSILON) - 1;
+	}
+
+}
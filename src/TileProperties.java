@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * Terrain properties of every tile type of a map, decoded once when the map is
+ * loaded. Each property is kept in a primitive array indexed by global tile
+ * ID, so that the simulation can look up terrain effects without parsing
+ * strings or searching maps.
+ *
+ * Tiles declare their properties in the tileset:
+ * <ul>
+ * <li>block: 1 if units cannot enter the tile</li>
+ * <li>cost: multiplier of the time it takes to cross the tile, 2 halves a
+ * unit's speed</li>
+ * <li>damage: HP lost per second by a unit standing on the tile</li>
+ * <li>sight: 1 if the tile blocks line of sight, 0 if it does not. Blocked
+ * tiles block sight unless they say otherwise.</li>
+ * </ul>
+ * Tiles without a property, and the empty tile 0, take its default.
+ */
+public class TileProperties {
+
+	// Names and values of tile properties in the tileset
+	public static final String BLOCKED = "block";
+	public static final String MOVE_COST = "cost";
+	public static final String DAMAGE = "damage";
+	public static final String BLOCKS_SIGHT = "sight";
+	public static final String FALSE = "0";
+	public static final String TRUE = "1";
+
+	/** Movement cost of tiles that do not declare one */
+	public static final float DEFAULT_MOVE_COST = 1;
+
+	// Properties of every tile ID
+	private boolean[] blocked = new boolean[1];
+	private float[] moveCost = { DEFAULT_MOVE_COST };
+	private int[] damage = new int[1];
+	private boolean[] blocksSight = new boolean[1];
+	/** Whether each tile declared its sight property, rather than following block */
+	private boolean[] sightDeclared = new boolean[1];
+
+	/**
+	 * Sets a property of a tile from its value in the tileset
+	 *
+	 * @param tileID
+	 *            Global ID of the tile
+	 * @param name
+	 *            Name of the property
+	 * @param value
+	 *            Value of the property
+	 * @throws IllegalArgumentException
+	 *             if the value is not valid for the property
+	 */
+	public void set(int tileID, String name, String value) {
+		if (tileID >= blocked.length) {
+			grow(tileID + 1);
+		}
+
+		switch (name) {
+		case BLOCKED:
+			blocked[tileID] = parseFlag(name, value);
+			if (!sightDeclared[tileID]) {
+				blocksSight[tileID] = blocked[tileID];
+			}
+			break;
+		case MOVE_COST:
+			float cost = Float.parseFloat(value);
+			if (!(cost > 0)) {
+				throw new IllegalArgumentException("Tile " + tileID + " has a movement cost of " + value);
+			}
+			moveCost[tileID] = cost;
+			break;
+		case DAMAGE:
+			damage[tileID] = Integer.parseInt(value);
+			break;
+		case BLOCKS_SIGHT:
+			blocksSight[tileID] = parseFlag(name, value);
+			sightDeclared[tileID] = true;
+			break;
+		default:
+			// Properties for other tools are kept out of the simulation
+		}
+	}
+
+	/**
+	 * Parses the value of a flag property
+	 *
+	 * @param name
+	 *            Name of the property
+	 * @param value
+	 *            Value of the property
+	 * @return Value of the flag
+	 */
+	private static boolean parseFlag(String name, String value) {
+		if (value.equals(TRUE)) {
+			return true;
+		} else if (value.equals(FALSE)) {
+			return false;
+		}
+
+		throw new IllegalArgumentException("Tile property " + name + " must be " + FALSE + " or " + TRUE
+				+ ", not " + value);
+	}
+
+	/**
+	 * Grows the arrays to hold a tile ID, giving new tiles the defaults
+	 *
+	 * @param size
+	 *            Number of tile IDs to hold
+	 */
+	private void grow(int size) {
+		int old = blocked.length;
+
+		blocked = Arrays.copyOf(blocked, size);
+		moveCost = Arrays.copyOf(moveCost, size);
+		Arrays.fill(moveCost, old, size, DEFAULT_MOVE_COST);
+		damage = Arrays.copyOf(damage, size);
+		blocksSight = Arrays.copyOf(blocksSight, size);
+		sightDeclared = Arrays.copyOf(sightDeclared, size);
+	}
+
+	/**
+	 * Checks whether units cannot enter a tile
+	 *
+	 * @param tileID
+	 *            Global ID of the tile
+	 * @return true if the tile is blocked
+	 */
+	public boolean isBlocked(int tileID) {
+		return tileID < blocked.length && blocked[tileID];
+	}
+
+	/**
+	 * Gets the multiplier of the time it takes to cross a tile
+	 *
+	 * @param tileID
+	 *            Global ID of the tile
+	 * @return Movement cost, 1 for normal ground
+	 */
+	public float getMoveCost(int tileID) {
+		return tileID < moveCost.length ? moveCost[tileID] : DEFAULT_MOVE_COST;
+	}
+
+	/**
+	 * Gets the HP lost per second by a unit standing on a tile
+	 *
+	 * @param tileID
+	 *            Global ID of the tile
+	 * @return Damage per second, 0 for harmless ground
+	 */
+	public int getDamage(int tileID) {
+		return tileID < damage.length ? damage[tileID] : 0;
+	}
+
+	/**
+	 * Checks whether a tile blocks line of sight
+	 *
+	 * @param tileID
+	 *            Global ID of the tile
+	 * @return true if units cannot see through the tile
+	 */
+	public boolean blocksSight(int tileID) {
+		return tileID < blocksSight.length && blocksSight[tileID];
+	}
+
+	/**
+	 * Gets the number of tile IDs with properties
+	 *
+	 * @return One more than the highest tile ID with a property
+	 */
+	public int getTileCount() {
+		return blocked.length;
+	}
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Hierarchical timing wheel that fires timers after a number of milliseconds of
+ * game time. Units register their cooldowns and AI timers here instead of
+ * counting them down every frame, so a timer costs nothing until it expires
+ * and the work per tick depends only on how many timers expire.
+ *
+ * The wheel has LEVELS levels of SLOTS slots each. Level 0 holds timers due in
+ * the next SLOTS milliseconds, one slot per millisecond; each higher level
+ * covers SLOTS times the range of the level below, and its timers cascade down
+ * as their time approaches.
+ */
+public class TimerWheel {
+
+	/** Bits of game time covered by each level */
+	public static final int SLOT_BITS = 6;
+	/** Number of slots in each level */
+	public static final int SLOTS = 1 << SLOT_BITS;
+	/** Number of levels in the wheel */
+	public static final int LEVELS = 4;
+
+	/** Longest delay a timer can be scheduled with, about four and a half hours */
+	public static final int MAX_DELAY = (1 << (LEVELS * SLOT_BITS)) - (1 << ((LEVELS - 1) * SLOT_BITS));
+
+	private static final int SLOT_MASK = SLOTS - 1;
+
+	/**
+	 * Receives expired timers
+	 */
+	public interface Listener {
+		/**
+		 * Called when one of the listener's timers expires
+		 *
+		 * @param timer
+		 *            ID of the expired timer
+		 */
+		void onTimer(int timer);
+	}
+
+	/**
+	 * A reusable timer. Owners create their timers once and reschedule them as
+	 * often as needed, so scheduling never allocates.
+	 */
+	public static class Timer {
+		private final Listener owner;
+		private final int id;
+
+		/** Game time the timer expires at */
+		private long expiry;
+		/** Whether the timer is currently in the wheel */
+		private boolean scheduled;
+
+		// Neighbours in the timer's slot
+		private Timer next;
+		private Timer prev;
+		/** Index of the slot the timer is in */
+		private int slot;
+
+		/**
+		 * Creates a timer
+		 *
+		 * @param owner
+		 *            Listener notified when the timer expires
+		 * @param id
+		 *            ID passed to the listener
+		 */
+		public Timer(Listener owner, int id) {
+			this.owner = owner;
+			this.id = id;
+		}
+
+		/**
+		 * Checks whether the timer is waiting to expire
+		 *
+		 * @return true if the timer is scheduled
+		 */
+		public boolean isScheduled() {
+			return scheduled;
+		}
+	}
+
+	/** First timer of every slot of every level */
+	private final Timer[] slots = new Timer[LEVELS * SLOTS];
+
+	/** Current game time, in milliseconds */
+	private long now;
+	/** Number of timers fired since the wheel was created */
+	private long fired;
+
+	/**
+	 * Schedules a timer, replacing any earlier schedule of the same timer
+	 *
+	 * @param timer
+	 *            Timer to schedule
+	 * @param delay
+	 *            Milliseconds of game time until the timer expires
+	 */
+	public void schedule(Timer timer, int delay) {
+		if (timer.scheduled) {
+			unlink(timer);
+		}
+
+		timer.expiry = now + Math.min(Math.max(delay, 1), MAX_DELAY);
+		timer.scheduled = true;
+		insert(timer);
+	}
+
+	/**
+	 * Cancels a timer if it is scheduled
+	 *
+	 * @param timer
+	 *            Timer to cancel
+	 */
+	public void cancel(Timer timer) {
+		if (timer.scheduled) {
+			unlink(timer);
+			timer.scheduled = false;
+		}
+	}
+
+	/**
+	 * Advances game time, firing every timer that expires on the way
+	 *
+	 * @param delta
+	 *            Milliseconds of game time passed
+	 */
+	public void advance(int delta) {
+		long target = now + delta;
+
+		while (now < target) {
+			now++;
+			int index = (int) now & SLOT_MASK;
+
+			// Entering a new lap of level 0 pulls the next batch down
+			if (index == 0) {
+				cascade(1);
+			}
+
+			Timer timer = slots[index];
+			slots[index] = null;
+
+			while (timer != null) {
+				Timer next = timer.next;
+				timer.next = null;
+				timer.prev = null;
+				timer.scheduled = false;
+				fired++;
+
+				timer.owner.onTimer(timer.id);
+				timer = next;
+			}
+		}
+	}
+
+	/**
+	 * Moves the timers of the current slot of a level down to lower levels
+	 *
+	 * @param level
+	 *            Level to cascade from
+	 */
+	private void cascade(int level) {
+		if (level >= LEVELS) {
+			return;
+		}
+
+		int index = (int) (now >>> (level * SLOT_BITS)) & SLOT_MASK;
+
+		// This level also starts a new lap, so its own batch comes first
+		if (index == 0) {
+			cascade(level + 1);
+		}
+
+		int slot = level * SLOTS + index;
+		Timer timer = slots[slot];
+		slots[slot] = null;
+
+		while (timer != null) {
+			Timer next = timer.next;
+			timer.next = null;
+			timer.prev = null;
+			insert(timer);
+			timer = next;
+		}
+	}
+
+	/**
+	 * Puts a timer into the slot matching its expiry. A timer goes into the
+	 * lowest level whose higher bits of game time it shares with the current
+	 * time, so its slot is always reached before it is due.
+	 *
+	 * @param timer
+	 *            Timer to insert
+	 */
+	private void insert(Timer timer) {
+		int level = 0;
+
+		while (level < LEVELS - 1 && (timer.expiry ^ now) >>> ((level + 1) * SLOT_BITS) != 0) {
+			level++;
+		}
+
+		int slot = level * SLOTS + ((int) (timer.expiry >>> (level * SLOT_BITS)) & SLOT_MASK);
+		Timer head = slots[slot];
+
+		timer.slot = slot;
+		timer.prev = null;
+		timer.next = head;
+		if (head != null) {
+			head.prev = timer;
+		}
+		slots[slot] = timer;
+	}
+
+	/**
+	 * Removes a timer from its slot
+	 *
+	 * @param timer
+	 *            Timer to remove
+	 */
+	private void unlink(Timer timer) {
+		if (timer.prev != null) {
+			timer.prev.next = timer.next;
+		} else {
+			slots[timer.slot] = timer.next;
+		}
+
+		if (timer.next != null) {
+			timer.next.prev = timer.prev;
+		}
+
+		timer.next = null;
+		timer.prev = null;
+	}
+
+	/**
+	 * Gets the current game time
+	 *
+	 * @return Milliseconds of game time since the wheel was created
+	 */
+	public long getTime() {
+		return now;
+	}
+
+	/**
+	 * Gets the number of timers fired so far
+	 *
+	 * @return Number of fired timers
+	 */
+	public long getFired() {
+		return fired;
+	}
+
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands objects from one writer thread to one reader thread without locks.
+ * Of three buffers, the writer owns one to fill, the reader owns one to read,
+ * and the third holds the latest published buffer. Publishing swaps the
+ * writer's buffer with the latest one, and reading swaps the reader's buffer
+ * with it if it is newer, so neither thread ever waits for the other or sees
+ * a buffer the other is using.
+ *
+ * @param <T>
+ *            Type of the buffers
+ */
+public class TripleBuffer<T> {
+
+	/** Bit of the middle slot set while its buffer has not been read */
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+
+	private final Object[] buffers;
+	/** Index of the writer's buffer */
+	private int back = 0;
+	/** Index of the reader's buffer */
+	private int front = 1;
+	/** Index of the latest published buffer, with the FRESH bit */
+	private final AtomicInteger middle = new AtomicInteger(2);
+
+	/**
+	 * Creates a triple buffer of three distinct objects
+	 *
+	 * @param back
+	 *            Buffer the writer fills first
+	 * @param front
+	 *            Buffer the reader sees before anything is published
+	 * @param middle
+	 *            Third buffer
+	 */
+	public TripleBuffer(T back, T front, T middle) {
+		this.buffers = new Object[] { back, front, middle };
+	}
+
+	/**
+	 * Gets the buffer the writer fills. Must only be called by the writer.
+	 *
+	 * @return Writer's buffer
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack() {
+		return (T) buffers[back];
+	}
+
+	/**
+	 * Publishes the writer's buffer, and gives the writer the oldest buffer to
+	 * fill next. Must only be called by the writer.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Gets the latest published buffer, which the reader may use until its
+	 * next call. Must only be called by the reader.
+	 *
+	 * @return Reader's buffer
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFront() {
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & INDEX;
+		}
+
+		return (T) buffers[front];
+	}
+
+}
@@ -1,6 +1,7 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
 
 /**
  * Represents a unit object from which the player, monsters and NPCs inherit
@@ -8,13 +9,19 @@ import org.newdawn.slick.Graphics;
  *
  */
 
-public abstract class Unit extends Entity {
+public abstract class Unit extends Entity implements TimerWheel.Listener {
 
 	/** Boolean value when the player is facing left. */
 	public static final boolean DIR_LEFT = true;
 	/** Boolean value when the player is facing right. */
 	public static final boolean DIR_RIGHT = false;
 
+	/** Half the width and height of the unit's body against the map, in pixels. */
+	public static final double BODY_HALF_SIZE = UnitSeparation.BODY_RADIUS;
+
+	/** ID of the timer that ends the unit's cooldown. */
+	public static final int COOLDOWN_TIMER = 0;
+
 	/** Default unit direction */
 	private boolean unitFacing = DIR_RIGHT;
 
@@ -30,8 +37,26 @@ public abstract class Unit extends Entity {
 	private int damage;
 	/** Stores the unit's name. */
 	private String name;
-	/** Stores the unit's current cooldown timer. */
-	private int cooldownTime;
+	/** Stores the ID of the unit's type in the attributes file. */
+	private int typeID;
+	/** Stores whether the unit's cooldown has elapsed. */
+	private boolean cooldownReady = true;
+	/** Timer that ends the unit's cooldown. */
+	private final TimerWheel.Timer cooldownTimer = new TimerWheel.Timer(this, COOLDOWN_TIMER);
+	/** Stores the unit's own stream of random numbers. */
+	private SplittableRandom random;
+	/** Stores the timing wheel the unit's timers are scheduled on. */
+	private TimerWheel timers;
+	/** Stores the zone that owns the unit, if any. */
+	private Zone zone;
+	/** Stores the unit's position in its zone. */
+	private int zoneIndex;
+	/** Stores whether the unit has died and left the world. */
+	private boolean dead;
+	/** Stores the combat round the unit last rolled its damage in. */
+	private long combatRound;
+	/** Stores the damage the unit rolled in that combat round. */
+	private int combatDamage;
 
 	/** Reduces the unit's HP by a certain amount of damage points. */
 	public void takeDamage(int damage) {
@@ -57,6 +82,34 @@ public abstract class Unit extends Entity {
 		return this.name;
 	}
 
+	/**
+	 * Gets the direction the unit's sprite faces
+	 * 
+	 * @return DIR_LEFT or DIR_RIGHT
+	 */
+	public boolean getFacing() {
+		return this.unitFacing;
+	}
+
+	/**
+	 * Sets the ID of the unit's type
+	 * 
+	 * @param typeID
+	 *            ID of the unit's type in the attributes file
+	 */
+	public void setTypeID(int typeID) {
+		this.typeID = typeID;
+	}
+
+	/**
+	 * Gets the ID of the unit's type
+	 * 
+	 * @return ID of the unit's type in the attributes file
+	 */
+	public int getTypeID() {
+		return this.typeID;
+	}
+
 	/**
 	 * Gets the speed of the unit
 	 * 
@@ -170,12 +223,11 @@ public abstract class Unit extends Entity {
 	public void update(World world, double dirX, double dirY, int delta) {
 		move(world, dirX, dirY, delta);
 		flipUnit(dirX);
-		checkCooldown(delta);
 	}
 
 	/**
-	 * Determines the next position of the given unit such that it does not walk
-	 * into any obstacles
+	 * Moves the unit along its direction of movement, slowed by the terrain
+	 * under it, sliding along any obstacle it runs into
 	 * 
 	 * @param world
 	 *            Dependency on the world object
@@ -187,22 +239,33 @@ public abstract class Unit extends Entity {
 	 *            Time between frames
 	 */
 	private void move(World world, double dirX, double dirY, int delta) {
-		// Calculates the unit's potential position
-		double tempX = newUnitLocationX(this.getPosX(), dirX, delta);
-		double tempY = newUnitLocationY(this.getPosY(), dirY, delta);
+		double speed = this.speed / world.getMoveCost(this.getPosX(), this.getPosY());
+		push(world, dirX * delta * speed, dirY * delta * speed);
+	}
 
-		// Checks for obstacle in potential direction of movement
-		if (world.isBlocked(tempX, this.getPosY())) {
-			dirX = 0;
-		}
+	/**
+	 * Moves the unit by a distance, stopping at and sliding along obstacles,
+	 * for example when it is pushed out of another unit's way
+	 * 
+	 * @param world
+	 *            Dependency on the world object
+	 * @param distanceX
+	 *            Distance to move in the x-axis, in pixels
+	 * @param distanceY
+	 *            Distance to move in the y-axis, in pixels
+	 */
+	public void push(World world, double distanceX, double distanceY) {
+		world.getCollision().move(this, BODY_HALF_SIZE, distanceX, distanceY);
+		checkZone();
+	}
 
-		if (world.isBlocked(this.getPosX(), tempY)) {
-			dirY = 0;
+	/**
+	 * Hands the unit over once it has moved out of its zone
+	 */
+	private void checkZone() {
+		if (zone != null && !zone.contains(this.getPosX(), this.getPosY())) {
+			zone.handOff(this);
 		}
-
-		// Sets unit's new position
-		this.setPosX(newUnitLocationX(this.getPosX(), dirX, delta));
-		this.setPosY(newUnitLocationY(this.getPosY(), dirY, delta));
 	}
 
 	/**
@@ -219,71 +282,77 @@ public abstract class Unit extends Entity {
 
 	}
 
+	@Override
+	public void renderEntity(Graphics g, int x, int y) {
+		// Flips the sprite if it is a unit
+		Image sprite = unitFacing ? this.getFlippedSprite() : this.getSprite();
+		sprite.drawCentered(x, y);
+	}
+
 	/**
-	 * Updarts cooldown of unit
+	 * Takes damage if the unit is attacked. Deaths are handled separately by
+	 * onDeath once every attack of the tick has been applied.
 	 * 
-	 * @param delta
-	 *            Time between frames
+	 * @param world
+	 *            Dependency on the world object
+	 * @param damage
+	 *            Amount of damage dealt
 	 */
-	private void checkCooldown(int delta) {
-		if (this.cooldownTime < this.cooldown) {
-			this.cooldownTime = this.cooldownTime + delta;
-		} else if (this.cooldownTime != this.cooldown) {
-			this.cooldownTime = this.cooldown;
-		}
+	public void onAttack(World world, int damage) {
+		FlightEvents.Attack event = FlightEvents.Attack.start();
+
+		takeDamage(damage);
+
+		event.finish(this, damage);
 	}
 
 	/**
-	 * Calculates unit's new location in the world on the x-axis.
+	 * Removes the unit from the world once its HP has run out
 	 * 
-	 * @param unitPosX
-	 *            Unit's current x-coordinate
-	 * @param dirX
-	 *            Direction of unit's movement
-	 * @param delta
-	 *            Time in milliseconds between frames
-	 * @return unit's anticipated location on the x-axis
+	 * @param world
+	 *            Dependency on the world object
 	 */
-	private double newUnitLocationX(double unitPosX, double dirX, int delta) {
-		return unitPosX + dirX * delta * this.speed;
+	public void onDeath(World world) {
+		this.dead = true;
+		world.remove(this);
 	}
 
 	/**
-	 * Calculates unit's new location in the world on the y-axis.
+	 * Brings a dead unit back at full HP, with its cooldown elapsed, so that
+	 * its instance can be reused rather than creating a new unit
 	 * 
-	 * @param unitPosY
-	 *            Unit's current y-coordinate
-	 * @param dirY
-	 *            Direction of unit's movement
-	 * @param delta
-	 *            Time in milliseconds between frames
-	 * @return unit's anticipated location on the y-axis
+	 * @param posX
+	 *            Position to respawn at in the x-axis
+	 * @param posY
+	 *            Position to respawn at in the y-axis
 	 */
-	private double newUnitLocationY(double unitPosY, double dirY, int delta) {
-		return unitPosY + dirY * delta * this.speed;
+	public void respawn(double posX, double posY) {
+		this.setPosX(posX);
+		this.setPosY(posY);
+		this.HP = this.maxHP;
+		this.dead = false;
+		this.unitFacing = DIR_RIGHT;
+
+		timers.cancel(cooldownTimer);
+		this.cooldownReady = true;
 	}
 
-	@Override
-	public void renderEntity(Graphics g, int x, int y) {
-		// Flips the sprite if it is a unit
-		this.getSprite().getFlippedCopy(unitFacing, false).drawCentered(x, y);
+	/**
+	 * Checks whether the unit has died and left the world
+	 * 
+	 * @return true if the unit is dead
+	 */
+	public boolean isDead() {
+		return this.dead;
 	}
 
 	/**
-	 * Takes damage if the unit is attacked
+	 * Checks whether the unit's cooldown has elapsed so that it can attack
 	 * 
-	 * @param world
-	 *            Dependency on the world object
-	 * @param damage
-	 *            Amount of damage dealt
+	 * @return true if the unit can attack
 	 */
-	public void onAttack(World world, int damage) {
-		takeDamage(damage);
-
-		// Remove the object from the world if it is dead
-		if (this.getHP() < 1) {
-			world.remove(this);
-		}
+	public boolean isCooldownReady() {
+		return this.cooldownReady;
 	}
 
 	/**
@@ -292,33 +361,133 @@ public abstract class Unit extends Entity {
 	 * @return Amount of damage dealt
 	 */
 	public int attack() {
-		Random ran = new Random();
-
 		// Attacks only if cooldown time is elapsed
-		if (this.cooldownTime == this.cooldown) {
-			this.cooldownTime = 0;
-			return ran.nextInt(this.getDamage() + 1);
+		if (this.cooldownReady) {
+			// Units without a cooldown can attack every tick
+			int cooldown = this.getCooldown();
+			if (cooldown > 0) {
+				this.cooldownReady = false;
+				timers.schedule(cooldownTimer, cooldown);
+			}
+
+			return random.nextInt(this.getDamage() + 1);
 		}
 
 		return 0;
 	}
 
+	@Override
+	public void onTimer(int timer) {
+		if (timer == COOLDOWN_TIMER) {
+			this.cooldownReady = true;
+		}
+	}
+
+	/**
+	 * Gets the combat round the unit last rolled its damage in
+	 * 
+	 * @return Combat round
+	 */
+	public long getCombatRound() {
+		return this.combatRound;
+	}
+
+	/**
+	 * Sets the combat round the unit last rolled its damage in
+	 * 
+	 * @param combatRound
+	 *            Combat round
+	 */
+	public void setCombatRound(long combatRound) {
+		this.combatRound = combatRound;
+	}
+
+	/**
+	 * Gets the damage the unit rolled in its last combat round
+	 * 
+	 * @return Damage rolled
+	 */
+	public int getCombatDamage() {
+		return this.combatDamage;
+	}
+
+	/**
+	 * Sets the damage the unit rolled in its last combat round
+	 * 
+	 * @param combatDamage
+	 *            Damage rolled
+	 */
+	public void setCombatDamage(int combatDamage) {
+		this.combatDamage = combatDamage;
+	}
+
+	/**
+	 * Gets the unit's stream of random numbers
+	 * 
+	 * @return Random number stream
+	 */
+	public SplittableRandom getRandom() {
+		return this.random;
+	}
+
+	/**
+	 * Gets the timing wheel the unit's timers are scheduled on
+	 * 
+	 * @return Timing wheel
+	 */
+	public TimerWheel getTimers() {
+		return this.timers;
+	}
+
+	/**
+	 * Gets the zone that owns the unit
+	 * 
+	 * @return Zone of the unit, or null if no zone owns it
+	 */
+	public Zone getZone() {
+		return this.zone;
+	}
+
+	/**
+	 * Sets the zone that owns the unit
+	 * 
+	 * @param zone
+	 *            Zone of the unit
+	 */
+	public void setZone(Zone zone) {
+		this.zone = zone;
+	}
+
+	/**
+	 * Gets the unit's position in its zone
+	 * 
+	 * @return Zone index
+	 */
+	public int getZoneIndex() {
+		return this.zoneIndex;
+	}
+
 	/**
-	 * Get cooldown time of the unit
+	 * Sets the unit's position in its zone
 	 * 
-	 * @return Cooldown time
+	 * @param zoneIndex
+	 *            Zone index
 	 */
-	public int getCooldownTime() {
-		return this.cooldownTime;
+	public void setZoneIndex(int zoneIndex) {
+		this.zoneIndex = zoneIndex;
 	}
 
 	/**
-	 * Sets cooldown time of the unit
+	 * Adds the unit to a world's simulation, giving it its own random stream
+	 * and the timing wheel its timers run on
 	 * 
-	 * @param cooldownTime
-	 *            Cooldown time
+	 * @param random
+	 *            Random number stream
+	 * @param timers
+	 *            Timing wheel of the world
 	 */
-	public void setCooldownTime(int cooldownTime) {
-		this.cooldownTime = cooldownTime;
+	public void join(SplittableRandom random, TimerWheel timers) {
+		this.random = random;
+		this.timers = timers;
 	}
 }
@@ -0,0 +1,281 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps units from standing inside each other. Every unit has a circular body,
+ * and once per tick, after every unit has moved, overlapping bodies are pushed
+ * apart.
+ *
+ * Units are first sorted into a grid of cells as wide as a body, hashed into a
+ * table about twice the size of the crowd, so that each unit is only tested
+ * against the units of its own and the eight neighbouring cells. The pushes of
+ * every pair are summed before any unit moves, which makes the result
+ * independent of the order the pairs are found in. Villagers hold their ground
+ * and are never pushed.
+ */
+public class UnitSeparation {
+
+	/** Radius of a unit's body in pixels */
+	public static final double BODY_RADIUS = 20;
+	/** Width and height of a grid cell in pixels, so that touching bodies share or neighbour a cell */
+	public static final double CELL_SIZE = 2 * BODY_RADIUS;
+	/** Share of an overlap removed per tick, below one so that crowds settle smoothly */
+	public static final double STIFFNESS = 0.5;
+	/** Initial number of units the arrays hold before growing */
+	public static final int INITIAL_CAPACITY = 256;
+
+	// Units of the current tick, their positions, cells and pushes
+	private Unit[] units = new Unit[INITIAL_CAPACITY];
+	private double[] xs = new double[INITIAL_CAPACITY];
+	private double[] ys = new double[INITIAL_CAPACITY];
+	private int[] cellXs = new int[INITIAL_CAPACITY];
+	private int[] cellYs = new int[INITIAL_CAPACITY];
+	private double[] pushXs = new double[INITIAL_CAPACITY];
+	private double[] pushYs = new double[INITIAL_CAPACITY];
+	/** Whether each unit holds its ground */
+	private boolean[] pinned = new boolean[INITIAL_CAPACITY];
+	private int count;
+
+	// Units sorted by hash bucket, and where each bucket starts
+	private int[] buckets = new int[INITIAL_CAPACITY];
+	private int[] sorted = new int[INITIAL_CAPACITY];
+	private int[] starts = new int[1];
+	/** Number of hash buckets of the current tick, a power of two */
+	private int bucketCount;
+
+	// Statistics of the latest tick
+	private int pairChecks;
+	private int contacts;
+
+	/**
+	 * Pushes apart every pair of overlapping units of the world. Must be called
+	 * on the tick thread once every unit has moved.
+	 *
+	 * @param world
+	 *            World whose units are separated
+	 */
+	public void separate(World world) {
+		count = 0;
+		gather(world.getPlayers(), false);
+		gather(world.getVillagerList(), true);
+		gather(world.getPassiveList(), false);
+		gather(world.getAggressiveList(), false);
+
+		sort();
+		findContacts();
+
+		for (int i = 0; i < count; i++) {
+			if (pushXs[i] != 0 || pushYs[i] != 0) {
+				units[i].push(world, pushXs[i], pushYs[i]);
+			}
+		}
+
+		// Dead units should not be kept alive by the arrays
+		Arrays.fill(units, 0, count, null);
+	}
+
+	/**
+	 * Adds the units of a list to the current tick
+	 *
+	 * @param list
+	 *            Units to add
+	 * @param pin
+	 *            Whether the units hold their ground
+	 */
+	private void gather(List<? extends Unit> list, boolean pin) {
+		if (count + list.size() > units.length) {
+			grow(count + list.size());
+		}
+
+		for (int i = 0; i < list.size(); i++) {
+			Unit unit = list.get(i);
+			double x = unit.getPosX();
+			double y = unit.getPosY();
+
+			units[count] = unit;
+			xs[count] = x;
+			ys[count] = y;
+			cellXs[count] = (int) Math.floor(x / CELL_SIZE);
+			cellYs[count] = (int) Math.floor(y / CELL_SIZE);
+			pushXs[count] = 0;
+			pushYs[count] = 0;
+			pinned[count] = pin;
+			count++;
+		}
+	}
+
+	/**
+	 * Sorts the units by the hash bucket of their cell with a counting sort
+	 */
+	private void sort() {
+		// The table only grows, so that a crowd shrinking and growing around a
+		// power of two does not reallocate it
+		int size = Integer.highestOneBit(Math.max(16, 2 * count) - 1) << 1;
+		if (starts.length < size + 1) {
+			starts = new int[size + 1];
+		} else {
+			Arrays.fill(starts, 0, size + 1, 0);
+		}
+		bucketCount = size;
+
+		int mask = size - 1;
+		for (int i = 0; i < count; i++) {
+			buckets[i] = hash(cellXs[i], cellYs[i]) & mask;
+			starts[buckets[i] + 1]++;
+		}
+
+		for (int i = 0; i < size; i++) {
+			starts[i + 1] += starts[i];
+		}
+
+		// Each bucket's start is used as its cursor, which leaves it at the
+		// start of the next bucket, so the starts are shifted back afterwards
+		for (int i = 0; i < count; i++) {
+			sorted[starts[buckets[i]]++] = i;
+		}
+
+		for (int i = size; i > 0; i--) {
+			starts[i] = starts[i - 1];
+		}
+		starts[0] = 0;
+	}
+
+	/**
+	 * Tests every unit against the units after it in its own and the
+	 * neighbouring cells, and sums the pushes of the overlapping pairs
+	 */
+	private void findContacts() {
+		int mask = bucketCount - 1;
+		pairChecks = 0;
+		contacts = 0;
+
+		for (int i = 0; i < count; i++) {
+			for (int cellY = cellYs[i] - 1; cellY <= cellYs[i] + 1; cellY++) {
+				for (int cellX = cellXs[i] - 1; cellX <= cellXs[i] + 1; cellX++) {
+					int bucket = hash(cellX, cellY) & mask;
+
+					for (int k = starts[bucket]; k < starts[bucket + 1]; k++) {
+						int j = sorted[k];
+
+						// Other cells sharing the bucket are skipped, and each
+						// pair is only tested by its lower unit
+						if (j > i && cellXs[j] == cellX && cellYs[j] == cellY) {
+							pairChecks++;
+							resolve(i, j);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the pushes that separate two units if their bodies overlap
+	 *
+	 * @param i
+	 *            Index of the first unit
+	 * @param j
+	 *            Index of the second unit
+	 */
+	private void resolve(int i, int j) {
+		if (pinned[i] && pinned[j]) {
+			return;
+		}
+
+		double a = xs[j] - xs[i];
+		double b = ys[j] - ys[i];
+		double distance = a * a + b * b;
+
+		if (distance >= 4 * BODY_RADIUS * BODY_RADIUS) {
+			return;
+		}
+
+		distance = Math.sqrt(distance);
+		double normalX;
+		double normalY;
+
+		if (distance > 0) {
+			normalX = a / distance;
+			normalY = b / distance;
+		} else {
+			// Units on the same spot are split along an angle that differs
+			// from pair to pair, so that a stack fans out
+			double angle = (i * 31 + j) * 2.399963229728653;
+			normalX = Math.cos(angle);
+			normalY = Math.sin(angle);
+		}
+
+		double push = (2 * BODY_RADIUS - distance) * STIFFNESS;
+		double shareI = pinned[j] ? 1 : pinned[i] ? 0 : 0.5;
+		double shareJ = 1 - shareI;
+
+		pushXs[i] -= normalX * push * shareI;
+		pushYs[i] -= normalY * push * shareI;
+		pushXs[j] += normalX * push * shareJ;
+		pushYs[j] += normalY * push * shareJ;
+		contacts++;
+	}
+
+	/**
+	 * Hashes the coordinates of a cell
+	 *
+	 * @param cellX
+	 *            Column of the cell
+	 * @param cellY
+	 *            Row of the cell
+	 * @return Hash of the cell
+	 */
+	private static int hash(int cellX, int cellY) {
+		int h = cellX * 0x9E3779B1 + cellY * 0x85EBCA77;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Grows the per-unit arrays
+	 *
+	 * @param size
+	 *            Number of units to hold
+	 */
+	private void grow(int size) {
+		int length = Math.max(size, units.length * 2);
+
+		units = Arrays.copyOf(units, length);
+		xs = Arrays.copyOf(xs, length);
+		ys = Arrays.copyOf(ys, length);
+		cellXs = Arrays.copyOf(cellXs, length);
+		cellYs = Arrays.copyOf(cellYs, length);
+		pushXs = Arrays.copyOf(pushXs, length);
+		pushYs = Arrays.copyOf(pushYs, length);
+		pinned = Arrays.copyOf(pinned, length);
+		buckets = Arrays.copyOf(buckets, length);
+		sorted = Arrays.copyOf(sorted, length);
+	}
+
+	/**
+	 * Gets the number of unit pairs tested during the latest tick
+	 *
+	 * @return Number of pairs
+	 */
+	public int getPairChecks() {
+		return pairChecks;
+	}
+
+	/**
+	 * Gets the number of overlapping unit pairs found during the latest tick
+	 *
+	 * @return Number of pairs
+	 */
+	public int getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * Gets the number of units separated during the latest tick
+	 *
+	 * @return Number of units
+	 */
+	public int getUnitCount() {
+		return count;
+	}
+
+}
@@ -1,5 +1,4 @@
-import java.util.List;
-
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
 /**
@@ -28,17 +27,18 @@ public class Villager extends Unit {
 	public static final int SWORD_ID = 1;
 	public static final int TOME_ID = 2;
 	public static final int ELIXIR_ID = 3;
-	
-	/** Item not found */
-	public static final int ITEM_NOT_FOUND = -1;
 
 	/** Allocated time spent displaying a dialogue box */
 	public static final int TALK_TIME = 4000;
+	/** ID of the timer that clears the dialogue box */
+	public static final int TALK_TIMER = 1;
 	
 	/** Current string being spoken by the villager */
 	private String currentDialogue = "";
-	/** Timer that counts talking time elapsed */
-	private int talkTimer;
+	/** Number of times the dialogue box has changed */
+	private int dialogueVersion;
+	/** Timer that clears the dialogue box once talking time has elapsed */
+	private final TimerWheel.Timer talkTimer = new TimerWheel.Timer(this, TALK_TIMER);
 
 	/**
 	 * Initializes the villager object with necessary attributes
@@ -48,7 +48,7 @@ public class Villager extends Unit {
 	 * @param posY
 	 *            Initial position of entity in the y-axis
 	 * @param sprite
-	 *            File path of entity sprite
+	 *            Sprite of entity
 	 * @param maxHP
 	 *            Max HP of unit
 	 * @param damage
@@ -59,7 +59,7 @@ public class Villager extends Unit {
 	 *            Name of unit
 	 * @throws SlickException
 	 */
-	public Villager(double posX, double posY, String sprite, int maxHP, int damage, int cooldown, String name)
+	public Villager(double posX, double posY, Image sprite, int maxHP, int damage, int cooldown, String name)
 			throws SlickException {
 		this.setSprite(sprite);
 		this.setMaxHP(maxHP);
@@ -68,31 +68,16 @@ public class Villager extends Unit {
 		this.setPosX(posX);
 		this.setPosY(posY);
 		this.setName(name);
-		this.talkTimer = TALK_TIME;
 	}
 
 	@Override
-	public void update(World world, double dirX, double dirY, int delta) {
-		super.update(world, dirX, dirY, delta);
-		dialogueTimer(delta);
-	}
-
-	/**
-	 * Counts elapsed time on display of dialogue box
-	 * 
-	 * @param delta
-	 *            Time between friends
-	 */
-	private void dialogueTimer(int delta) {
-		// Displays the dialogue through currentDialogue for an allocated amount
-		// of time
-		if (this.talkTimer < TALK_TIME) {
-			this.talkTimer = this.talkTimer + delta;
-		} else if (this.talkTimer != TALK_TIME) {
-			this.talkTimer = TALK_TIME;
+	public void onTimer(int timer) {
+		// Stops displaying the dialogue once its allocated time is over
+		if (timer == TALK_TIMER) {
 			currentDialogue = "";
+			dialogueVersion++;
 		} else {
-			currentDialogue = "";
+			super.onTimer(timer);
 		}
 	}
 
@@ -107,7 +92,7 @@ public class Villager extends Unit {
 	public void talk(World world, Player player) {
 
 		// Checks to see if village is still talking
-		if (this.talkTimer == TALK_TIME) {
+		if (!talkTimer.isScheduled()) {
 			// Switches based on name of villager being spoken to
 
 			if (this.getName().equals(ELVIRA)) {
@@ -120,35 +105,24 @@ public class Villager extends Unit {
 			}
 
 			if (this.getName().equals(GARTH)) {
-				player.getInventory();
-
-				if (player.findItem(AMULET_ID) == ITEM_NOT_FOUND) {
+				if (!player.hasItem(AMULET_ID)) {
 					currentDialogue = GARTH_AMULET;
-				} else if (player.findItem(SWORD_ID) == ITEM_NOT_FOUND) {
+				} else if (!player.hasItem(SWORD_ID)) {
 					currentDialogue = GARTH_SWORD;
-				} else if (player.findItem(TOME_ID) == ITEM_NOT_FOUND) {
+				} else if (!player.hasItem(TOME_ID)) {
 					currentDialogue = GARTH_TOME;
 				} else {
 					currentDialogue = GARTH_ALL;
 				}
 			}
 
-			if (this.getName().equals(PRINCE) && this.talkTimer == TALK_TIME) {
-				List<Entity> entity = world.getEntityList();
-				boolean found = false;
-
+			if (this.getName().equals(PRINCE)) {
 				// Checks if elixir exists in the world
-				for (Entity currentEntity : entity) {
-					if (currentEntity instanceof Item) {
-						if (((Item) currentEntity).getID() == ELIXIR_ID) {
-							found = true;
-						}
-					}
-				}
+				boolean found = world.hasItems(ELIXIR_ID);
 
 				// Checks to see if player has the elixer, takes it if he/she
 				// does
-				if (player.findItem(ELIXIR_ID) != ITEM_NOT_FOUND) {
+				if (player.hasItem(ELIXIR_ID)) {
 					currentDialogue = PRINCE_HAS_ELIXIR;
 					player.removeItem(ELIXIR_ID);
 				} else if (!found) {
@@ -158,7 +132,8 @@ public class Villager extends Unit {
 				}
 			}
 
-			talkTimer = 0;
+			dialogueVersion++;
+			getTimers().schedule(talkTimer, TALK_TIME);
 		}
 	}
 
@@ -171,4 +146,14 @@ public class Villager extends Unit {
 		return this.currentDialogue;
 	}
 
+	/**
+	 * Gets the version of the dialogue box, which changes whenever the
+	 * villager starts or stops talking
+	 * 
+	 * @return Dialogue version
+	 */
+	public int getDialogueVersion() {
+		return this.dialogueVersion;
+	}
+
 }
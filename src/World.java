@@ -4,28 +4,25 @@
  * Author: Vishal Egbert
  */
 
-import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Set;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Font;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
-import org.newdawn.slick.tiled.TiledMap;
 
 /**
  * Represents the entire game world. (Designed to be instantiated just once for
  * the whole game).
  */
 public class World {
-	// Constants for tile blocking
-	public static final String TILE_PROPERTY_BLOCKED = "block";
-	public static final String TILE_PROPERTY_BLOCKED_FALSE = "0";
-	public static final String TILE_PROPERTY_BLOCKED_TRUE = "1";
-
 	// Constants for column positions in TSV files
 	public static final int COL_ID = 0;
 	public static final int COL_TYPE = 1;
@@ -43,10 +40,15 @@ public class World {
 	public static final String ITEM_POSITIONS = "items.txt";
 	public static final String ATTRIBUTES = "attributes.txt";
 	public static final String UNIT_POSITIONS = "positions.txt";
+	public static final String SPAWNERS = "spawners.txt";
 	public static final String PANEL = "panel.png";
 
 	public static final int LAYER_ID = 0;
 
+	// Constants for world state checksums
+	public static final long CHECKSUM_SEED = 0xcbf29ce484222325L;
+	public static final long CHECKSUM_PRIME = 0x100000001b3L;
+
 	// Type IDs for units
 	public static final int PLAYER_ID = 0;
 	public static final int NPC_ID = 1;
@@ -59,183 +61,927 @@ public class World {
 	public static final int BAR_ELEVATION = 50;
 	public static final int BAR_EXTRA = 6;
 
+	// Colours of the panel and boxes
+	private static final Color LABEL_COLOR = new Color(0.9f, 0.9f, 0.4f); // Gold
+	private static final Color VALUE_COLOR = new Color(1.0f, 1.0f, 1.0f); // White
+	private static final Color BAR_BG_COLOR = new Color(0.0f, 0.0f, 0.0f, 0.8f); // Black, transp
+	private static final Color BAR_COLOR = new Color(0.8f, 0.0f, 0.0f, 0.8f); // Red, transp
+	/** Pixels around the screen whose entities are drawn, for sprites and boxes that reach onto it */
+	public static final int VIEW_MARGIN = 2 * Camera.TILE_DIMENSION;
+
 	// Num attributes, players and items
 	public static final int NUM_UNIT_ATTRIBUTES = 6;
 	public static final int NUM_ITEM_ATTRIBUTES = 2;
+	public static final int NUM_SPAWNER_ATTRIBUTES = 7;
 	public static final int NUM_CHARACTERS = 9;
 	public static final int NUM_ITEMS = 4;
 
 	/** TiledMap object that represents the map of the world. */
-	private TiledMap map;
-	/** Player object that represents the player. */
+	private WorldMap map;
+	/** Terrain properties of the map's tiles. */
+	private TileProperties tileProperties;
+	/** Background image of the status panel. */
+	private Image panel;
+	/** Player object that represents the local player. */
 	private Player player;
+	/** Every player in the world, including the local one. */
+	private List<Player> players = new ArrayList<Player>();
+	// Starting position, attributes and sprite of newly joined players
+	private double spawnX;
+	private double spawnY;
+	private int[] playerAttributes;
+	private Image playerSprite;
+	private String playerName;
+	/** Network ID handed to the next entity added to the world. */
+	private int nextNetworkID;
 	/** Camera object that represents the game's viewport. */
 	private Camera camera;
-	/** ArrayList that holds all entities present in the game. */
-	private List<Entity> entity;
+	// Entities present in the game, one list per type so that every system
+	// only visits the entities it needs. Each entity's index is its position
+	// in its own list.
+	private List<Item> items = new ArrayList<Item>();
+	private List<Villager> villagers = new ArrayList<Villager>();
+	private List<PassiveMonster> passives = new ArrayList<PassiveMonster>();
+	private List<AggressiveMonster> aggressives = new ArrayList<AggressiveMonster>();
+	/** Items present in the game, indexed by item ID. */
+	private Map<Integer, Set<Item>> itemsByID = new HashMap<Integer, Set<Item>>();
+	/** Villagers present in the game, indexed by name. */
+	private Map<String, Set<Villager>> villagersByName = new HashMap<String, Set<Villager>>();
+	/**
+	 * Monsters present in the game, indexed by their type ID in the attributes
+	 * file. Kept in lists rather than sets, so that a respawned monster is
+	 * indexed again without allocating an entry.
+	 */
+	private Map<Integer, List<Monster>> monstersByType = new HashMap<Integer, List<Monster>>();
+
+	// Attributes, sprites and names of every unit type, kept for the monsters
+	// spawners create after loading
+	private int[][] attributeTable;
+	private Image[] unitSprites = new Image[NUM_CHARACTERS];
+	private String[] unitNames;
+	/** Spawners that keep the monster camps populated */
+	private List<MonsterSpawner> spawners = new ArrayList<MonsterSpawner>();
+	/** Dead monsters of the types spawners respawn */
+	private MonsterPool pool = new MonsterPool(NUM_CHARACTERS);
+	/** Source of every unit's random number stream. */
+	private RandomStreams random;
+	/** Events raised by the simulation, drained at the end of every tick. */
+	private EventBus events = new EventBus();
+	/** Attacks made during the tick, resolved after every unit has updated. */
+	private CombatResolver combat = new CombatResolver();
+	/** Cooldowns and AI timers of every unit. */
+	private TimerWheel timers = new TimerWheel();
+	/** Zones of the map that the units are updated in. */
+	private ZoneScheduler zones;
+	/** Blocked tiles of the map that units move around. */
+	private TileCollision collision;
+	/** Tiles of the map that block sight, with the lines already walked. */
+	private LineOfSight sight;
+	/** Pushes apart units whose bodies overlap. */
+	private UnitSeparation separation = new UnitSeparation();
+	/** Grid that finds the entities each observer can see. */
+	private InterestManager interest;
+	/** What the local camera can see. */
+	private InterestManager.Observer view = new InterestManager.Observer();
+	/** Snapshots of the local view, published by the tick thread for the render thread. */
+	private TripleBuffer<RenderSnapshot> snapshots = new TripleBuffer<RenderSnapshot>(new RenderSnapshot(),
+			new RenderSnapshot(), new RenderSnapshot());
+	/** Number of times the local view has changed, see getRenderVersion. */
+	private long renderVersion;
+	// Dialogue and inventory versions the local view was last drawn with
+	private long viewDialogue;
+	private int viewInventory;
+	/** Number of getNearBy queries made so far. */
+	private long spatialQueries;
+
+	// Status panel text of the player's stats and the inventory version it
+	// was built at
+	private String damageText;
+	private String cooldownText;
+	private int statTextVersion;
+	// Status panel text of the player's HP and the HP it was built at
+	private String hpText;
+	private int hpTextHP;
+	private int hpTextMaxHP;
 
-	/** Creates a new World object and initialize other objects. */
+	/**
+	 * Creates a new World object, loading every asset before returning. Must be
+	 * called on the GL thread.
+	 */
 	public World() throws SlickException {
-		map = new TiledMap(ASSETS + MAP, ASSETS);
-		entity = new ArrayList<Entity>();
-		init();
+		this(AssetLoader.load(ASSETS));
+	}
+
+	/**
+	 * Creates a new World object from assets that have finished loading.
+	 * 
+	 * @param assets
+	 *            Loader that holds the world's assets
+	 */
+	public World(AssetLoader assets) throws SlickException {
+		this(assets, System.nanoTime());
+	}
+
+	/**
+	 * Creates a new World object whose random events are reproducible from a
+	 * seed.
+	 * 
+	 * @param assets
+	 *            Loader that holds the world's assets
+	 * @param seed
+	 *            Seed that every unit's random stream is derived from
+	 */
+	public World(AssetLoader assets, long seed) throws SlickException {
+		random = new RandomStreams(seed);
+		map = assets.getMap();
+		tileProperties = map.getTileProperties();
+		collision = new TileCollision(map, Camera.TILE_DIMENSION);
+		sight = new LineOfSight(map, Camera.TILE_DIMENSION);
+		panel = assets.getImage(PANEL);
+		interest = new InterestManager(map.getWidth() * Camera.TILE_DIMENSION, map.getHeight() * Camera.TILE_DIMENSION,
+				InterestManager.CELL_SIZE);
+		init(assets);
 		camera = new Camera(player);
+		configureZones(1, 1, 1);
+
+		// The first frame can be drawn before the first tick
+		camera.update();
+		observeView();
 	}
 
 	/**
-	 * Reads data from tab separated value files that store attributes and
-	 * positions of units
-	 * 
-	 * @param attributeTable
-	 *            Table of attributes, sprites and names of units
-	 * @param characterSprites
-	 *            Array of filenames of unit sprites
-	 * @param itemSprites
-	 *            Array of filenames of item sprites
-	 * @param itemPositions
-	 *            Table of item positions
-	 * @param characterNames
-	 *            Array of unit names
-	 */
-	private void readData(int[][] attributeTable, String[] characterSprites, String[] itemSprites,
-			int[][] itemPositions, String[] characterNames) {
-		Scanner reader;
-		File file;
-
-		try {
-			file = new File(ASSETS + UNITS + ATTRIBUTES);
-			reader = new Scanner(file);
-
-			// Read attributes into attribute table, read character sprites and
-			// names into respective arrays
-			for (int i = 0; i < NUM_CHARACTERS; i++) {
-				String line = reader.nextLine();
-				String data[] = line.split("\t");
-
-				// Sprites were stroed in the second last column
-				characterSprites[i] = data[NUM_UNIT_ATTRIBUTES - 1];
-				// Names were stored in the last column
-				characterNames[i] = data[NUM_UNIT_ATTRIBUTES];
-
-				@SuppressWarnings("resource")
-				Scanner readLine = new Scanner(line);
-				for (int j = 0; j < NUM_UNIT_ATTRIBUTES - 1; j++) {
-					attributeTable[i][j] = readLine.nextInt();
-				}
-			}
+	 * Splits the map into zones whose units are updated in parallel, replacing
+	 * the current zones
+	 * 
+	 * @param columns
+	 *            Number of zones across the map
+	 * @param rows
+	 *            Number of zones down the map
+	 * @param workers
+	 *            Number of threads to update the zones on, including the
+	 *            calling thread
+	 */
+	public void configureZones(int columns, int rows, int workers) {
+		if (zones != null) {
+			zones.shutdown();
+		}
 
-			// Read item positions into item position table and read item
-			// sprites into its array
-			file = new File(ASSETS + ITEMS + ITEM_POSITIONS);
-			reader = new Scanner(file);
+		zones = new ZoneScheduler(this, map.getWidth() * Camera.TILE_DIMENSION,
+				map.getHeight() * Camera.TILE_DIMENSION, columns, rows, workers);
+	}
 
-			for (int i = 0; i < NUM_ITEMS; i++) {
-				String line = reader.nextLine();
-				String data[] = line.split("\t");
+	/**
+	 * Gets the blocked tiles of the map
+	 * 
+	 * @return Tile collision
+	 */
+	public TileCollision getCollision() {
+		return collision;
+	}
 
-				itemSprites[i] = data[NUM_ITEM_ATTRIBUTES];
+	/**
+	 * Gets the tiles of the map that block sight
+	 * 
+	 * @return Line of sight
+	 */
+	public LineOfSight getSight() {
+		return sight;
+	}
+
+	/**
+	 * Gets the system that pushes apart overlapping units
+	 * 
+	 * @return Unit separation
+	 */
+	public UnitSeparation getSeparation() {
+		return separation;
+	}
+
+	/**
+	 * Gets the zones of the map
+	 * 
+	 * @return Zone scheduler
+	 */
+	public ZoneScheduler getZones() {
+		return zones;
+	}
+
+	/**
+	 * Queues an attack to be resolved at the end of the tick. Attacks made by
+	 * units inside a zone are queued with their zone, so that zones updating in
+	 * parallel never share a queue.
+	 * 
+	 * @param attacker
+	 *            Unit making the attack
+	 * @param target
+	 *            Unit being attacked
+	 */
+	public void queueAttack(Unit attacker, Unit target) {
+		Zone zone = attacker.getZone();
 
-				@SuppressWarnings("resource")
-				Scanner readLine = new Scanner(line);
-				for (int j = 0; j < NUM_ITEM_ATTRIBUTES; j++) {
-					itemPositions[i][j] = readLine.nextInt();
-				}
+		if (zone != null) {
+			zone.queueAttack(attacker, target);
+		} else {
+			combat.queueAttack(attacker, target);
+		}
+	}
+
+	/**
+	 * Gets the resolver that the tick's attacks are queued with
+	 * 
+	 * @return Combat resolver
+	 */
+	public CombatResolver getCombat() {
+		return combat;
+	}
 
+	/**
+	 * Gets the grid that tracks what observers can see
+	 * 
+	 * @return Interest manager
+	 */
+	public InterestManager getInterest() {
+		return interest;
+	}
+
+	/**
+	 * Gets the timing wheel that units schedule their timers on
+	 * 
+	 * @return Timing wheel
+	 */
+	public TimerWheel getTimers() {
+		return timers;
+	}
+
+	/**
+	 * Gets the bus that the world's events are published to
+	 * 
+	 * @return Event bus
+	 */
+	public EventBus getEvents() {
+		return events;
+	}
+
+	/**
+	 * Gets the seed that the world's random events are derived from
+	 * 
+	 * @return Seed of the world
+	 */
+	public long getSeed() {
+		return random.getSeed();
+	}
+
+	/**
+	 * Calculates a checksum of the simulation state, used to prove that a
+	 * replayed session matched its recording
+	 * 
+	 * @return Checksum of the world state
+	 */
+	public long getChecksum() {
+		long checksum = CHECKSUM_SEED;
+
+		for (Player current : players) {
+			checksum = checksumUnit(checksum, current);
+			checksum = mix(checksum, current.getDamage());
+			checksum = mix(checksum, current.getCooldown());
+
+			for (Item item : current.getInventory().getItems()) {
+				checksum = mix(checksum, item.getID());
 			}
+		}
+
+		for (Item item : items) {
+			checksum = mix(checksum, Double.doubleToLongBits(item.getPosX()));
+			checksum = mix(checksum, Double.doubleToLongBits(item.getPosY()));
+		}
+
+		for (Villager villager : villagers) {
+			checksum = checksumUnit(checksum, villager);
+		}
+
+		for (PassiveMonster passive : passives) {
+			checksum = checksumUnit(checksum, passive);
+		}
 
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
+		for (AggressiveMonster aggressive : aggressives) {
+			checksum = checksumUnit(checksum, aggressive);
 		}
 
+		return checksum;
 	}
 
 	/**
-	 * Get the entity list of the world
+	 * Adds the state of a unit to a checksum
+	 * 
+	 * @param checksum
+	 *            Checksum so far
+	 * @param unit
+	 *            Unit to add
+	 * @return Updated checksum
+	 */
+	private long checksumUnit(long checksum, Unit unit) {
+		checksum = mix(checksum, Double.doubleToLongBits(unit.getPosX()));
+		checksum = mix(checksum, Double.doubleToLongBits(unit.getPosY()));
+		checksum = mix(checksum, unit.getHP());
+		checksum = mix(checksum, unit.getMaxHP());
+
+		return mix(checksum, unit.isCooldownReady() ? 1 : 0);
+	}
+
+	/**
+	 * Mixes a value into a checksum
+	 * 
+	 * @param checksum
+	 *            Checksum so far
+	 * @param value
+	 *            Value to add
+	 * @return Updated checksum
+	 */
+	private static long mix(long checksum, long value) {
+		checksum = (checksum ^ value) * CHECKSUM_PRIME;
+		return checksum ^ (checksum >>> 29);
+	}
+
+	/**
+	 * Get a list of every entity in the world apart from the player. The list
+	 * is built on every call, so it is meant for tools rather than the game
+	 * loop.
 	 * 
 	 * @return Entity list
 	 */
 	public List<Entity> getEntityList() {
+		List<Entity> entity = new ArrayList<Entity>(getEntityCount());
+
+		entity.addAll(items);
+		entity.addAll(villagers);
+		entity.addAll(passives);
+		entity.addAll(aggressives);
+
 		return entity;
 	}
 
+	/**
+	 * Get the number of entities in the world apart from the player
+	 * 
+	 * @return Number of entities
+	 */
+	public int getEntityCount() {
+		return items.size() + villagers.size() + passives.size() + aggressives.size();
+	}
+
+	/**
+	 * Gets every item lying in the world
+	 * 
+	 * @return Item list
+	 */
+	public List<Item> getItemList() {
+		return items;
+	}
+
+	/**
+	 * Gets every villager in the world
+	 * 
+	 * @return Villager list
+	 */
+	public List<Villager> getVillagerList() {
+		return villagers;
+	}
+
+	/**
+	 * Gets every passive monster in the world
+	 * 
+	 * @return Passive monster list
+	 */
+	public List<PassiveMonster> getPassiveList() {
+		return passives;
+	}
+
+	/**
+	 * Gets every aggressive monster in the world
+	 * 
+	 * @return Aggressive monster list
+	 */
+	public List<AggressiveMonster> getAggressiveList() {
+		return aggressives;
+	}
+
 	/**
 	 * Initialize all entities with starting attributes, positions and sprites
 	 * 
+	 * @param assets
+	 *            Loader that holds the world's assets
 	 * @throws SlickException
 	 */
-	private void init() throws SlickException {
-		int[][] attributeTable = new int[NUM_CHARACTERS][NUM_UNIT_ATTRIBUTES];
-		String[] characterSprites = new String[NUM_CHARACTERS];
-		String[] characterNames = new String[NUM_CHARACTERS];
-		String[] itemSprites = new String[NUM_ITEMS];
-		int[][] itemPositions = new int[NUM_ITEMS][NUM_ITEM_ATTRIBUTES];
+	private void init(AssetLoader assets) throws SlickException {
+		attributeTable = assets.getAttributeTable();
+		String[] characterSprites = assets.getCharacterSprites();
+		String[] characterNames = assets.getCharacterNames();
+		List<String> itemSprites = assets.getItemSprites();
+		List<int[]> itemPositions = assets.getItemPositions();
+
+		unitNames = characterNames;
+		for (int i = 0; i < NUM_CHARACTERS; i++) {
+			unitSprites[i] = assets.getImage(UNITS + characterSprites[attributeTable[i][COL_ID]]);
+		}
 
-		Scanner reader;
-		File file;
+		// Initialize all items in the world, gives them an ID and adds them to
+		// the entity ArrayList. Item files list the item types in ID order,
+		// repeating for worlds with more than one of each.
+		for (int i = 0; i < itemPositions.size(); i++) {
+			int[] position = itemPositions.get(i);
+			Item item = new Item(position[0], position[1], assets.getImage(ITEMS + itemSprites.get(i)), i % NUM_ITEMS);
+			item.setNetworkID(nextNetworkID++);
+			add(item);
+		}
 
-		readData(attributeTable, characterSprites, itemSprites, itemPositions, characterNames);
+		// Based on positions from unit position tsv, intialize all unit
+		// objects based on their stats
+		for (int[] data : assets.getUnitPositions()) {
+			Image sprite = assets.getImage(UNITS + characterSprites[attributeTable[data[0]][COL_ID]]);
+
+			// Switch based on unit types retrieved from the TSV
+			switch (attributeTable[data[0]][COL_TYPE]) {
+			case PLAYER_ID:
+				// Players joining later start where the local player does
+				spawnX = data[XPOS];
+				spawnY = data[YPOS];
+				playerAttributes = attributeTable[0];
+				playerSprite = assets.getImage(UNITS + characterSprites[0]);
+				playerName = characterNames[attributeTable[data[0]][COL_ID]];
+
+				player = addPlayer();
+				break;
+			case NPC_ID:
+				Villager villager = new Villager((double) data[XPOS], (double) data[YPOS], sprite,
+						attributeTable[0][COL_HP], attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
+						characterNames[attributeTable[data[0]][COL_ID]]);
+				register(villager, attributeTable[data[0]][COL_ID]);
+				add(villager);
+				break;
+			case PASSIVE_ID:
+			case AGGRESSIVE_ID:
+				add(createMonster(data[0], data[XPOS], data[YPOS]));
+			}
+		}
 
-		// Initialize all items in the world, gives them an ID and adds them to
-		// the entity ArrayList
-		for (int i = 0; i < NUM_ITEMS; i++) {
-			Item item = new Item(itemPositions[i][0], itemPositions[i][1], ASSETS + ITEMS + itemSprites[i], i);
-			entity.add(item);
-		}
-
-		try {
-			file = new File(ASSETS + UNITS + UNIT_POSITIONS);
-			reader = new Scanner(file);
-
-			// Based on positions from unit position tsv, intialize all unit
-			// objects based on their stats
-			while (reader.hasNextLine()) {
-				String line = reader.nextLine();
-				@SuppressWarnings("resource")
-				Scanner readLine = new Scanner(line);
-
-				int data[] = { readLine.nextInt(), readLine.nextInt(), readLine.nextInt() };
-
-				// Switch based on unit types retrieved from the TSV
-				switch (attributeTable[data[0]][COL_TYPE]) {
-				case PLAYER_ID:
-					player = new Player((double) data[XPOS], (double) data[YPOS], ASSETS + UNITS + characterSprites[0],
-							attributeTable[0][COL_HP], attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
-							characterNames[attributeTable[data[0]][COL_ID]]);
-					break;
-				case NPC_ID:
-					Villager villager = new Villager((double) data[XPOS], (double) data[YPOS],
-							ASSETS + UNITS + characterSprites[attributeTable[data[0]][COL_ID]],
-							attributeTable[0][COL_HP], attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
-							characterNames[attributeTable[data[0]][COL_ID]]);
-
-					entity.add(villager);
-					break;
-				case PASSIVE_ID:
-					PassiveMonster passive = new PassiveMonster((double) data[XPOS], (double) data[YPOS],
-							ASSETS + UNITS + characterSprites[attributeTable[data[0]][COL_ID]],
-							attributeTable[0][COL_HP], attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
-							characterNames[attributeTable[data[0]][COL_ID]]);
-					entity.add(passive);
-					break;
-				case AGGRESSIVE_ID:
-					AggressiveMonster aggressive = new AggressiveMonster((double) data[XPOS], (double) data[YPOS],
-							ASSETS + UNITS + characterSprites[attributeTable[data[0]][COL_ID]],
-							attributeTable[0][COL_HP], attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
-							characterNames[attributeTable[data[0]][COL_ID]]);
-					entity.add(aggressive);
-				}
+		// Camps are filled once every placed unit has its random stream, and
+		// their types are pooled with room for every monster of the type
+		for (int[] data : assets.getSpawners()) {
+			if (data[MonsterSpawner.COL_TYPE] < 0 || data[MonsterSpawner.COL_TYPE] >= attributeTable.length) {
+				System.out.println("Spawner of unknown unit " + data[MonsterSpawner.COL_TYPE]);
+				continue;
+			}
+			int type = attributeTable[data[MonsterSpawner.COL_TYPE]][COL_TYPE];
+			if (type != PASSIVE_ID && type != AGGRESSIVE_ID) {
+				System.out.println("Spawner of unit " + data[MonsterSpawner.COL_TYPE] + " is not a monster");
+				continue;
+			}
+			// A camp off the map would never find a spot to respawn in
+			if (data[MonsterSpawner.COL_MIN_X] < 0 || data[MonsterSpawner.COL_MIN_Y] < 0
+					|| data[MonsterSpawner.COL_MAX_X] > map.getWidth() * Camera.TILE_DIMENSION
+					|| data[MonsterSpawner.COL_MAX_Y] > map.getHeight() * Camera.TILE_DIMENSION
+					|| data[MonsterSpawner.COL_MIN_X] > data[MonsterSpawner.COL_MAX_X]
+					|| data[MonsterSpawner.COL_MIN_Y] > data[MonsterSpawner.COL_MAX_Y]) {
+				System.out.println("Spawner of unit " + data[MonsterSpawner.COL_TYPE] + " is not on the map");
+				continue;
+			}
+
+			MonsterSpawner spawner = new MonsterSpawner(data);
+			spawner.join(this, random.nextStream(), timers);
+			spawners.add(spawner);
+			spawner.fill();
+		}
+		for (MonsterSpawner spawner : spawners) {
+			pool.reserve(spawner.getTypeID(), monstersOfType(spawner.getTypeID()).size());
+		}
+	}
 
+	/**
+	 * Creates a monster of a type with a new random stream, without adding it
+	 * to the world
+	 * 
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @param posX
+	 *            Position of the monster in the x-axis
+	 * @param posY
+	 *            Position of the monster in the y-axis
+	 * @return The new monster
+	 * @throws SlickException
+	 */
+	private Monster createMonster(int typeID, double posX, double posY) throws SlickException {
+		Monster monster;
+
+		if (attributeTable[typeID][COL_TYPE] == PASSIVE_ID) {
+			monster = new PassiveMonster(posX, posY, unitSprites[typeID], attributeTable[0][COL_HP],
+					attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
+					unitNames[attributeTable[typeID][COL_ID]]);
+		} else {
+			monster = new AggressiveMonster(posX, posY, unitSprites[typeID], attributeTable[0][COL_HP],
+					attributeTable[0][COL_DAMAGE], attributeTable[0][COL_COOLDOWN],
+					unitNames[attributeTable[typeID][COL_ID]]);
+		}
+
+		register(monster, attributeTable[typeID][COL_ID]);
+		return monster;
+	}
+
+	/**
+	 * Brings a monster of a type into the world, reusing a dead one from the
+	 * pool if there is one
+	 * 
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @param posX
+	 *            Position to spawn at in the x-axis
+	 * @param posY
+	 *            Position to spawn at in the y-axis
+	 * @return The spawned monster
+	 */
+	public Monster spawnMonster(int typeID, double posX, double posY) {
+		Monster monster = pool.acquire(typeID);
+
+		if (monster != null) {
+			monster.respawn(posX, posY);
+		} else {
+			// Only camps filling at load, or outgrowing the monsters that have
+			// died, create new monsters. Their sprites are already loaded.
+			try {
+				monster = createMonster(typeID, posX, posY);
+			} catch (SlickException e) {
+				throw new IllegalStateException("Failed to create monster " + typeID, e);
 			}
+		}
+
+		add(monster);
+		return monster;
+	}
+
+	/**
+	 * Hands a monster that has died and left the world to the pool, and tells
+	 * its spawner that the camp has lost a monster
+	 * 
+	 * @param monster
+	 *            Dead monster
+	 */
+	public void recycle(Monster monster) {
+		MonsterSpawner spawner = monster.getSpawner();
+		monster.setSpawner(null);
+		pool.release(monster);
 
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
+		if (spawner != null) {
+			spawner.onDeath();
 		}
+	}
+
+	/**
+	 * Gets every spawner of the world
+	 * 
+	 * @return Spawner list
+	 */
+	public List<MonsterSpawner> getSpawners() {
+		return spawners;
+	}
 
-		refreshEntityIndex();
+	/**
+	 * Gets the pool of dead monsters that spawners respawn
+	 * 
+	 * @return Monster pool
+	 */
+	public MonsterPool getPool() {
+		return pool;
 	}
 
 	/**
-	 * Update the game state for a frame.
+	 * Adds a unit to the simulation with its own random stream and network
+	 * ID. Streams are handed out in load order so that a seed always
+	 * reproduces the same world. A unit keeps both for life, including when it
+	 * is respawned.
+	 * 
+	 * @param unit
+	 *            Unit to add
+	 * @param typeID
+	 *            ID of the unit's type in the attributes file
+	 */
+	private void register(Unit unit, int typeID) {
+		unit.setTypeID(typeID);
+		unit.setNetworkID(nextNetworkID++);
+		unit.join(random.nextStream(), timers);
+	}
+
+	/**
+	 * Adds a new player at the spawn point, for example when a client joins
+	 * a server
+	 * 
+	 * @return The new player
+	 * @throws SlickException
+	 */
+	public Player addPlayer() throws SlickException {
+		Player newPlayer = new Player(spawnX, spawnY, playerSprite, playerAttributes[COL_HP],
+				playerAttributes[COL_DAMAGE], playerAttributes[COL_COOLDOWN], playerName);
+
+		register(newPlayer, PLAYER_ID);
+		players.add(newPlayer);
+		interest.add(newPlayer);
+
+		return newPlayer;
+	}
+
+	/**
+	 * Removes a player from the world, for example when a client leaves a
+	 * server. Removing the local player leaves the world without a local
+	 * view: update then ignores its input and stops moving the camera and
+	 * publishing snapshots, as on a server where every player is a client.
+	 * 
+	 * @param oldPlayer
+	 *            Player to remove
+	 */
+	public void removePlayer(Player oldPlayer) {
+		players.remove(oldPlayer);
+		interest.remove(oldPlayer);
+
+		if (oldPlayer == player) {
+			player = null;
+		}
+	}
+
+	/**
+	 * Gets every player in the world
+	 * 
+	 * @return Player list
+	 */
+	public List<Player> getPlayers() {
+		return players;
+	}
+
+	/**
+	 * Finds the player closest to a position
+	 * 
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @return Closest player, or null if there are no players
+	 */
+	public Player getNearestPlayer(double posX, double posY) {
+		Player nearest = null;
+		double nearestDistance = Double.MAX_VALUE;
+
+		for (int i = 0; i < players.size(); i++) {
+			Player current = players.get(i);
+			double a = current.getPosX() - posX;
+			double b = current.getPosY() - posY;
+			double distance = a * a + b * b;
+
+			if (distance < nearestDistance) {
+				nearest = current;
+				nearestDistance = distance;
+			}
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Adds an item to the world
+	 * 
+	 * @param item
+	 *            Item to add
+	 */
+	private void add(Item item) {
+		append(items, item);
+		index(itemsByID, item.getID(), item);
+	}
+
+	/**
+	 * Adds a villager to the world
+	 * 
+	 * @param villager
+	 *            Villager to add
+	 */
+	private void add(Villager villager) {
+		append(villagers, villager);
+		index(villagersByName, villager.getName(), villager);
+		addToZone(villager);
+	}
+
+	/**
+	 * Adds a passive monster to the world
+	 * 
+	 * @param passive
+	 *            Monster to add
+	 */
+	private void add(PassiveMonster passive) {
+		append(passives, passive);
+		monstersOfType(passive.getTypeID()).add(passive);
+		addToZone(passive);
+	}
+
+	/**
+	 * Adds a monster of either kind to the world
+	 * 
+	 * @param monster
+	 *            Monster to add
+	 */
+	private void add(Monster monster) {
+		if (monster instanceof PassiveMonster) {
+			add((PassiveMonster) monster);
+		} else {
+			add((AggressiveMonster) monster);
+		}
+	}
+
+	/**
+	 * Adds an aggressive monster to the world
+	 * 
+	 * @param aggressive
+	 *            Monster to add
+	 */
+	private void add(AggressiveMonster aggressive) {
+		append(aggressives, aggressive);
+		monstersOfType(aggressive.getTypeID()).add(aggressive);
+		addToZone(aggressive);
+	}
+
+	/**
+	 * Hands a unit added after the zones were created to its zone
+	 * 
+	 * @param unit
+	 *            Unit to add
+	 */
+	private void addToZone(Unit unit) {
+		if (zones != null) {
+			zones.add(unit);
+		}
+	}
+
+	/**
+	 * Appends an entity to the list of its type, recording its position there
+	 * 
+	 * @param list
+	 *            List of the entity's type
+	 * @param newEntity
+	 *            Entity to append, which already has its network ID
+	 */
+	private <E extends Entity> void append(List<E> list, E newEntity) {
+		newEntity.setIndex(list.size());
+		list.add(newEntity);
+		interest.add(newEntity);
+	}
+
+	/**
+	 * Removes an entity from the list of its type by moving the last entity
+	 * of the list into its place
+	 * 
+	 * @param list
+	 *            List of the entity's type
+	 * @param oldEntity
+	 *            Entity to remove
+	 */
+	private static <E extends Entity> void swapRemove(List<E> list, E oldEntity) {
+		int index = oldEntity.getIndex();
+		E last = list.remove(list.size() - 1);
+
+		if (last != oldEntity) {
+			last.setIndex(index);
+			list.set(index, last);
+		}
+	}
+
+	/**
+	 * Adds a value to the set of its key in an index
+	 * 
+	 * @param index
+	 *            Index to add to
+	 * @param key
+	 *            Key of the value
+	 * @param value
+	 *            Value to add
+	 */
+	private static <K, V> void index(Map<K, Set<V>> index, K key, V value) {
+		Set<V> values = index.get(key);
+
+		if (values == null) {
+			// Insertion order keeps lookups deterministic for replays
+			values = new LinkedHashSet<V>();
+			index.put(key, values);
+		}
+
+		values.add(value);
+	}
+
+	/**
+	 * Removes a value from the set of its key in an index
+	 * 
+	 * @param index
+	 *            Index to remove from
+	 * @param key
+	 *            Key of the value
+	 * @param value
+	 *            Value to remove
+	 */
+	private static <K, V> void unindex(Map<K, Set<V>> index, K key, V value) {
+		Set<V> values = index.get(key);
+
+		if (values != null) {
+			values.remove(value);
+		}
+	}
+
+	/**
+	 * Looks up the values of a key in an index
+	 * 
+	 * @param index
+	 *            Index to look in
+	 * @param key
+	 *            Key to look up
+	 * @return Read-only set of values, empty if there are none
+	 */
+	private static <K, V> Set<V> lookup(Map<K, Set<V>> index, K key) {
+		Set<V> values = index.get(key);
+
+		if (values == null) {
+			return Collections.emptySet();
+		}
+
+		return Collections.unmodifiableSet(values);
+	}
+
+	/**
+	 * Gets every item of a given ID present in the world
+	 * 
+	 * @param ID
+	 *            Unique identifier of the item
+	 * @return Read-only set of items
+	 */
+	public Set<Item> getItems(int ID) {
+		return lookup(itemsByID, ID);
+	}
+
+	/**
+	 * Checks whether any item of a given ID is present in the world, without
+	 * wrapping the index in a read-only view
+	 * 
+	 * @param ID
+	 *            Unique identifier of the item
+	 * @return true if at least one such item is in the world
+	 */
+	public boolean hasItems(int ID) {
+		Set<Item> values = itemsByID.get(ID);
+
+		return values != null && !values.isEmpty();
+	}
+
+	/**
+	 * Gets every villager with a given name
+	 * 
+	 * @param name
+	 *            Name of the villager
+	 * @return Read-only set of villagers
+	 */
+	public Set<Villager> getVillagers(String name) {
+		return lookup(villagersByName, name);
+	}
+
+	/**
+	 * Gets every monster of a given type
+	 * 
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @return Read-only list of monsters, in the order they were added
+	 */
+	public List<Monster> getMonsters(int typeID) {
+		List<Monster> monsters = monstersByType.get(typeID);
+
+		if (monsters == null) {
+			return Collections.emptyList();
+		}
+
+		return Collections.unmodifiableList(monsters);
+	}
+
+	/**
+	 * Gets the index list of a monster type, creating it for the first
+	 * monster of the type
+	 * 
+	 * @param typeID
+	 *            ID of the monster's type in the attributes file
+	 * @return Monsters of the type
+	 */
+	private List<Monster> monstersOfType(int typeID) {
+		List<Monster> monsters = monstersByType.get(typeID);
+
+		if (monsters == null) {
+			monsters = new ArrayList<Monster>();
+			monstersByType.put(typeID, monsters);
+		}
+
+		return monsters;
+	}
+
+	/**
+	 * Update the game state for a frame. Without a local player the input is
+	 * ignored and only the world is ticked.
 	 * 
 	 * @param dirX
 	 *            The player's movement in the x axis (-1, 0 or 1).
@@ -249,48 +995,245 @@ public class World {
 	 *            Time passed since last frame (milliseconds).
 	 */
 	public void update(double dirX, double dirY, double attack, double talk, int delta) throws SlickException {
-		player.update(this, dirX, dirY, delta);
+		startTick(delta);
+
+		// The local view only exists while there is a local player
+		if (player == null) {
+			finishTick(delta);
+			return;
+		}
+
+		applyInput(player, dirX, dirY, attack, talk, delta);
+
+		FlightEvents.TickPhase phase = FlightEvents.TickPhase.start();
 		camera.update();
+		phase.finish(FlightEvents.PHASE_CAMERA);
 
-		if (attack == 1)
-			player.attackUnit(this);
+		finishTick(delta);
 
-		if (talk == 1)
-			player.interactVillager(this);
+		phase = FlightEvents.TickPhase.start();
+		observeView();
+		phase.finish(FlightEvents.PHASE_VIEW);
+	}
+
+	/**
+	 * Finds the entities the local camera can see, and counts a new render
+	 * version if anything drawn on the screen changed
+	 */
+	private void observeView() {
+		interest.observe(view, camera, VIEW_MARGIN);
+
+		// Dialogue boxes are not tracked by the grid, but each villager counts
+		// its changes, so the sum over the view changes with any of them
+		long dialogue = 0;
+		List<Entity> visible = view.getVisible();
+		for (int i = 0; i < visible.size(); i++) {
+			if (visible.get(i) instanceof Villager) {
+				dialogue += ((Villager) visible.get(i)).getDialogueVersion();
+			}
+		}
+
+		int inventory = player.getInventory().getVersion();
+
+		if (camera.hasMoved() || !view.getEntered().isEmpty() || !view.getLeft().isEmpty()
+				|| !view.getUpdated().isEmpty() || dialogue != viewDialogue || inventory != viewInventory) {
+			renderVersion++;
+		}
+
+		viewDialogue = dialogue;
+		viewInventory = inventory;
+
+		publishSnapshot();
+	}
 
-		for (Entity currentEntity : entity) {
-			if (currentEntity instanceof Unit) {
-				((Unit) currentEntity).update(this, 0, 0, delta);
+	/**
+	 * Publishes a snapshot of everything the local screen shows at the end of
+	 * the tick, for the render thread to draw
+	 */
+	private void publishSnapshot() {
+		RenderSnapshot snapshot = snapshots.getBack();
+		snapshot.begin(renderVersion, camera);
+
+		// Items are drawn below every unit, and players above everything else
+		List<Entity> visible = view.getVisible();
+		for (int i = 0; i < visible.size(); i++) {
+			if (visible.get(i) instanceof Item) {
+				snapshot.addItem((Item) visible.get(i));
+			}
+		}
+		for (int i = 0; i < visible.size(); i++) {
+			if (visible.get(i) instanceof Unit && !(visible.get(i) instanceof Player)) {
+				snapshot.addUnit((Unit) visible.get(i));
 			}
 		}
+		for (int i = 0; i < visible.size(); i++) {
+			if (visible.get(i) instanceof Player) {
+				snapshot.addUnit((Player) visible.get(i));
+			}
+		}
+
+		refreshStatText();
+		snapshot.setPanel(player, hpText, damageText, cooldownText);
+		snapshot.setCounts(this);
+
+		snapshots.publish();
 	}
 
 	/**
-	 * Render the entire screen, so it reflects the current game state.
+	 * Gets the latest snapshot of the local view published by the tick
+	 * thread. Must only be called by the render thread, and the snapshot is
+	 * only valid until its next call.
+	 * 
+	 * @return Latest snapshot
+	 */
+	public RenderSnapshot getSnapshot() {
+		return snapshots.getFront();
+	}
+
+	/**
+	 * Gets the version of what the local camera shows, which changes whenever
+	 * the camera scrolls or an entity in view moves, changes its HP or
+	 * dialogue, appears or disappears, or the player's inventory changes. A
+	 * frame drawn at a version can be shown again until it changes.
+	 * 
+	 * @return Render version
+	 */
+	public long getRenderVersion() {
+		return renderVersion;
+	}
+
+	/**
+	 * Starts a tick by firing the cooldowns and AI timers that expire during
+	 * it. Every player's input is applied after this, then the tick is
+	 * finished with finishTick.
+	 * 
+	 * @param delta
+	 *            Time passed since last frame (milliseconds).
+	 */
+	public void startTick(int delta) {
+		FlightEvents.TickPhase phase = FlightEvents.TickPhase.start();
+		timers.advance(delta);
+		phase.finish(FlightEvents.PHASE_TIMERS);
+	}
+
+	/**
+	 * Moves a player and carries out its actions for the current tick
+	 * 
+	 * @param current
+	 *            Player the input belongs to
+	 * @param dirX
+	 *            The player's movement in the x axis (-1, 0 or 1).
+	 * @param dirY
+	 *            The player's movement in the y axis (-1, 0 or 1).
+	 * @param attack
+	 *            One if attack key is pressed
+	 * @param talk
+	 *            One if talk key is pressed
+	 * @param delta
+	 *            Time passed since last frame (milliseconds).
+	 */
+	public void applyInput(Player current, double dirX, double dirY, double attack, double talk, int delta) {
+		FlightEvents.TickPhase phase = FlightEvents.TickPhase.start();
+		current.update(this, dirX, dirY, delta);
+
+		if (attack == 1)
+			current.attackUnit(this);
+
+		if (talk == 1)
+			current.interactVillager(this);
+
+		phase.finish(FlightEvents.PHASE_INPUT);
+	}
+
+	/**
+	 * Finishes a tick by updating every other unit and resolving combat
+	 * 
+	 * @param delta
+	 *            Time passed since last frame (milliseconds).
+	 */
+	public void finishTick(int delta) {
+		// Units are updated zone by zone, each type in its own loop, so items
+		// are never visited
+		FlightEvents.TickPhase phase = FlightEvents.TickPhase.start();
+		zones.update(delta, combat);
+		phase.finish(FlightEvents.PHASE_ZONES);
+
+		// Units that walked into each other are pushed apart once everyone
+		// has moved, and those pushed over a border change zones
+		phase = FlightEvents.TickPhase.start();
+		separation.separate(this);
+		zones.acceptHandoffs();
+		phase.finish(FlightEvents.PHASE_SEPARATION);
+
+		phase = FlightEvents.TickPhase.start();
+		combat.resolve(this);
+		phase.finish(FlightEvents.PHASE_COMBAT);
+
+		// Neighbouring zones see the final positions of this tick
+		phase = FlightEvents.TickPhase.start();
+		zones.publishGhosts();
+		phase.finish(FlightEvents.PHASE_GHOSTS);
+
+		// Hand the tick's events to their consumers in one batch
+		phase = FlightEvents.TickPhase.start();
+		events.dispatch();
+		phase.finish(FlightEvents.PHASE_EVENTS);
+
+		// Observers see the tick's final positions and removals
+		phase = FlightEvents.TickPhase.start();
+		interest.update(this);
+		phase.finish(FlightEvents.PHASE_INTEREST);
+	}
+
+	/**
+	 * Render the entire screen, so it reflects the game state of a snapshot.
+	 * Reads nothing but the snapshot and the world's images, so it may run on
+	 * the render thread while the tick thread updates the world.
 	 * 
 	 * @param g
 	 *            The Slick graphics object, used for drawing.
+	 * @param snapshot
+	 *            Snapshot of the local view to draw
 	 */
-	public void render(Graphics g) throws SlickException {
-		map.render(camera.getOffsetXPos(), camera.getOffsetYPos(), camera.getXTile(), camera.getYTile(), 13, 10);
+	public void render(Graphics g, RenderSnapshot snapshot) throws SlickException {
+		FlightEvents.Render event = FlightEvents.Render.start();
 
-		// Render entities and their health bars and dialogue boxes if
-		// applicable
-		for (Entity currentEntity : entity) {
-			currentEntity.renderEntity(g, camera.getRelativeX(currentEntity.getPosX()),
-					camera.getRelativeY(currentEntity.getPosY()));
+		map.render(snapshot.getCameraXTile() * Camera.TILE_DIMENSION - snapshot.getCameraX(),
+				snapshot.getCameraYTile() * Camera.TILE_DIMENSION - snapshot.getCameraY(), snapshot.getCameraXTile(),
+				snapshot.getCameraYTile(), 13, 10);
 
-			if (currentEntity instanceof Unit)
-				renderHealthBar(g, (Unit) currentEntity);
+		// The snapshot holds the entities around the screen in drawing order,
+		// with the health bars and dialogue boxes of units
+		for (int i = 0; i < snapshot.getCount(); i++) {
+			renderEntity(g, snapshot, i);
 
-			if (currentEntity instanceof Villager)
-				renderDialogueBox(g, (Villager) currentEntity);
+			byte kind = snapshot.getKind(i);
+			if (kind == RenderSnapshot.UNIT || kind == RenderSnapshot.VILLAGER) {
+				renderHealthBar(g, snapshot, i);
+			}
 
+			if (kind == RenderSnapshot.VILLAGER) {
+				renderDialogueBox(g, snapshot, i);
+			}
 		}
 
-		player.renderEntity(g, camera.getRelativeX(player.getPosX()), camera.getRelativeY(player.getPosY()));
+		renderPanel(g, snapshot);
+
+		event.finish(snapshot.getCount());
+	}
 
-		renderPanel(g);
+	/**
+	 * Renders an entity of a snapshot at its position on the screen
+	 * 
+	 * @param g
+	 *            The Slick graphics object, used for drawing.
+	 * @param snapshot
+	 *            Snapshot being drawn
+	 * @param i
+	 *            Index of the entity in the snapshot
+	 */
+	private void renderEntity(Graphics g, RenderSnapshot snapshot, int i) {
+		snapshot.getSprite(i).drawCentered(snapshot.getX(i) - snapshot.getCameraX(), snapshot.getY(i) - snapshot.getCameraY());
 	}
 
 	/**
@@ -303,19 +1246,30 @@ public class World {
 	 * @return boolean value indicating whether position is illegal or not
 	 */
 	public boolean isBlocked(double x, double y) {
-		// Calculates tile position the player is trying to walk into
-		double xTile = x / Camera.TILE_DIMENSION;
-		double yTile = y / Camera.TILE_DIMENSION;
-
-		int tileID = map.getTileId((int) xTile, (int) yTile, LAYER_ID);
-
-		String property = map.getTileProperty(tileID, TILE_PROPERTY_BLOCKED, TILE_PROPERTY_BLOCKED_FALSE);
+		return collision.isBlockedAt(x, y);
+	}
 
-		// If the tile is blocked, return true
-		if (property.equals(TILE_PROPERTY_BLOCKED_TRUE))
-			return true;
+	/**
+	 * Gets the multiplier of the time it takes to cross the tile under a
+	 * position
+	 * 
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Movement cost, 1 for normal ground
+	 */
+	public float getMoveCost(double x, double y) {
+		return tileProperties.getMoveCost(collision.getTileAt(x, y));
+	}
 
-		return false;
+	/**
+	 * Gets the terrain properties of the map's tiles
+	 * 
+	 * @return Tile property table
+	 */
+	public TileProperties getTileProperties() {
+		return tileProperties;
 	}
 
 	/**
@@ -323,15 +1277,11 @@ public class World {
 	 * 
 	 * @param g
 	 *            The current Slick graphics context.
+	 * @param snapshot
+	 *            Snapshot holding the player's status
 	 * @throws SlickException
 	 */
-	private void renderPanel(Graphics g) throws SlickException {
-		// Panel colours
-		Color LABEL = new Color(0.9f, 0.9f, 0.4f); // Gold
-		Color VALUE = new Color(1.0f, 1.0f, 1.0f); // White
-		Color BAR_BG = new Color(0.0f, 0.0f, 0.0f, 0.8f); // Black, transp
-		Color BAR = new Color(0.8f, 0.0f, 0.0f, 0.8f); // Red, transp
-
+	private void renderPanel(Graphics g, RenderSnapshot snapshot) throws SlickException {
 		// Variables for layout
 		String text; // Text to display
 		int text_x, text_y; // Coordinates to draw text
@@ -343,71 +1293,90 @@ public class World {
 		float health_percent; // Player's health, as a percentage
 
 		// Panel background image
-		Image panel = new Image(ASSETS + PANEL);
 		panel.draw(0, RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT);
 
 		// Display the player's health
 		text_x = 15;
 		text_y = RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT + 25;
-		g.setColor(LABEL);
+		g.setColor(LABEL_COLOR);
 		g.drawString("Health:", text_x, text_y);
-		text = player.getHP() + "/" + player.getMaxHP();
+		text = snapshot.getHPText();
 
 		bar_x = 90;
 		bar_y = RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT + 20;
 		bar_width = 90;
 		bar_height = 30;
-		health_percent = (float) player.getHP() / (float) player.getMaxHP();
+		health_percent = (float) snapshot.getPlayerHP() / (float) snapshot.getPlayerMaxHP();
 
 		hp_bar_width = (int) (bar_width * health_percent);
 		text_x = bar_x + (bar_width - g.getFont().getWidth(text)) / 2;
-		g.setColor(BAR_BG);
+		g.setColor(BAR_BG_COLOR);
 		g.fillRect(bar_x, bar_y, bar_width, bar_height);
-		g.setColor(BAR);
+		g.setColor(BAR_COLOR);
 		g.fillRect(bar_x, bar_y, hp_bar_width, bar_height);
-		g.setColor(VALUE);
+		g.setColor(VALUE_COLOR);
 		g.drawString(text, text_x, text_y);
 
 		// Display the player's damage and cooldown
 		text_x = 200;
-		g.setColor(LABEL);
+		g.setColor(LABEL_COLOR);
 		g.drawString("Damage:", text_x, text_y);
 		text_x += 80;
-		text = player.getDamage() + ""; // TODO: Damage
-		g.setColor(VALUE);
+		text = snapshot.getDamageText();
+		g.setColor(VALUE_COLOR);
 		g.drawString(text, text_x, text_y);
 		text_x += 40;
-		g.setColor(LABEL);
+		g.setColor(LABEL_COLOR);
 		g.drawString("Rate:", text_x, text_y);
 		text_x += 55;
-		text = player.getCooldown() + ""; // TODO: Cooldown
-		g.setColor(VALUE);
+		text = snapshot.getCooldownText();
+		g.setColor(VALUE_COLOR);
 		g.drawString(text, text_x, text_y);
 
 		// Display the player's inventory
-		g.setColor(LABEL);
+		g.setColor(LABEL_COLOR);
 		g.drawString("Items:", 420, text_y);
 		bar_x = 490;
 		bar_y = RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT + 10;
 		bar_width = 288;
 		bar_height = bar_height + 20;
-		g.setColor(BAR_BG);
+		g.setColor(BAR_BG_COLOR);
 		g.fillRect(bar_x, bar_y, bar_width, bar_height);
 
 		inv_x = 490;
 		inv_y = RPG.SCREEN_HEIGHT - RPG.PANEL_HEIGHT + ((RPG.PANEL_HEIGHT - 72) / 2);
-		List<Item> inventory = player.getInventory();
-		for (Item item : inventory) {
-			item.getSprite().draw(inv_x, inv_y);
+		for (int i = 0; i < snapshot.getInventoryCount(); i++) {
+			snapshot.getInventorySprite(i).draw(inv_x, inv_y);
 
 			inv_x += 72;
 		}
 	}
 
+	/**
+	 * Rebuilds the damage and cooldown text of the status panel when the
+	 * player's inventory, and with it the player's stats, has changed, and the
+	 * HP text when the player's HP has changed
+	 */
+	private void refreshStatText() {
+		int version = player.getInventory().getVersion();
+
+		if (damageText == null || version != statTextVersion) {
+			damageText = Integer.toString(player.getDamage());
+			cooldownText = Integer.toString(player.getCooldown());
+			statTextVersion = version;
+		}
+
+		if (hpText == null || player.getHP() != hpTextHP || player.getMaxHP() != hpTextMaxHP) {
+			hpText = player.getHP() + "/" + player.getMaxHP();
+			hpTextHP = player.getHP();
+			hpTextMaxHP = player.getMaxHP();
+		}
+	}
+
 	/**
 	 * Gets player object
 	 * 
-	 * @return Player object
+	 * @return Player object, or null once the local player is removed
 	 */
 	public Player getPlayer() {
 		return player;
@@ -418,40 +1387,38 @@ public class World {
 	 * 
 	 * @param g
 	 *            Graphics class
-	 * @param unit
-	 *            Unit object
+	 * @param snapshot
+	 *            Snapshot being drawn
+	 * @param i
+	 *            Index of the unit in the snapshot
 	 */
-	private void renderHealthBar(Graphics g, Unit unit) {
-		Color VALUE = new Color(1.0f, 1.0f, 1.0f); // White
-		Color BAR_BG = new Color(0.0f, 0.0f, 0.0f, 0.8f); // Black, transp
-		Color BAR = new Color(0.8f, 0.0f, 0.0f, 0.8f); // Red, transp
-
+	private void renderHealthBar(Graphics g, RenderSnapshot snapshot, int i) {
 		Font font = g.getFont();
+		String name = snapshot.getName(i);
 
 		int bar_width = BAR_WIDTH;
 		int bar_height = BAR_HEIGHT;
 
-		if (font.getWidth(unit.getName()) > BAR_WIDTH) {
-			bar_width = font.getWidth(unit.getName()) + BAR_EXTRA;
+		if (font.getWidth(name) > BAR_WIDTH) {
+			bar_width = font.getWidth(name) + BAR_EXTRA;
 		}
 
-		int text_x = (int) unit.getPosX() - font.getWidth(unit.getName()) / 2;
-		int text_y = (int) unit.getPosY() - BAR_ELEVATION;
+		int text_x = snapshot.getX(i) - font.getWidth(name) / 2;
+		int text_y = snapshot.getY(i) - BAR_ELEVATION;
 
-		int bar_x = (int) unit.getPosX() - bar_width / 2;
-		int bar_y = (int) unit.getPosY() - BAR_ELEVATION;
+		int bar_x = snapshot.getX(i) - bar_width / 2;
+		int bar_y = snapshot.getY(i) - BAR_ELEVATION;
 
-		g.setColor(BAR_BG);
-		g.fillRect(camera.getRelativeX(bar_x), camera.getRelativeY(bar_y), bar_width, bar_height);
+		g.setColor(BAR_BG_COLOR);
+		g.fillRect(bar_x - snapshot.getCameraX(), bar_y - snapshot.getCameraY(), bar_width, bar_height);
 
-		float percentage = (float) unit.getHP() / (float) unit.getMaxHP();
-		float health_width = percentage * bar_width;
+		float health_width = snapshot.getHealth(i) * bar_width;
 
-		g.setColor(BAR);
-		g.fillRect(camera.getRelativeX(bar_x), camera.getRelativeY(bar_y), health_width, bar_height);
+		g.setColor(BAR_COLOR);
+		g.fillRect(bar_x - snapshot.getCameraX(), bar_y - snapshot.getCameraY(), health_width, bar_height);
 
-		g.setColor(VALUE);
-		g.drawString(unit.getName(), camera.getRelativeX(text_x), camera.getRelativeY(text_y));
+		g.setColor(VALUE_COLOR);
+		g.drawString(name, text_x - snapshot.getCameraX(), text_y - snapshot.getCameraY());
 
 	}
 
@@ -460,14 +1427,13 @@ public class World {
 	 * 
 	 * @param g
 	 *            Graphics class
-	 * @param villager
-	 *            Villager object
+	 * @param snapshot
+	 *            Snapshot being drawn
+	 * @param i
+	 *            Index of the villager in the snapshot
 	 */
-	private void renderDialogueBox(Graphics g, Villager villager) {
-		Color BAR_BG = new Color(0.0f, 0.0f, 0.0f, 0.8f);
-		Color VALUE = new Color(1.0f, 1.0f, 1.0f);
-
-		String dialogue = villager.getDialogue();
+	private void renderDialogueBox(Graphics g, RenderSnapshot snapshot, int i) {
+		String dialogue = snapshot.getDialogue(i);
 		Font font = g.getFont();
 		int width = font.getWidth(dialogue);
 		int bar_width = width + BAR_EXTRA;
@@ -476,48 +1442,48 @@ public class World {
 		// If any villager is speaking, render the dialogue box above the health
 		// bar
 		if (width != 0) {
-			int text_x = (int) villager.getPosX() - (width / 2);
-			int text_y = (int) villager.getPosY() - BAR_HEIGHT - BAR_ELEVATION;
-
-			int bar_x = (int) villager.getPosX() - (bar_width / 2);
-
-			g.setColor(BAR_BG);
-			g.fillRect(camera.getRelativeX(bar_x), camera.getRelativeY(text_y), bar_width, bar_height);
-
-			g.setColor(VALUE);
-			g.drawString(dialogue, camera.getRelativeX(text_x), camera.getRelativeY(text_y));
-		}
-	}
+			int text_x = snapshot.getX(i) - (width / 2);
+			int text_y = snapshot.getY(i) - BAR_HEIGHT - BAR_ELEVATION;
 
-	/**
-	 * Update the index values of each entity and item in the entity ArrayList
-	 * and inventory ArrayList
-	 */
-	private void refreshEntityIndex() {
-		int index = 0;
+			int bar_x = snapshot.getX(i) - (bar_width / 2);
 
-		for (Entity currentEntity : entity) {
-			currentEntity.setIndex(index);
-			index++;
-		}
+			g.setColor(BAR_BG_COLOR);
+			g.fillRect(bar_x - snapshot.getCameraX(), text_y - snapshot.getCameraY(), bar_width, bar_height);
 
-		int index2 = 0;
-		
-		for (Item currentItem : player.getInventory()) {
-			currentItem.setIndex(index2);
-			index2++;
+			g.setColor(VALUE_COLOR);
+			g.drawString(dialogue, text_x - snapshot.getCameraX(), text_y - snapshot.getCameraY());
 		}
 	}
 
 	/**
-	 * Remove entity from the entity array list
+	 * Remove entity from the world
 	 * 
 	 * @param unit
-	 *            Unit to be removed
+	 *            Entity to be removed
 	 */
 	public void remove(Entity unit) {
-		entity.remove(unit.getIndex());
-		refreshEntityIndex();
+		FlightEvents.Remove event = FlightEvents.Remove.start();
+
+		if (unit instanceof Item) {
+			swapRemove(items, (Item) unit);
+			unindex(itemsByID, ((Item) unit).getID(), (Item) unit);
+		} else if (unit instanceof Villager) {
+			swapRemove(villagers, (Villager) unit);
+			unindex(villagersByName, ((Villager) unit).getName(), (Villager) unit);
+			zones.remove((Unit) unit);
+		} else if (unit instanceof PassiveMonster) {
+			swapRemove(passives, (PassiveMonster) unit);
+			monstersOfType(((Monster) unit).getTypeID()).remove(unit);
+			zones.remove((Unit) unit);
+		} else if (unit instanceof AggressiveMonster) {
+			swapRemove(aggressives, (AggressiveMonster) unit);
+			monstersOfType(((Monster) unit).getTypeID()).remove(unit);
+			zones.remove((Unit) unit);
+		}
+
+		interest.remove(unit);
+
+		event.finish(unit);
 	}
 
 	/**
@@ -539,7 +1505,8 @@ public class World {
 	}
 
 	/**
-	 * Get nearby entities within a certain pixel range
+	 * Get nearby items within a certain pixel range. Items are found in the
+	 * interest grid's cells around the position rather than in the whole list.
 	 * 
 	 * @param pixels
 	 *            Pixel range of discovery
@@ -547,18 +1514,71 @@ public class World {
 	 *            Position in the x-axis
 	 * @param posY
 	 *            Position in the y-axis
-	 * @return An ArrayList of all nearby entities
+	 * @param nearBy
+	 *            List the nearby items are added to, which the caller can reuse
+	 *            from tick to tick
+	 * @return The list of nearby items
 	 */
-	public List<Entity> getNearByEntity(int pixels, double posX, double posY) {
-		List<Entity> nearByEntities = new ArrayList<Entity>();
+	public List<Item> getNearByItems(int pixels, double posX, double posY, List<Item> nearBy) {
+		spatialQueries++;
+		FlightEvents.NearbyQuery event = FlightEvents.NearbyQuery.start();
+		interest.collectItems(pixels, posX, posY, nearBy);
+		event.finish(FlightEvents.QUERY_ITEMS, pixels, nearBy.size());
+		return nearBy;
+	}
 
-		for (Entity currentEntity : entity) {
-			if (getDistance(currentEntity.getPosX(), currentEntity.getPosY(), posX, posY) < pixels) {
-				nearByEntities.add(currentEntity);
-			}
-		}
+	/**
+	 * Get nearby villagers within a certain pixel range
+	 * 
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby villagers are added to, which the caller can reuse
+	 *            from tick to tick
+	 * @return The list of nearby villagers
+	 */
+	public List<Villager> getNearByVillagers(int pixels, double posX, double posY, List<Villager> nearBy) {
+		spatialQueries++;
+		FlightEvents.NearbyQuery event = FlightEvents.NearbyQuery.start();
+		zones.getNearByVillagers(pixels, posX, posY, nearBy);
+		event.finish(FlightEvents.QUERY_VILLAGERS, pixels, nearBy.size());
+		return nearBy;
+	}
 
-		return nearByEntities;
+	/**
+	 * Get nearby monsters of both kinds within a certain pixel range
+	 * 
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby monsters are added to, which the caller can reuse
+	 *            from tick to tick
+	 * @return The list of nearby monsters
+	 */
+	public List<Monster> getNearByMonsters(int pixels, double posX, double posY, List<Monster> nearBy) {
+		spatialQueries++;
+		FlightEvents.NearbyQuery event = FlightEvents.NearbyQuery.start();
+		zones.getNearByMonsters(pixels, posX, posY, nearBy);
+		event.finish(FlightEvents.QUERY_MONSTERS, pixels, nearBy.size());
+		return nearBy;
+	}
+
+	/**
+	 * Gets the number of nearby item, villager and monster queries made since
+	 * the world was created
+	 * 
+	 * @return Number of queries
+	 */
+	public long getSpatialQueries() {
+		return spatialQueries;
 	}
 
 }
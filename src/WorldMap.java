@@ -0,0 +1,165 @@
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.tiled.TileSet;
+import org.newdawn.slick.tiled.TiledMap;
+import org.newdawn.slick.util.ResourceLoader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Represents the tiled map of the world. Unlike a plain TiledMap, the map data
+ * and tileset properties are parsed without touching OpenGL so that the map
+ * can be loaded on a background thread. Tileset images are attached later on
+ * the GL thread.
+ */
+public class WorldMap extends TiledMap {
+
+	/** File paths of each tileset's image, indexed by tileset */
+	private List<String> tileSetImages;
+	/** Terrain properties of every tile, indexed by global tile ID */
+	private TileProperties tileProperties;
+
+	/**
+	 * Parses the map and its tilesets without loading any tileset images
+	 *
+	 * @param ref
+	 *            File path of the map
+	 * @throws SlickException
+	 */
+	public WorldMap(String ref) throws SlickException {
+		super(ref, false);
+		tileSetImages = new ArrayList<String>();
+		tileProperties = new TileProperties();
+		loadTileSetData(ref);
+	}
+
+	/**
+	 * Reads every tileset declared by the map, including their tile properties
+	 * and the file path of their image
+	 *
+	 * @param ref
+	 *            File path of the map
+	 * @throws SlickException
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadTileSetData(String ref) throws SlickException {
+		try {
+			Element root = parse(ResourceLoader.getResourceAsStream(ref));
+			NodeList setNodes = root.getElementsByTagName("tileset");
+			TileSet last = null;
+
+			for (int i = 0; i < setNodes.getLength(); i++) {
+				Element setElement = (Element) setNodes.item(i);
+				TileSet set = new TileSet(this, setElement, false);
+				set.index = i;
+
+				if (last != null) {
+					last.setLimit(set.firstGID - 1);
+				}
+				last = set;
+				tileSets.add(set);
+
+				// External tilesets keep their image in the referenced file
+				String source = setElement.getAttribute("source");
+				if (!source.equals("")) {
+					setElement = parse(ResourceLoader.getResourceAsStream(getTilesLocation() + "/" + source));
+				}
+
+				Element image = (Element) setElement.getElementsByTagName("image").item(0);
+				tileSetImages.add(getTilesLocation() + "/" + image.getAttribute("source"));
+
+				readTileProperties(setElement, set.firstGID);
+			}
+		} catch (SlickException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SlickException("Failed to parse tilesets of " + ref, e);
+		}
+	}
+
+	/**
+	 * Decodes the properties of every tile of a tileset into the tile property
+	 * table
+	 *
+	 * @param setElement
+	 *            Element holding the tileset's tiles
+	 * @param firstGID
+	 *            Global ID of the tileset's first tile
+	 * @throws SlickException
+	 */
+	private void readTileProperties(Element setElement, int firstGID) throws SlickException {
+		NodeList tileNodes = setElement.getElementsByTagName("tile");
+
+		for (int i = 0; i < tileNodes.getLength(); i++) {
+			Element tile = (Element) tileNodes.item(i);
+			int tileID = firstGID + Integer.parseInt(tile.getAttribute("id"));
+			NodeList propertyNodes = tile.getElementsByTagName("property");
+
+			for (int j = 0; j < propertyNodes.getLength(); j++) {
+				Element property = (Element) propertyNodes.item(j);
+
+				try {
+					tileProperties.set(tileID, property.getAttribute("name"), property.getAttribute("value"));
+				} catch (IllegalArgumentException e) {
+					throw new SlickException("Invalid property of tile " + tileID, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the terrain properties of the map's tiles
+	 *
+	 * @return Tile property table
+	 */
+	public TileProperties getTileProperties() {
+		return tileProperties;
+	}
+
+	/**
+	 * Parses an XML document
+	 *
+	 * @param in
+	 *            Stream of the document
+	 * @return Root element of the document
+	 * @throws Exception
+	 */
+	private static Element parse(InputStream in) throws Exception {
+		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		Document doc = builder.parse(in);
+
+		return doc.getDocumentElement();
+	}
+
+	/**
+	 * Gets the file path of a tileset's image
+	 *
+	 * @param index
+	 *            Index of the tileset
+	 * @return File path of the image
+	 */
+	public String getTileSetImage(int index) {
+		return tileSetImages.get(index);
+	}
+
+	/**
+	 * Attaches an uploaded image to a tileset. Must be called on the GL thread.
+	 *
+	 * @param index
+	 *            Index of the tileset
+	 * @param image
+	 *            Image of the tileset
+	 */
+	public void setTileSetImage(int index, Image image) {
+		getTileSet(index).setTileSetImage(image);
+	}
+
+}
@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A rectangular region of the map that owns the units inside it. A zone is
+ * updated by one worker thread at a time, so nothing it owns needs locking.
+ * Units that walk out of the zone are handed to their new zone through its
+ * handoff queue, and the units close to the zone's borders are published as a
+ * read-only ghost strip that neighbouring zones answer range queries from.
+ */
+public class Zone {
+
+	/** Initial number of units a ghost strip can hold before growing */
+	public static final int INITIAL_GHOST_CAPACITY = 64;
+
+	/** Scheduler the zone belongs to */
+	private final ZoneScheduler scheduler;
+	/** Index of the zone in the scheduler */
+	private final int index;
+
+	// Bounds of the zone in pixels
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+
+	// Units owned by the zone, one list per type. Each unit's zone index is its
+	// position in its own list.
+	private final List<Villager> villagers = new ArrayList<Villager>();
+	private final List<PassiveMonster> passives = new ArrayList<PassiveMonster>();
+	private final List<AggressiveMonster> aggressives = new ArrayList<AggressiveMonster>();
+
+	/** Units handed over by other zones during the update */
+	private final HandoffQueue inbox;
+	/** Attacks made by the zone's units during the update */
+	private final CombatResolver attacks = new CombatResolver();
+
+	// Units near the borders as of the end of the last tick, and the strip
+	// being built for the next one
+	private Ghost ghost = new Ghost();
+	private Ghost nextGhost = new Ghost();
+
+	// Units taken from the inbox, sorted before they are added
+	private Unit[] arrivals = new Unit[0];
+	private int[] arrivalSources = new int[0];
+
+	/**
+	 * Creates a zone
+	 *
+	 * @param scheduler
+	 *            Scheduler the zone belongs to
+	 * @param index
+	 *            Index of the zone in the scheduler
+	 * @param minX
+	 *            Left edge of the zone in pixels
+	 * @param minY
+	 *            Top edge of the zone in pixels
+	 * @param maxX
+	 *            Right edge of the zone in pixels
+	 * @param maxY
+	 *            Bottom edge of the zone in pixels
+	 * @param handoffCapacity
+	 *            Number of units that can be handed to the zone in one tick
+	 */
+	public Zone(ZoneScheduler scheduler, int index, double minX, double minY, double maxX, double maxY,
+			int handoffCapacity) {
+		this.scheduler = scheduler;
+		this.index = index;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.inbox = new HandoffQueue(handoffCapacity);
+	}
+
+	/**
+	 * Checks whether a position lies inside the zone
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return true if the position is inside the zone
+	 */
+	public boolean contains(double x, double y) {
+		return x >= minX && x < maxX && y >= minY && y < maxY;
+	}
+
+	/**
+	 * Calculates the distance from a position to the nearest point of the zone
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Distance in pixels, 0 if the position is inside the zone
+	 */
+	public double distanceTo(double x, double y) {
+		double a = Math.max(Math.max(minX - x, x - maxX), 0);
+		double b = Math.max(Math.max(minY - y, y - maxY), 0);
+
+		return Math.sqrt(a * a + b * b);
+	}
+
+	/**
+	 * Adds a unit to the zone
+	 *
+	 * @param unit
+	 *            Unit to add
+	 */
+	public void add(Unit unit) {
+		unit.setZone(this);
+
+		if (unit instanceof Villager) {
+			unit.setZoneIndex(villagers.size());
+			villagers.add((Villager) unit);
+		} else if (unit instanceof PassiveMonster) {
+			unit.setZoneIndex(passives.size());
+			passives.add((PassiveMonster) unit);
+		} else if (unit instanceof AggressiveMonster) {
+			unit.setZoneIndex(aggressives.size());
+			aggressives.add((AggressiveMonster) unit);
+		}
+	}
+
+	/**
+	 * Removes a unit from the zone
+	 *
+	 * @param unit
+	 *            Unit to remove
+	 */
+	public void remove(Unit unit) {
+		if (unit instanceof Villager) {
+			swapRemove(villagers, (Villager) unit);
+		} else if (unit instanceof PassiveMonster) {
+			swapRemove(passives, (PassiveMonster) unit);
+		} else if (unit instanceof AggressiveMonster) {
+			swapRemove(aggressives, (AggressiveMonster) unit);
+		}
+
+		unit.setZone(null);
+	}
+
+	/**
+	 * Removes a unit from the list of its type by moving the last unit of the
+	 * list into its place
+	 *
+	 * @param list
+	 *            List of the unit's type
+	 * @param unit
+	 *            Unit to remove
+	 */
+	private static <U extends Unit> void swapRemove(List<U> list, U unit) {
+		int index = unit.getZoneIndex();
+		U last = list.remove(list.size() - 1);
+
+		if (last != unit) {
+			last.setZoneIndex(index);
+			list.set(index, last);
+		}
+	}
+
+	/**
+	 * Updates every unit owned by the zone. Runs on the zone's worker.
+	 *
+	 * @param world
+	 *            Dependency on the world object
+	 * @param delta
+	 *            Time passed since last frame (milliseconds).
+	 */
+	public void update(World world, int delta) {
+		// Units may be handed off while the lists are walked. Walking them
+		// backwards means the unit swapped into a freed slot has already been
+		// updated, so nobody is skipped or updated twice.
+		for (int i = villagers.size() - 1; i >= 0; i--) {
+			villagers.get(i).update(world, 0, 0, delta);
+		}
+
+		for (int i = passives.size() - 1; i >= 0; i--) {
+			passives.get(i).update(world, 0, 0, delta);
+		}
+
+		for (int i = aggressives.size() - 1; i >= 0; i--) {
+			aggressives.get(i).update(world, 0, 0, delta);
+		}
+	}
+
+	/**
+	 * Hands a unit that has left the zone to the zone it is now in. Called from
+	 * Unit.move on the zone's worker. If the new zone's queue is full, the unit
+	 * stays and tries again the next time it moves.
+	 *
+	 * @param unit
+	 *            Unit that left the zone
+	 */
+	public void handOff(Unit unit) {
+		Zone target = scheduler.zoneAt(unit.getPosX(), unit.getPosY());
+
+		if (target != this && target.inbox.offer(unit, index)) {
+			remove(unit);
+		}
+	}
+
+	/**
+	 * Adds every unit handed to the zone during the update. Units are added in
+	 * the order of the zones that sent them, so the result does not depend on
+	 * how the workers were scheduled.
+	 */
+	public void acceptHandoffs() {
+		int count = 0;
+
+		while (inbox.poll()) {
+			if (count == arrivals.length) {
+				arrivals = Arrays.copyOf(arrivals, Math.max(count * 2, 16));
+				arrivalSources = Arrays.copyOf(arrivalSources, arrivals.length);
+			}
+
+			// Insertion sort by source zone, stable for units of one source
+			int i = count++;
+			while (i > 0 && arrivalSources[i - 1] > inbox.getPolledSource()) {
+				arrivals[i] = arrivals[i - 1];
+				arrivalSources[i] = arrivalSources[i - 1];
+				i--;
+			}
+			arrivals[i] = inbox.getPolledUnit();
+			arrivalSources[i] = inbox.getPolledSource();
+		}
+
+		for (int i = 0; i < count; i++) {
+			add(arrivals[i]);
+			arrivals[i] = null;
+		}
+	}
+
+	/**
+	 * Queues an attack made by one of the zone's units. Runs on the zone's
+	 * worker.
+	 *
+	 * @param attacker
+	 *            Unit making the attack
+	 * @param target
+	 *            Unit being attacked
+	 */
+	public void queueAttack(Unit attacker, Unit target) {
+		attacks.queueAttack(attacker, target);
+	}
+
+	/**
+	 * Moves the attacks made during the update to the world's resolver
+	 *
+	 * @param combat
+	 *            Resolver of the world
+	 */
+	public void transferAttacks(CombatResolver combat) {
+		attacks.transferTo(combat);
+	}
+
+	/**
+	 * Rebuilds the ghost strip from the units within a distance of the zone's
+	 * borders. Runs on the zone's worker.
+	 *
+	 * @param width
+	 *            Width of the strip in pixels
+	 */
+	public void publishGhost(double width) {
+		Ghost strip = nextGhost;
+		Arrays.fill(strip.units, 0, strip.count, null);
+		strip.count = 0;
+
+		for (int i = 0; i < villagers.size(); i++) {
+			addToGhost(strip, villagers.get(i), false, width);
+		}
+
+		for (int i = 0; i < passives.size(); i++) {
+			addToGhost(strip, passives.get(i), true, width);
+		}
+
+		for (int i = 0; i < aggressives.size(); i++) {
+			addToGhost(strip, aggressives.get(i), true, width);
+		}
+
+		nextGhost = ghost;
+		ghost = strip;
+	}
+
+	/**
+	 * Adds a unit to a ghost strip if it is close to the zone's borders
+	 *
+	 * @param strip
+	 *            Strip being built
+	 * @param unit
+	 *            Unit to add
+	 * @param monster
+	 *            Whether the unit is a monster
+	 * @param width
+	 *            Width of the strip in pixels
+	 */
+	private void addToGhost(Ghost strip, Unit unit, boolean monster, double width) {
+		double x = unit.getPosX();
+		double y = unit.getPosY();
+
+		if (x < minX + width || x >= maxX - width || y < minY + width || y >= maxY - width) {
+			strip.add(unit, x, y, monster);
+		}
+	}
+
+	/**
+	 * Collects the zone's villagers within a certain pixel range
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby villagers are added to
+	 */
+	public void collectVillagers(int pixels, double posX, double posY, List<Villager> nearBy) {
+		collect(villagers, pixels, posX, posY, nearBy);
+	}
+
+	/**
+	 * Collects the zone's monsters within a certain pixel range
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby monsters are added to
+	 */
+	public void collectMonsters(int pixels, double posX, double posY, List<Monster> nearBy) {
+		collect(passives, pixels, posX, posY, nearBy);
+		collect(aggressives, pixels, posX, posY, nearBy);
+	}
+
+	/**
+	 * Collects the units of a list that lie within a certain pixel range
+	 *
+	 * @param list
+	 *            Units to look through
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby units are added to
+	 */
+	private static <T extends Unit> void collect(List<? extends T> list, int pixels, double posX, double posY,
+			List<T> nearBy) {
+		for (int i = 0; i < list.size(); i++) {
+			T unit = list.get(i);
+			double a = unit.getPosX() - posX;
+			double b = unit.getPosY() - posY;
+
+			if (a * a + b * b < (double) pixels * pixels) {
+				nearBy.add(unit);
+			}
+		}
+	}
+
+	/**
+	 * Collects the villagers of the zone's ghost strip within a certain pixel
+	 * range
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby villagers are added to
+	 */
+	public void collectGhostVillagers(int pixels, double posX, double posY, List<Villager> nearBy) {
+		Ghost strip = ghost;
+
+		for (int i = 0; i < strip.count; i++) {
+			if (!strip.monster[i] && strip.isNear(i, pixels, posX, posY)) {
+				nearBy.add((Villager) strip.units[i]);
+			}
+		}
+	}
+
+	/**
+	 * Collects the monsters of the zone's ghost strip within a certain pixel
+	 * range
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby monsters are added to
+	 */
+	public void collectGhostMonsters(int pixels, double posX, double posY, List<Monster> nearBy) {
+		Ghost strip = ghost;
+
+		for (int i = 0; i < strip.count; i++) {
+			if (strip.monster[i] && strip.isNear(i, pixels, posX, posY)) {
+				nearBy.add((Monster) strip.units[i]);
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of the zone in its scheduler
+	 *
+	 * @return Index of the zone
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gets the number of units owned by the zone
+	 *
+	 * @return Number of units
+	 */
+	public int getUnitCount() {
+		return villagers.size() + passives.size() + aggressives.size();
+	}
+
+	/**
+	 * Read-only copy of the units near a zone's borders and their positions
+	 */
+	private static class Ghost {
+		private Unit[] units = new Unit[INITIAL_GHOST_CAPACITY];
+		private double[] xs = new double[INITIAL_GHOST_CAPACITY];
+		private double[] ys = new double[INITIAL_GHOST_CAPACITY];
+		private boolean[] monster = new boolean[INITIAL_GHOST_CAPACITY];
+		private int count;
+
+		private void add(Unit unit, double x, double y, boolean isMonster) {
+			if (count == units.length) {
+				units = Arrays.copyOf(units, count * 2);
+				xs = Arrays.copyOf(xs, count * 2);
+				ys = Arrays.copyOf(ys, count * 2);
+				monster = Arrays.copyOf(monster, count * 2);
+			}
+
+			units[count] = unit;
+			xs[count] = x;
+			ys[count] = y;
+			monster[count] = isMonster;
+			count++;
+		}
+
+		private boolean isNear(int i, int pixels, double posX, double posY) {
+			double a = xs[i] - posX;
+			double b = ys[i] - posY;
+
+			return a * a + b * b < (double) pixels * pixels;
+		}
+	}
+
+}
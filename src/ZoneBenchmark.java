@@ -0,0 +1,104 @@
+import org.newdawn.slick.SlickException;
+
+/**
+ * Measures how tick throughput scales with the number of zone workers. The
+ * same world is loaded headless once per worker count and ticked for a fixed
+ * number of frames. Since zones are updated deterministically, every run must
+ * end with the same checksum.
+ */
+public class ZoneBenchmark {
+
+	/** Frame length the world is ticked with, in milliseconds */
+	public static final int FRAME_TIME = 16;
+	/** Frames ticked before timing starts */
+	public static final int WARMUP_TICKS = 50;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            Assets directory, followed by options
+	 */
+	public static void main(String[] args) throws SlickException {
+		if (args.length < 1 || args.length % 2 != 1) {
+			System.out.println("Usage: ZoneBenchmark <assets dir> [--ticks count] [--columns zones] [--rows zones]"
+					+ " [--workers count,count,...] [--seed seed]");
+			System.exit(2);
+		}
+
+		String assets = args[0].endsWith("/") ? args[0] : args[0] + "/";
+		int ticks = 500;
+		int columns = 8;
+		int rows = 8;
+		String workers = "1,2,4," + Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+
+		for (int i = 1; i < args.length; i += 2) {
+			String value = args[i + 1];
+
+			switch (args[i]) {
+			case "--ticks":
+				ticks = Integer.parseInt(value);
+				break;
+			case "--columns":
+				columns = Integer.parseInt(value);
+				break;
+			case "--rows":
+				rows = Integer.parseInt(value);
+				break;
+			case "--workers":
+				workers = value;
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		Long expected = null;
+		double baseline = 0;
+		boolean diverged = false;
+
+		for (String count : workers.split(",")) {
+			World world = new World(AssetLoader.load(assets, true), seed);
+			world.configureZones(columns, rows, Integer.parseInt(count));
+			ZoneScheduler zones = world.getZones();
+
+			for (int i = 0; i < WARMUP_TICKS; i++) {
+				world.update(0, 0, 0, 0, FRAME_TIME);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < ticks; i++) {
+				world.update(0, 0, 0, 0, FRAME_TIME);
+			}
+			long elapsed = System.nanoTime() - start;
+			zones.shutdown();
+
+			double rate = ticks * 1e9 / elapsed;
+			if (baseline == 0) {
+				baseline = rate;
+			}
+
+			int units = world.getEntityCount() - world.getItemList().size();
+			long checksum = world.getChecksum();
+			if (expected == null) {
+				expected = checksum;
+			} else if (expected != checksum) {
+				diverged = true;
+			}
+
+			System.out.printf("%d zones, %d workers: %.1f ticks/s, %.0f unit updates/s, %.2fx, checksum %s%n",
+					zones.getZoneCount(), zones.getWorkers(), rate, rate * units, rate / baseline, Long.toHexString(checksum));
+		}
+
+		if (diverged) {
+			System.out.println("Worker counts produced different world states");
+			System.exit(1);
+		}
+	}
+
+}
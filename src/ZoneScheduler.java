@@ -0,0 +1,374 @@
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Splits the map into a grid of rectangular zones and updates the units of
+ * every zone in parallel. Each zone is always updated by the same worker, and
+ * the tick thread works on a share of the zones itself. Everything that
+ * touches more than one zone, such as handoffs, combat and range queries,
+ * happens on the tick thread between the parallel phases.
+ */
+public class ZoneScheduler {
+
+	/** Width of the strip along each zone border that is copied for neighbours */
+	public static final int GHOST_WIDTH = 2 * Camera.TILE_DIMENSION;
+	/** Number of units that can be handed to a zone in one tick */
+	public static final int HANDOFF_CAPACITY = 4096;
+
+	// Work done by the workers in a parallel phase
+	private static final int PHASE_UPDATE = 0;
+	private static final int PHASE_GHOSTS = 1;
+
+	/** World whose units are updated */
+	private final World world;
+	/** Zones in row-major order */
+	private final Zone[] zones;
+	// Size of the zone grid
+	private final int columns;
+	private final int rows;
+	// Size of each zone in pixels
+	private final double zoneWidth;
+	private final double zoneHeight;
+
+	/** Number of threads sharing the zones, including the tick thread */
+	private final int workers;
+	// Barriers that start and end each parallel phase
+	private final CyclicBarrier start;
+	private final CyclicBarrier end;
+
+	// State of the current phase, published to the workers by the barriers
+	private int phase;
+	private int delta;
+	private boolean running = true;
+	/** First error raised by a worker */
+	private volatile Throwable failure;
+
+	/**
+	 * Splits the map into zones and hands every unit of the world to its zone
+	 *
+	 * @param world
+	 *            World whose units are updated
+	 * @param mapWidth
+	 *            Width of the map in pixels
+	 * @param mapHeight
+	 *            Height of the map in pixels
+	 * @param columns
+	 *            Number of zones across the map, reduced if zones would be
+	 *            narrower than two ghost strips
+	 * @param rows
+	 *            Number of zones down the map, reduced likewise
+	 * @param workers
+	 *            Number of threads to update the zones on, including the tick
+	 *            thread
+	 */
+	public ZoneScheduler(World world, double mapWidth, double mapHeight, int columns, int rows, int workers) {
+		this.world = world;
+		this.columns = Math.max(1, Math.min(columns, (int) (mapWidth / (2 * GHOST_WIDTH))));
+		this.rows = Math.max(1, Math.min(rows, (int) (mapHeight / (2 * GHOST_WIDTH))));
+		this.zoneWidth = mapWidth / this.columns;
+		this.zoneHeight = mapHeight / this.rows;
+		this.zones = new Zone[this.columns * this.rows];
+		this.workers = Math.max(1, Math.min(workers, zones.length));
+
+		for (int row = 0; row < this.rows; row++) {
+			for (int column = 0; column < this.columns; column++) {
+				int index = row * this.columns + column;
+
+				// Units that stray off the map still belong to the edge zones
+				double minX = column == 0 ? Double.NEGATIVE_INFINITY : column * zoneWidth;
+				double minY = row == 0 ? Double.NEGATIVE_INFINITY : row * zoneHeight;
+				double maxX = column == this.columns - 1 ? Double.POSITIVE_INFINITY : (column + 1) * zoneWidth;
+				double maxY = row == this.rows - 1 ? Double.POSITIVE_INFINITY : (row + 1) * zoneHeight;
+
+				zones[index] = new Zone(this, index, minX, minY, maxX, maxY, HANDOFF_CAPACITY);
+			}
+		}
+
+		for (Villager villager : world.getVillagerList()) {
+			add(villager);
+		}
+
+		for (PassiveMonster passive : world.getPassiveList()) {
+			add(passive);
+		}
+
+		for (AggressiveMonster aggressive : world.getAggressiveList()) {
+			add(aggressive);
+		}
+
+		start = new CyclicBarrier(this.workers);
+		end = new CyclicBarrier(this.workers);
+
+		for (int i = 1; i < this.workers; i++) {
+			final int worker = i;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work(worker);
+				}
+			}, "zone-worker-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		publishGhosts();
+	}
+
+	/**
+	 * Finds the zone containing a position
+	 *
+	 * @param x
+	 *            Position in the x-axis
+	 * @param y
+	 *            Position in the y-axis
+	 * @return Zone of the position
+	 */
+	public Zone zoneAt(double x, double y) {
+		int column = Math.max(0, Math.min(columns - 1, (int) Math.floor(x / zoneWidth)));
+		int row = Math.max(0, Math.min(rows - 1, (int) Math.floor(y / zoneHeight)));
+
+		return zones[row * columns + column];
+	}
+
+	/**
+	 * Hands a unit to the zone it stands in
+	 *
+	 * @param unit
+	 *            Unit to add
+	 */
+	public void add(Unit unit) {
+		zoneAt(unit.getPosX(), unit.getPosY()).add(unit);
+	}
+
+	/**
+	 * Removes a unit from its zone
+	 *
+	 * @param unit
+	 *            Unit to remove
+	 */
+	public void remove(Unit unit) {
+		if (unit.getZone() != null) {
+			unit.getZone().remove(unit);
+		}
+	}
+
+	/**
+	 * Updates the units of every zone in parallel, then moves the units that
+	 * crossed a border into their new zones and the attacks made during the
+	 * update into the world's resolver
+	 *
+	 * @param delta
+	 *            Time passed since last frame (milliseconds).
+	 * @param combat
+	 *            Resolver of the world
+	 */
+	public void update(int delta, CombatResolver combat) {
+		this.delta = delta;
+		runPhase(PHASE_UPDATE);
+		acceptHandoffs();
+
+		for (Zone zone : zones) {
+			zone.transferAttacks(combat);
+		}
+	}
+
+	/**
+	 * Moves the units that crossed a border since the last call into their new
+	 * zones. Called on the tick thread.
+	 */
+	public void acceptHandoffs() {
+		for (Zone zone : zones) {
+			zone.acceptHandoffs();
+		}
+	}
+
+	/**
+	 * Rebuilds the ghost strip of every zone in parallel. Called once the
+	 * tick's movement and deaths are final.
+	 */
+	public void publishGhosts() {
+		runPhase(PHASE_GHOSTS);
+	}
+
+	/**
+	 * Runs a phase on every worker and waits for all of them to finish
+	 *
+	 * @param phase
+	 *            Work to do
+	 */
+	private void runPhase(int phase) {
+		this.phase = phase;
+
+		if (workers == 1) {
+			runShare(0);
+			return;
+		}
+
+		await(start);
+		runShare(0);
+		await(end);
+
+		if (failure != null) {
+			throw new IllegalStateException("Zone worker failed", failure);
+		}
+	}
+
+	/**
+	 * Main loop of a worker thread
+	 *
+	 * @param worker
+	 *            Index of the worker
+	 */
+	private void work(int worker) {
+		while (true) {
+			await(start);
+
+			if (!running) {
+				return;
+			}
+
+			try {
+				runShare(worker);
+			} catch (Throwable e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+
+			await(end);
+		}
+	}
+
+	/**
+	 * Does the current phase's work for the zones of one worker
+	 *
+	 * @param worker
+	 *            Index of the worker
+	 */
+	private void runShare(int worker) {
+		for (int i = worker; i < zones.length; i += workers) {
+			if (phase == PHASE_UPDATE) {
+				zones[i].update(world, delta);
+			} else {
+				zones[i].publishGhost(GHOST_WIDTH);
+			}
+		}
+	}
+
+	/**
+	 * Waits at a barrier
+	 *
+	 * @param barrier
+	 *            Barrier to wait at
+	 */
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for zone workers", e);
+		} catch (BrokenBarrierException e) {
+			throw new IllegalStateException("Zone workers stopped", e);
+		}
+	}
+
+	/**
+	 * Stops the worker threads
+	 */
+	public void shutdown() {
+		if (workers > 1 && running) {
+			running = false;
+			await(start);
+		}
+	}
+
+	/**
+	 * Get nearby villagers within a certain pixel range. Villagers of
+	 * neighbouring zones are found in their ghost strips, and wider ranges
+	 * look at the units of every zone the range reaches.
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby villagers are added to
+	 * @return The list of nearby villagers
+	 */
+	public List<Villager> getNearByVillagers(int pixels, double posX, double posY, List<Villager> nearBy) {
+		Zone home = zoneAt(posX, posY);
+		home.collectVillagers(pixels, posX, posY, nearBy);
+
+		for (int i = 0; i < zones.length; i++) {
+			Zone zone = zones[i];
+
+			if (zone != home && zone.distanceTo(posX, posY) < pixels) {
+				// Zones are at least two strips wide, so only neighbours are
+				// this close, and wider ranges need each zone's own units
+				if (pixels <= GHOST_WIDTH) {
+					zone.collectGhostVillagers(pixels, posX, posY, nearBy);
+				} else {
+					zone.collectVillagers(pixels, posX, posY, nearBy);
+				}
+			}
+		}
+
+		return nearBy;
+	}
+
+	/**
+	 * Get nearby monsters of both kinds within a certain pixel range. Monsters
+	 * of neighbouring zones are found in their ghost strips, and wider ranges
+	 * look at the units of every zone the range reaches.
+	 *
+	 * @param pixels
+	 *            Pixel range of discovery
+	 * @param posX
+	 *            Position in the x-axis
+	 * @param posY
+	 *            Position in the y-axis
+	 * @param nearBy
+	 *            List the nearby monsters are added to
+	 * @return The list of nearby monsters
+	 */
+	public List<Monster> getNearByMonsters(int pixels, double posX, double posY, List<Monster> nearBy) {
+		Zone home = zoneAt(posX, posY);
+		home.collectMonsters(pixels, posX, posY, nearBy);
+
+		for (int i = 0; i < zones.length; i++) {
+			Zone zone = zones[i];
+
+			if (zone != home && zone.distanceTo(posX, posY) < pixels) {
+				if (pixels <= GHOST_WIDTH) {
+					zone.collectGhostMonsters(pixels, posX, posY, nearBy);
+				} else {
+					zone.collectMonsters(pixels, posX, posY, nearBy);
+				}
+			}
+		}
+
+		return nearBy;
+	}
+
+	/**
+	 * Gets the number of zones
+	 *
+	 * @return Number of zones
+	 */
+	public int getZoneCount() {
+		return zones.length;
+	}
+
+	/**
+	 * Gets the number of threads sharing the zones
+	 *
+	 * @return Number of workers, including the tick thread
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+}